@@ -0,0 +1,97 @@
+import java.util.Random;
+
+/**
+ * Measures how the broad phases scale with the number of bodies. Bodies are circles
+ * scattered at constant density, so the number of overlapping pairs grows linearly.
+ * "pairs/s" is the number of object pairs (n * (n - 1) / 2) culled per second.
+ */
+public class BroadPhaseBenchmark
+{
+  private static final int[] BODY_COUNTS = {100, 1000, 10000, 100000};
+  // The all-pairs reference gets too slow beyond this.
+  private static final int MAX_ALL_PAIRS_BODIES = 10000;
+  private static final float RADIUS = .5f;
+  // Fraction of the area covered by bodies.
+  private static final float DENSITY = .2f;
+
+  public static void main(final String[] args)
+  {
+    System.out.printf("%-16s %8s %12s %12s %14s%n", "broad phase", "bodies", "ms/frame",
+                      "candidates", "pairs/s");
+    for (final int count : BODY_COUNTS)
+    {
+      final PhysicsObject[] objects = createBodies(count, new Random(42));
+      run("all pairs", null, objects);
+      run("spatial hash", new SpatialHashGrid(4 * RADIUS), objects);
+      run("sweep and prune", new SweepAndPrune(), objects);
+    }
+  }
+
+  private static PhysicsObject[] createBodies(final int count, final Random random)
+  {
+    final float width =
+        (float) Math.sqrt(count * Math.PI * RADIUS * RADIUS / DENSITY);
+    final PhysicsObject[] objects = new PhysicsObject[count];
+    for (int i = 0; i < count; i++)
+    {
+      objects[i] =
+          new Circle(1, (random.nextFloat() - .5f) * width, (random.nextFloat() - .5f) * width,
+                     0, 0, 0, 0, RADIUS, null, null);
+      objects[i].updateBounds();
+    }
+    return objects;
+  }
+
+  private static void run(final String name, final BroadPhase broadPhase,
+                          final PhysicsObject[] objects)
+  {
+    final int count = objects.length;
+    if (broadPhase == null && count > MAX_ALL_PAIRS_BODIES)
+    {
+      return;
+    }
+    final PairList pairs = new PairList();
+    final long budget = 1000000000L;
+    // Warm up, then measure for about a second.
+    for (int i = 0; i < 5; i++)
+    {
+      findPairs(broadPhase, objects, pairs);
+    }
+    int frames = 0;
+    final long start = System.nanoTime();
+    long elapsed;
+    do
+    {
+      findPairs(broadPhase, objects, pairs);
+      frames++;
+      elapsed = System.nanoTime() - start;
+    }
+    while (elapsed < budget);
+
+    final double secondsPerFrame = elapsed / 1e9 / frames;
+    final double pairsPerSecond = (double) count * (count - 1) / 2 / secondsPerFrame;
+    System.out.printf("%-16s %8d %12.3f %12d %14.3e%n", name, count, secondsPerFrame * 1e3,
+                      pairs.size, pairsPerSecond);
+  }
+
+  private static void findPairs(final BroadPhase broadPhase, final PhysicsObject[] objects,
+                                final PairList pairs)
+  {
+    if (broadPhase != null)
+    {
+      broadPhase.findPairs(objects, objects.length, pairs);
+      return;
+    }
+    pairs.clear();
+    for (int i = 0; i < objects.length; i++)
+    {
+      for (int j = i + 1; j < objects.length; j++)
+      {
+        if (objects[i].bounds.overlaps(objects[j].bounds))
+        {
+          pairs.add(i, j);
+        }
+      }
+    }
+  }
+}
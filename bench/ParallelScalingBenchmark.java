@@ -0,0 +1,91 @@
+import java.util.Random;
+
+/**
+ * Steps the same scene with 1 to N threads and reports the time per step. The checksum of
+ * the final state must be the same for every run with more than one thread.
+ *
+ * Usage: ParallelScalingBenchmark [bodies] [steps]
+ */
+public class ParallelScalingBenchmark
+{
+  private static final float SIZE = .5f;
+  private static final float DENSITY = .3f;
+  private static final int WARMUP_STEPS = 20;
+
+  public static void main(final String[] args)
+  {
+    final int bodies = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    final int steps = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    final int processors = Runtime.getRuntime().availableProcessors();
+
+    System.out.printf("%8s %12s %10s %20s%n", "threads", "ms/step", "speedup", "checksum");
+    double serial = 0;
+    // Powers of two up to the number of processors, and the number of processors itself.
+    for (int threads = 1; threads <= processors;
+         threads = threads < processors && threads * 2 > processors ? processors : threads * 2)
+    {
+      final World world = createWorld(bodies, new Random(42));
+      world.setParallelism(threads);
+      for (int i = 0; i < WARMUP_STEPS; i++)
+      {
+        world.step(1f / 60);
+      }
+      final long start = System.nanoTime();
+      for (int i = 0; i < steps; i++)
+      {
+        world.step(1f / 60);
+      }
+      final double millis = (System.nanoTime() - start) / 1e6 / steps;
+      if (threads == 1)
+      {
+        serial = millis;
+      }
+      System.out.printf("%8d %12.3f %10.2f %20x%n", threads, millis, serial / millis,
+                        checksum(world));
+      world.setParallelism(1);
+    }
+  }
+
+  static World createWorld(final int bodies, final Random random)
+  {
+    final float width = (float) Math.sqrt(bodies * SIZE * SIZE / DENSITY);
+    final World world = new World();
+    world.setBroadPhase(new SpatialHashGrid(4 * SIZE));
+    world.addBoundary(new HalfSpace(-width / 2, -width / 2, 0, 1));
+    world.addBoundary(new HalfSpace(-width / 2, -width / 2, 1, 0));
+    world.addBoundary(new HalfSpace(width / 2, width / 2, 0, -1));
+    world.addBoundary(new HalfSpace(width / 2, width / 2, -1, 0));
+    for (int i = 0; i < bodies; i++)
+    {
+      final float x = (random.nextFloat() - .5f) * (width - 2 * SIZE);
+      final float y = (random.nextFloat() - .5f) * (width - 2 * SIZE);
+      final float orientation = (float) (2 * Math.PI * random.nextFloat());
+      switch (i % 3)
+      {
+        case 0:
+          world.addObject(new Circle(1, x, y, 0, 0, 0, 0, SIZE / 2, null, null));
+          break;
+        case 1:
+          world.addObject(new Triangle(1, x, y, 0, 0, orientation, 0, SIZE, null));
+          break;
+        default:
+          world.addObject(new Square(1, x, y, 0, 0, orientation, 0, SIZE, null));
+          break;
+      }
+    }
+    return world;
+  }
+
+  static long checksum(final World world)
+  {
+    final BodyStore store = world.getStore();
+    long checksum = 0;
+    for (int i = 0; i < store.size(); i++)
+    {
+      checksum = checksum * 31 + Float.floatToIntBits(store.positionX[i]);
+      checksum = checksum * 31 + Float.floatToIntBits(store.positionY[i]);
+      checksum = checksum * 31 + Float.floatToIntBits(store.orientation[i]);
+    }
+    return checksum;
+  }
+}
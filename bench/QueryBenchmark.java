@@ -0,0 +1,233 @@
+import java.util.Random;
+
+/**
+ * Measures the queries per second of raycasts, point queries and box queries against a
+ * world of static polygons and dynamic bodies, through the bounding volume hierarchies of
+ * the world and through a linear scan over all bodies for comparison.
+ *
+ * Usage: QueryBenchmark [query ms]
+ */
+public class QueryBenchmark
+{
+  private static final int DYNAMIC_BODIES = 1000;
+  // Queries made before timing, so that the JIT has compiled them.
+  private static final int WARMUP_QUERIES = 200000;
+  // Distinct queries, cycled through while timing.
+  private static final int QUERY_COUNT = 4096;
+  // Length of the rays and side of the boxes.
+  private static final float RAY_LENGTH = 20;
+  private static final float BOX_SIZE = 4;
+
+  private static int found;
+  private static final QueryCallback counter = new QueryCallback()
+  {
+    public boolean found(final PhysicsObject object)
+    {
+      found++;
+      return true;
+    }
+  };
+
+  public static void main(final String[] args)
+  {
+    final long queryMillis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+    System.out.printf("%-8s %7s %7s %12s %12s %8s%n", "query", "static", "bodies",
+                      "tree q/s", "scan q/s", "speedup");
+    for (final int statics : new int[] {500, 2000, 8000})
+    {
+      final World world = createWorld(statics, new Random(42));
+      final float side = getSide(statics);
+      final float[] queries = createQueries(side, new Random(7));
+      for (int kind = 0; kind < 3; kind++)
+      {
+        query(world, queries, kind, true, WARMUP_QUERIES);
+        query(world, queries, kind, false, WARMUP_QUERIES / 10);
+        final double tree = queriesPerSecond(world, queries, kind, true, queryMillis);
+        final double scan = queriesPerSecond(world, queries, kind, false, queryMillis);
+        System.out.printf("%-8s %7d %7d %12.0f %12.0f %7.1fx%n",
+                          new String[] {"raycast", "point", "aabb"}[kind], statics,
+                          DYNAMIC_BODIES, tree, scan, tree / scan);
+      }
+    }
+  }
+
+  private static double queriesPerSecond(final World world, final float[] queries,
+                                         final int kind, final boolean tree,
+                                         final long millis)
+  {
+    long total = 0;
+    final long start = System.nanoTime();
+    long elapsed;
+    do
+    {
+      query(world, queries, kind, tree, QUERY_COUNT);
+      total += QUERY_COUNT;
+      elapsed = System.nanoTime() - start;
+    }
+    while (elapsed < millis * 1000000L);
+    return total / (elapsed / 1e9);
+  }
+
+  // Makes the given number of queries of one kind and returns the number of hits.
+  private static int query(final World world, final float[] queries, final int kind,
+                           final boolean tree, final int count)
+  {
+    final RaycastHit hit = new RaycastHit();
+    final AABB box = new AABB();
+    int hits = 0;
+    for (int q = 0; q < count; q++)
+    {
+      final int k = 4 * (q % QUERY_COUNT);
+      final float x = queries[k];
+      final float y = queries[k + 1];
+      final float dx = queries[k + 2] * RAY_LENGTH;
+      final float dy = queries[k + 3] * RAY_LENGTH;
+      found = 0;
+      if (kind == 0)
+      {
+        if (tree ? world.raycast(x, y, x + dx, y + dy, hit) : raycast(world, x, y, dx, dy, hit))
+        {
+          found = 1;
+        }
+      }
+      else if (kind == 1)
+      {
+        if (tree)
+        {
+          world.queryPoint(x, y, counter);
+        }
+        else
+        {
+          queryPoint(world, x, y);
+        }
+      }
+      else
+      {
+        box.minX = x - BOX_SIZE / 2;
+        box.minY = y - BOX_SIZE / 2;
+        box.maxX = x + BOX_SIZE / 2;
+        box.maxY = y + BOX_SIZE / 2;
+        if (tree)
+        {
+          world.queryAABB(box, counter);
+        }
+        else
+        {
+          queryAABB(world, box);
+        }
+      }
+      hits += found;
+    }
+    return hits;
+  }
+
+  private static boolean raycast(final World world, final float x, final float y,
+                                 final float dx, final float dy, final RaycastHit hit)
+  {
+    hit.reset(1);
+    for (int k = 0; k < world.getStaticObjectCount(); k++)
+    {
+      world.getStaticObject(k).raycast(x, y, dx, dy, hit);
+    }
+    for (int i = 0; i < world.getObjectCount(); i++)
+    {
+      world.getObject(i).raycast(x, y, dx, dy, hit);
+    }
+    for (int j = 0; j < world.getBoundaryCount(); j++)
+    {
+      world.getBoundary(j).raycast(x, y, dx, dy, hit);
+    }
+    return hit.object != null;
+  }
+
+  private static void queryPoint(final World world, final float x, final float y)
+  {
+    for (int k = 0; k < world.getStaticObjectCount(); k++)
+    {
+      if (world.getStaticObject(k).containsPoint(x, y))
+      {
+        found++;
+      }
+    }
+    for (int i = 0; i < world.getObjectCount(); i++)
+    {
+      if (world.getObject(i).containsPoint(x, y))
+      {
+        found++;
+      }
+    }
+    for (int j = 0; j < world.getBoundaryCount(); j++)
+    {
+      if (world.getBoundary(j).containsPoint(x, y))
+      {
+        found++;
+      }
+    }
+  }
+
+  private static void queryAABB(final World world, final AABB box)
+  {
+    for (int k = 0; k < world.getStaticObjectCount(); k++)
+    {
+      if (world.getStaticObject(k).bounds.overlaps(box))
+      {
+        found++;
+      }
+    }
+    for (int i = 0; i < world.getObjectCount(); i++)
+    {
+      if (world.getObject(i).bounds.overlaps(box))
+      {
+        found++;
+      }
+    }
+  }
+
+  // Side of the square the bodies are spread over, so that about a quarter of it is
+  // covered.
+  private static float getSide(final int statics)
+  {
+    return (float) Math.sqrt(statics + DYNAMIC_BODIES) * 3;
+  }
+
+  // Random rotated polygons as the static level and circles as the dynamic bodies, in a
+  // box of four boundaries.
+  private static World createWorld(final int statics, final Random random)
+  {
+    final World world = new World();
+    final float side = getSide(statics);
+    for (int k = 0; k < statics; k++)
+    {
+      world.addStaticObject(new ConvexPolygon(
+          1, random.nextFloat() * side, random.nextFloat() * side, 0, 0,
+          random.nextFloat() * 6.28f, 0,
+          ConvexPolygon.regularVertices(3 + random.nextInt(6), .5f + random.nextFloat()),
+          null));
+    }
+    for (int i = 0; i < DYNAMIC_BODIES; i++)
+    {
+      world.addObject(new Circle(1, random.nextFloat() * side, random.nextFloat() * side, 0,
+                                 0, 0, 0, .3f + random.nextFloat() / 2, null, null));
+    }
+    world.addBoundary(new HalfSpace(0, 0, 1, 0));
+    world.addBoundary(new HalfSpace(side, 0, -1, 0));
+    world.addBoundary(new HalfSpace(0, 0, 0, 1));
+    world.addBoundary(new HalfSpace(0, side, 0, -1));
+    return world;
+  }
+
+  // Start point and unit direction of each query.
+  private static float[] createQueries(final float side, final Random random)
+  {
+    final float[] queries = new float[4 * QUERY_COUNT];
+    for (int q = 0; q < QUERY_COUNT; q++)
+    {
+      final double angle = random.nextDouble() * 2 * Math.PI;
+      queries[4 * q] = random.nextFloat() * side;
+      queries[4 * q + 1] = random.nextFloat() * side;
+      queries[4 * q + 2] = (float) Math.cos(angle);
+      queries[4 * q + 3] = (float) Math.sin(angle);
+    }
+    return queries;
+  }
+}
@@ -0,0 +1,122 @@
+import javax.media.j3d.Transform3D;
+import javax.vecmath.Vector2f;
+import javax.vecmath.Vector3f;
+
+/**
+ * Compares integrating the store with the default integrator plus getVertices per
+ * triangle against the previous implementation, which updated each body on its own,
+ * rotated the center of mass with a Transform3D and called Math.cos/Math.sin for every
+ * vertex. Spinning bodies recompute the cached rotation every frame; resting bodies
+ * keep it.
+ */
+public class RotationCacheBenchmark
+{
+  private static final int BODIES = 10000;
+  private static final int FRAMES = 200;
+  private static final float DURATION = 1f / 60;
+  private static final float[] VERTICES = {0, 0, 1, 0, 0, 1};
+
+  // Keeps the JIT from discarding the results.
+  static volatile float sink;
+
+  public static void main(final String[] args)
+  {
+    System.out.printf("%-10s %14s %14s%n", "bodies", "legacy ns/body", "cached ns/body");
+    for (int round = 0; round < 3; round++)
+    {
+      // The first rounds warm up the JIT.
+      final boolean print = round == 2;
+      run("spinning", 3, print);
+      run("resting", 0, print);
+    }
+  }
+
+  private static void run(final String name, final float angularVelocity, final boolean print)
+  {
+    final Triangle[] legacy = createBodies(angularVelocity);
+    final Triangle[] cached = createBodies(angularVelocity);
+    float result = 0;
+    long start = System.nanoTime();
+    for (int frame = 0; frame < FRAMES; frame++)
+    {
+      for (final Triangle t : legacy)
+      {
+        legacyUpdateState(t, DURATION);
+        result += legacyGetVertices(t)[2].y;
+      }
+    }
+    final double legacyNanos = (double) (System.nanoTime() - start) / FRAMES / BODIES;
+
+    final BodyStore store = cached[0].getStore();
+    final Integrator integrator = new VelocityVerlet();
+    start = System.nanoTime();
+    for (int frame = 0; frame < FRAMES; frame++)
+    {
+      integrator.prepare(store);
+      for (int pass = 0; pass < integrator.getPassCount(); pass++)
+      {
+        integrator.integrate(pass, store, 0, store.size(), DURATION);
+      }
+      for (final Triangle t : cached)
+      {
+        result += t.getVertices()[2].y;
+      }
+    }
+    final double cachedNanos = (double) (System.nanoTime() - start) / FRAMES / BODIES;
+    sink = result;
+
+    if (print)
+    {
+      System.out.printf("%-10s %14.1f %14.1f%n", name, legacyNanos, cachedNanos);
+    }
+  }
+
+  private static Triangle[] createBodies(final float angularVelocity)
+  {
+    final Triangle[] triangles = new Triangle[BODIES];
+    final BodyStore store = new BodyStore(BODIES);
+    for (int i = 0; i < BODIES; i++)
+    {
+      triangles[i] = new Triangle(1, i, 0, 0, 0, i * .1f, angularVelocity, 1, null);
+      triangles[i].attach(store);
+    }
+    return triangles;
+  }
+
+  private static void legacyUpdateState(final Triangle t, final float duration)
+  {
+    Transform3D t3D = new Transform3D();
+    t3D.rotZ(t.getOrientation());
+    Vector3f v3f = new Vector3f(t.getCenterOfMassX(), t.getCenterOfMassY(), 0);
+    t3D.transform(v3f);
+    final Vector2f globalCenterOfMass =
+        new Vector2f(v3f.x + t.getPositionX(), v3f.y + t.getPositionY());
+    globalCenterOfMass.x += duration * t.getVelocityX();
+    globalCenterOfMass.y += duration * t.getVelocityY();
+    t.setOrientation(t.getOrientation() + t.getAngularVelocity() * duration);
+    t3D = new Transform3D();
+    t3D.rotZ(t.getOrientation());
+    v3f = new Vector3f(-t.getCenterOfMassX(), -t.getCenterOfMassY(), 0);
+    t3D.transform(v3f);
+    t.setPosition(v3f.x + globalCenterOfMass.x, v3f.y + globalCenterOfMass.y);
+  }
+
+  private static Vector2f[] legacyGetVertices(final Triangle t)
+  {
+    final Vector2f[] vertices = new Vector2f[VERTICES.length / 2];
+    final float orientation = t.getOrientation();
+    for (int i = 0; i < VERTICES.length; i += 2)
+    {
+      final float tmpX = VERTICES[i];
+      final float tmpY = VERTICES[i + 1];
+      vertices[i / 2] = new Vector2f();
+      vertices[i / 2].x =
+          (float) (Math.cos(orientation) * tmpX - Math.sin(orientation) * tmpY) +
+              t.getPositionX();
+      vertices[i / 2].y =
+          (float) (Math.sin(orientation) * tmpX + Math.cos(orientation) * tmpY) +
+              t.getPositionY();
+    }
+    return vertices;
+  }
+}
@@ -0,0 +1,137 @@
+import java.util.Arrays;
+
+/**
+ * Steps generated scenes headless and checks them against performance budgets. For every
+ * scenario it reports the steps per second, the median and 99th percentile frame time and
+ * the drift of the total energy, and fails if a frame time is over budget or the energy
+ * ever grows by more than its budget. Contacts only take energy out of a scene, so growth
+ * means the solver is adding it.
+ *
+ * The budgets leave about twice the measured times on a single shared core, so that only
+ * real slowdowns fail. The process exits with status 1 if any scenario is over budget.
+ *
+ * Usage: StressHarness [scenario ...]
+ */
+public class StressHarness
+{
+  private static final float TIME_STEP = 1f / 60;
+  // Steps taken before timing, so that the JIT has compiled the step.
+  private static final int WARMUP_FRAMES = 60;
+
+  private static final Scenario[] SCENARIOS = {
+      new Scenario("pile-1k", SceneGenerator.Layout.PILE, 1000, 600, 8, 30, .05f),
+      new Scenario("rain-2k", SceneGenerator.Layout.RAIN, 2000, 600, 15, 30, .05f),
+      new Scenario("packed-5k", SceneGenerator.Layout.PACKED_BOX, 5000, 300, 40, 80, .05f),
+      new Scenario("pile-10k", SceneGenerator.Layout.PILE, 10000, 300, 40, 150, .05f)};
+
+  private static final class Scenario
+  {
+    final String name;
+    final SceneGenerator.Layout layout;
+    final int bodies;
+    final int frames;
+    final double medianBudget;
+    final double p99Budget;
+    // Largest growth of the total energy over the start, as a fraction of it.
+    final float energyGainBudget;
+
+    Scenario(final String name, final SceneGenerator.Layout layout, final int bodies,
+             final int frames, final double medianBudget, final double p99Budget,
+             final float energyGainBudget)
+    {
+      this.name = name;
+      this.layout = layout;
+      this.bodies = bodies;
+      this.frames = frames;
+      this.medianBudget = medianBudget;
+      this.p99Budget = p99Budget;
+      this.energyGainBudget = energyGainBudget;
+    }
+  }
+
+  public static void main(final String[] args)
+  {
+    System.out.printf("%-10s %7s %7s %9s %8s %8s %8s %8s  %s%n", "scenario", "bodies",
+                      "frames", "steps/s", "p50 ms", "p99 ms", "drift", "gain", "budget");
+    boolean passed = true;
+    for (final Scenario scenario : SCENARIOS)
+    {
+      if (args.length == 0 || Arrays.asList(args).contains(scenario.name))
+      {
+        passed &= run(scenario);
+      }
+    }
+    if (!passed)
+    {
+      System.exit(1);
+    }
+  }
+
+  private static boolean run(final Scenario scenario)
+  {
+    final SceneGenerator generator = new SceneGenerator(42);
+    final int quarter = scenario.bodies / 4;
+    generator.setCounts(scenario.bodies - 3 * quarter, quarter, quarter, quarter);
+    generator.setSizeRange(.3f, .6f);
+    generator.setLayout(scenario.layout);
+    final World world = generator.generate();
+    world.setContactSolver(new ContactSolver());
+    final float floor = -generator.getWidth() / 2;
+
+    final double startEnergy = energy(world, floor);
+    double maxEnergy = startEnergy;
+    final long[] frameNanos = new long[scenario.frames];
+    for (int i = 0; i < WARMUP_FRAMES + scenario.frames; i++)
+    {
+      final long start = System.nanoTime();
+      world.step(TIME_STEP);
+      if (i >= WARMUP_FRAMES)
+      {
+        frameNanos[i - WARMUP_FRAMES] = System.nanoTime() - start;
+      }
+      maxEnergy = Math.max(maxEnergy, energy(world, floor));
+    }
+    final double drift = (energy(world, floor) - startEnergy) / startEnergy;
+    final double gain = (maxEnergy - startEnergy) / startEnergy;
+
+    long total = 0;
+    for (final long nanos : frameNanos)
+    {
+      total += nanos;
+    }
+    Arrays.sort(frameNanos);
+    final double median = frameNanos[frameNanos.length / 2] / 1e6;
+    final double p99 = frameNanos[(int) (frameNanos.length * .99)] / 1e6;
+    final boolean passed = median <= scenario.medianBudget && p99 <= scenario.p99Budget &&
+        gain <= scenario.energyGainBudget;
+    System.out.printf("%-10s %7d %7d %9.1f %8.2f %8.2f %7.1f%% %7.1f%%  %s%n", scenario.name,
+                      scenario.bodies, scenario.frames, scenario.frames / (total / 1e9),
+                      median, p99, 100 * drift, 100 * gain,
+                      passed ? "ok" : String.format("OVER (p50 %.0f, p99 %.0f ms, gain %.0f%%)",
+                                                     scenario.medianBudget, scenario.p99Budget,
+                                                     100 * scenario.energyGainBudget));
+    return passed;
+  }
+
+  // Kinetic energy plus potential energy above the floor.
+  private static double energy(final World world, final float floor)
+  {
+    final BodyStore store = world.getStore();
+    double energy = 0;
+    for (int i = 0; i < world.getObjectCount(); i++)
+    {
+      final PhysicsObject o = world.getObject(i);
+      final int id = o.getId();
+      final float velocityX = store.velocityX[id];
+      final float velocityY = store.velocityY[id];
+      final float angularVelocity = store.angularVelocity[id];
+      store.updateRotation(id);
+      final float x = store.positionX[id] + store.rotatedCenterOfMassX[id];
+      final float y = store.positionY[id] + store.rotatedCenterOfMassY[id] - floor;
+      energy += store.mass[id] * (velocityX * velocityX + velocityY * velocityY) / 2 +
+          store.momentOfInertia[id] * angularVelocity * angularVelocity / 2 -
+          store.mass[id] * (world.getGravityX() * x + world.getGravityY() * y);
+    }
+    return energy;
+  }
+}
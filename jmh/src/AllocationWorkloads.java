@@ -0,0 +1,94 @@
+import jmh.AllocationBenchmarks;
+import jmh.Workload;
+
+// The workloads of jmh.AllocationBenchmarks.
+public class AllocationWorkloads extends AllocationBenchmarks.Workloads
+{
+  protected Workload pair(final String pairCase)
+  {
+    final HalfSpace floor = new HalfSpace(0, 0, 0, 1);
+    final Circle circleA = new Circle(1, 0, .5f, 0, 0, 0, 0, 1, null, null);
+    final Circle circleB = new Circle(1, 1.5f, .5f, 0, 0, 0, 0, 1, null, null);
+    final Circle farCircle = new Circle(1, 10, 10, 0, 0, 0, 0, 1, null, null);
+    final Triangle triangle = new Triangle(1, 0, -.5f, 0, 0, .3f, 0, 2, null);
+    final Square square = new Square(1, .5f, -.5f, 0, 0, .2f, 0, 2, null);
+    final Square farSquare = new Square(1, 20, 20, 0, 0, .2f, 0, 2, null);
+    switch (pairCase)
+    {
+      case "detect.circleCircle.hit":
+        return detect(circleA, circleB);
+      case "detect.circleCircle.miss":
+        return detect(circleA, farCircle);
+      case "detect.circleTriangle.hit":
+        return detect(circleA, triangle);
+      case "detect.circleTriangle.miss":
+        return detect(farCircle, triangle);
+      case "detect.triangleSquare.hit":
+        return detect(triangle, square);
+      case "detect.triangleSquare.miss":
+        return detect(triangle, farSquare);
+      case "detect.halfSpaceCircle.hit":
+        return detect(floor, circleA);
+      case "detect.halfSpaceTriangle.hit":
+        return detect(floor, triangle);
+      case "resolve.circleCircle":
+        return resolve(circleA, circleB);
+      case "resolve.halfSpaceCircle":
+        return resolve(floor, circleA);
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
+  private static Workload detect(final PhysicsObject a, final PhysicsObject b)
+  {
+    final CollisionHandler handler = new CollisionHandler();
+    final CollisionInfo ci = new CollisionInfo();
+    return new Workload()
+    {
+      public float run()
+      {
+        return handler.getCollisionInfo(a, b, ci) ? ci.depth : 0;
+      }
+    };
+  }
+
+  // Puts both circles back, touching and moving down, and resolves them.
+  private static Workload resolve(final Circle a, final Circle b)
+  {
+    final CollisionHandler handler = new CollisionHandler();
+    return new Workload()
+    {
+      public float run()
+      {
+        reset(a, 0, .5f);
+        reset(b, 1.5f, .5f);
+        handler.checkAndResolveCollision(a, b);
+        return b.getVelocityY();
+      }
+    };
+  }
+
+  // Puts the circle back into the boundary, moving down, and resolves them.
+  private static Workload resolve(final HalfSpace boundary, final Circle circle)
+  {
+    final CollisionHandler handler = new CollisionHandler();
+    return new Workload()
+    {
+      public float run()
+      {
+        reset(circle, 0, .5f);
+        handler.checkAndResolveCollision(boundary, circle);
+        return circle.getVelocityY();
+      }
+    };
+  }
+
+  private static void reset(final PhysicsObject o, final float x, final float y)
+  {
+    o.setPosition(x, y);
+    o.setVelocity(0, -1);
+    o.setAngularVelocity(0);
+    o.setOrientation(0);
+  }
+}
@@ -0,0 +1,167 @@
+import java.util.Random;
+
+import jmh.CircleBatchBenchmarks;
+import jmh.Workload;
+
+// The workloads of jmh.CircleBatchBenchmarks.
+public class CircleBatchWorkloads extends CircleBatchBenchmarks.Workloads
+{
+  private static final int PAIRS = CircleBatchBenchmarks.PAIRS;
+  private static final int STEP_BODIES = 5000;
+  private static final int SETTLE_STEPS = 180;
+  private static final float RADIUS = .5f;
+  private static final float DURATION = 1f / 60;
+
+  // Circles 2i and 2i + 1 form pair i.
+  private final Circle[] circles = createCircles(new Random(42));
+  private final PairList pairs = new PairList();
+  private final HalfSpace floor = new HalfSpace(0, 50, 0, 1);
+
+  public CircleBatchWorkloads()
+  {
+    for (int i = 0; i < PAIRS; i++)
+    {
+      pairs.add(2 * i, 2 * i + 1);
+    }
+  }
+
+  protected Workload circleCirclePerPair()
+  {
+    final CollisionHandler handler = new CollisionHandler();
+    final CollisionInfo ci = new CollisionInfo();
+    return new Workload()
+    {
+      private int next;
+
+      public float run()
+      {
+        final int p = next++ & PAIRS - 1;
+        return handler.getCollisionInfo(circles[2 * p], circles[2 * p + 1], ci) ? ci.depth
+                                                                                : 0;
+      }
+    };
+  }
+
+  protected Workload circleCircleKernel()
+  {
+    final CircleBatch batch = new CircleBatch();
+    batch.gatherCircles(circles, circles.length);
+    batch.collidePairs(pairs);
+    return new Workload()
+    {
+      public float run()
+      {
+        CircleBatch.circleCircle(batch.ax, batch.ay, batch.ar, batch.bx, batch.by, batch.br,
+                                 PAIRS, batch.normalX, batch.normalY, batch.depth);
+        return batch.depth[0];
+      }
+    };
+  }
+
+  protected Workload circleCircleGatherAndKernel()
+  {
+    final CircleBatch batch = new CircleBatch();
+    return new Workload()
+    {
+      public float run()
+      {
+        batch.gatherCircles(circles, circles.length);
+        batch.collidePairs(pairs);
+        return batch.depth[0];
+      }
+    };
+  }
+
+  protected Workload halfSpaceCirclePerPair()
+  {
+    final CollisionHandler handler = new CollisionHandler();
+    final CollisionInfo ci = new CollisionInfo();
+    return new Workload()
+    {
+      private int next;
+
+      public float run()
+      {
+        return handler.getCollisionInfo(floor, circles[next++ & 2 * PAIRS - 1], ci) ? ci.depth
+                                                                                     : 0;
+      }
+    };
+  }
+
+  protected Workload halfSpaceCircleKernel()
+  {
+    final CircleBatch batch = new CircleBatch();
+    batch.gatherCircles(circles, circles.length);
+    return new Workload()
+    {
+      public float run()
+      {
+        batch.collideBoundary(floor);
+        return batch.boundaryDepth[0];
+      }
+    };
+  }
+
+  protected Workload step(final boolean circleBatching)
+  {
+    final World world = createWorld(new Random(42));
+    final ContactSolver solver = new ContactSolver();
+    solver.setCircleBatching(circleBatching);
+    world.setContactSolver(solver);
+    for (int i = 0; i < SETTLE_STEPS; i++)
+    {
+      world.step(DURATION);
+    }
+    return new Workload()
+    {
+      public float run()
+      {
+        world.step(DURATION);
+        return world.getObject(0).getPositionY();
+      }
+    };
+  }
+
+  // Pairs of circles at random distances up to twice the touching one, in one world, so
+  // that they share a store as in a step.
+  private static Circle[] createCircles(final Random random)
+  {
+    final World world = new World();
+    for (int i = 0; i < PAIRS; i++)
+    {
+      final float x = random.nextFloat() * 100;
+      final float y = random.nextFloat() * 100;
+      final float distance = random.nextFloat() * 4 * RADIUS;
+      final float angle = (float) (random.nextFloat() * 2 * Math.PI);
+      world.addObject(new Circle(1, x, y, 0, 0, 0, 0, RADIUS, null, null));
+      world.addObject(new Circle(1, x + distance * (float) Math.cos(angle),
+                                 y + distance * (float) Math.sin(angle), 0, 0, 0, 0, RADIUS,
+                                 null, null));
+    }
+    final Circle[] circles = new Circle[2 * PAIRS];
+    for (int i = 0; i < circles.length; i++)
+    {
+      circles[i] = (Circle) world.getObject(i);
+    }
+    return circles;
+  }
+
+  // Circles covering about 30% of a box of four boundaries.
+  private static World createWorld(final Random random)
+  {
+    final float width = (float) Math.sqrt(STEP_BODIES * 4 * RADIUS * RADIUS / .3f);
+    final World world = new World();
+    world.setBroadPhase(new SpatialHashGrid(4 * RADIUS));
+    world.addBoundary(new HalfSpace(-width / 2, -width / 2, 0, 1));
+    world.addBoundary(new HalfSpace(-width / 2, -width / 2, 1, 0));
+    world.addBoundary(new HalfSpace(width / 2, width / 2, 0, -1));
+    world.addBoundary(new HalfSpace(width / 2, width / 2, -1, 0));
+    for (int i = 0; i < STEP_BODIES; i++)
+    {
+      world.addObject(new Circle(1, (random.nextFloat() - .5f) * (width - 2 * RADIUS),
+                                 (random.nextFloat() - .5f) * (width - 2 * RADIUS), 0, 0, 0, 0,
+                                 RADIUS, null, null));
+    }
+    return world;
+  }
+}
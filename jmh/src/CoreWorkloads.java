@@ -0,0 +1,161 @@
+import java.util.Random;
+
+import jmh.CoreBenchmarks;
+import jmh.Workload;
+
+// The workloads of jmh.CoreBenchmarks.
+public class CoreWorkloads extends CoreBenchmarks.Workloads
+{
+  private static final int TRIANGLES = 1024;
+  private static final int SETTLE_STEPS = 180;
+  private static final float DURATION = 1f / 60;
+
+  protected Workload narrowPhase(final String pair)
+  {
+    final HalfSpace floor = new HalfSpace(0, 0, 0, 1);
+    final Circle circleA = new Circle(1, 0, .5f, 0, 0, 0, 0, 1, null, null);
+    final Circle circleB = new Circle(1, 1.5f, .5f, 0, 0, 0, 0, 1, null, null);
+    final Circle farCircle = new Circle(1, 10, 10, 0, 0, 0, 0, 1, null, null);
+    final Triangle triangleA = new Triangle(1, 0, -.5f, 0, 0, .3f, 0, 2, null);
+    final Triangle triangleB = new Triangle(1, .5f, -.5f, 0, 0, 2, 0, 2, null);
+    final Triangle farTriangle = new Triangle(1, 10, 10, 0, 0, 2, 0, 2, null);
+    final Triangle highTriangle = new Triangle(1, 0, 5, 0, 0, .3f, 0, 2, null);
+    switch (pair)
+    {
+      case "circleCircle.hit":
+        return narrowPhase(circleA, circleB);
+      case "circleCircle.miss":
+        return narrowPhase(circleA, farCircle);
+      case "circleTriangle.hit":
+        return narrowPhase(circleA, triangleA);
+      case "circleTriangle.miss":
+        return narrowPhase(farCircle, triangleA);
+      case "triangleTriangle.hit":
+        return narrowPhase(triangleA, triangleB);
+      case "triangleTriangle.miss":
+        return narrowPhase(triangleA, farTriangle);
+      case "halfSpaceCircle.hit":
+        return narrowPhase(floor, circleA);
+      case "halfSpaceCircle.miss":
+        return narrowPhase(floor, farCircle);
+      case "halfSpaceTriangle.hit":
+        return narrowPhase(floor, triangleA);
+      case "halfSpaceTriangle.miss":
+        return narrowPhase(floor, highTriangle);
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
+  protected Workload integrate(final String name, final int bodies)
+  {
+    final Integrator integrator;
+    switch (name)
+    {
+      case "SemiImplicitEuler":
+        integrator = new SemiImplicitEuler();
+        break;
+      case "VelocityVerlet":
+        integrator = new VelocityVerlet();
+        break;
+      case "RungeKutta4":
+        integrator = new RungeKutta4();
+        break;
+      default:
+        throw new IllegalArgumentException();
+    }
+    final Triangle[] triangles = createTriangles(bodies);
+    final BodyStore store = triangles[0].getStore();
+    return new Workload()
+    {
+      // The passes of a world step without forces, which leave the forces unchanged.
+      public float run()
+      {
+        integrator.prepare(store);
+        for (int pass = 0; pass < integrator.getPassCount(); pass++)
+        {
+          integrator.integrate(pass, store, 0, store.size(), DURATION);
+        }
+        return store.positionX[0];
+      }
+    };
+  }
+
+  protected Workload getVerticesRecomputed()
+  {
+    final Triangle[] triangles = createTriangles(TRIANGLES);
+    return new Workload()
+    {
+      private int next;
+
+      public float run()
+      {
+        triangles[next].clearCaches();
+        final float result = triangles[next].getVertices()[2].y;
+        next = next + 1 & triangles.length - 1;
+        return result;
+      }
+    };
+  }
+
+  protected Workload getNormalsCached()
+  {
+    final Triangle[] triangles = createTriangles(TRIANGLES);
+    return new Workload()
+    {
+      private int next;
+
+      public float run()
+      {
+        final float result = triangles[next].getNormals()[2].y;
+        next = next + 1 & triangles.length - 1;
+        return result;
+      }
+    };
+  }
+
+  protected Workload step(final int bodies)
+  {
+    final World world = ParallelScalingBenchmark.createWorld(bodies, new Random(42));
+    world.setContactSolver(new ContactSolver());
+    // Let the bodies fall into a pile, so that the measured steps do similar work.
+    for (int i = 0; i < SETTLE_STEPS; i++)
+    {
+      world.step(DURATION);
+    }
+    return new Workload()
+    {
+      public float run()
+      {
+        world.step(DURATION);
+        return world.getObject(0).getPositionY();
+      }
+    };
+  }
+
+  private static Workload narrowPhase(final PhysicsObject a, final PhysicsObject b)
+  {
+    final CollisionHandler handler = new CollisionHandler();
+    final CollisionInfo ci = new CollisionInfo();
+    return new Workload()
+    {
+      public float run()
+      {
+        return handler.getCollisionInfo(a, b, ci) ? ci.depth : -1;
+      }
+    };
+  }
+
+  // Spinning triangles in a shared store, so that every update recomputes the rotation.
+  private static Triangle[] createTriangles(final int count)
+  {
+    final Triangle[] triangles = new Triangle[count];
+    final BodyStore store = new BodyStore(count);
+    for (int i = 0; i < count; i++)
+    {
+      triangles[i] = new Triangle(1, i, 0, 0, 0, i * .1f, 3, 1, null);
+      triangles[i].attach(store);
+    }
+    return triangles;
+  }
+}
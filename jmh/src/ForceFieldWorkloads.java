@@ -0,0 +1,72 @@
+import java.util.Random;
+
+import jmh.ForceFieldBenchmarks;
+import jmh.Workload;
+
+// The workloads of jmh.ForceFieldBenchmarks.
+public class ForceFieldWorkloads extends ForceFieldBenchmarks.Workloads
+{
+  private static final float SOFTENING = .1f;
+
+  protected Workload barnesHut(final int bodies)
+  {
+    final BodyStore store = createWorld(bodies, new Random(42)).getStore();
+    final NBodyGravity gravity = new NBodyGravity(1, SOFTENING);
+    return new Workload()
+    {
+      public float run()
+      {
+        store.clearForces();
+        gravity.applyForces(store);
+        return store.forceX[0];
+      }
+    };
+  }
+
+  protected Workload pairwise(final int bodies)
+  {
+    final BodyStore store = createWorld(bodies, new Random(42)).getStore();
+    return new Workload()
+    {
+      public float run()
+      {
+        store.clearForces();
+        applyPairwise(store);
+        return store.forceX[0];
+      }
+    };
+  }
+
+  // The attraction with a gravitational constant of 1, summed over every pair once.
+  private static void applyPairwise(final BodyStore store)
+  {
+    for (int i = 0; i < store.size(); i++)
+    {
+      for (int j = i + 1; j < store.size(); j++)
+      {
+        final float dx = store.positionX[j] - store.positionX[i];
+        final float dy = store.positionY[j] - store.positionY[i];
+        final float inverse =
+            1 / (float) Math.sqrt(dx * dx + dy * dy + SOFTENING * SOFTENING);
+        final float scale = store.mass[i] * store.mass[j] * inverse * inverse * inverse;
+        store.forceX[i] += scale * dx;
+        store.forceY[i] += scale * dy;
+        store.forceX[j] -= scale * dx;
+        store.forceY[j] -= scale * dy;
+      }
+    }
+  }
+
+  // Bodies of random mass spread over a square, as in a cloud of gas or dust.
+  private static World createWorld(final int bodies, final Random random)
+  {
+    final World world = new World();
+    final float side = (float) Math.sqrt(bodies) * 2;
+    for (int i = 0; i < bodies; i++)
+    {
+      world.addObject(new Circle(1 + random.nextFloat(), random.nextFloat() * side,
+                                 random.nextFloat() * side, 0, 0, 0, 0, .2f, null, null));
+    }
+    return world;
+  }
+}
@@ -0,0 +1,64 @@
+package jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the narrow phase and impulse resolution of one pair, to be run with -prof gc for
+ * the bytes allocated per pair in gc.alloc.rate.norm. Expect 0 for every case.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmarks
+{
+  // Creates the workloads of these benchmarks. Implemented by AllocationWorkloads.
+  public abstract static class Workloads
+  {
+    static Workloads get()
+    {
+      return Engine.load(Workloads.class, "AllocationWorkloads");
+    }
+
+    // Detects or resolves one of the cases of the @Param list of Pair.
+    protected abstract Workload pair(String pairCase);
+  }
+
+  @State(Scope.Thread)
+  public static class Pair
+  {
+    @Param({"detect.circleCircle.hit", "detect.circleCircle.miss",
+            "detect.circleTriangle.hit", "detect.circleTriangle.miss",
+            "detect.triangleSquare.hit", "detect.triangleSquare.miss",
+            "detect.halfSpaceCircle.hit", "detect.halfSpaceTriangle.hit",
+            "resolve.circleCircle", "resolve.halfSpaceCircle"})
+    public String pairCase;
+
+    Workload workload;
+
+    @Setup
+    public void setUp()
+    {
+      workload = Workloads.get().pair(pairCase);
+    }
+  }
+
+  @Benchmark
+  public float pair(final Pair state)
+  {
+    return state.workload.run();
+  }
+}
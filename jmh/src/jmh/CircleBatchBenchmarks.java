@@ -0,0 +1,133 @@
+package jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the batched circle kernels with the per-pair narrow phase, per pair tested,
+ * and steps a world of circles with and without batching. About half of the pairs touch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CircleBatchBenchmarks
+{
+  // Circle pairs tested, a power of two; every circle is also tested against a floor.
+  public static final int PAIRS = 4096;
+
+  // Creates the workloads of these benchmarks. Implemented by CircleBatchWorkloads.
+  public abstract static class Workloads
+  {
+    static Workloads get()
+    {
+      return Engine.load(Workloads.class, "CircleBatchWorkloads");
+    }
+
+    // Tests the next of the circle pairs with the per-pair narrow phase.
+    protected abstract Workload circleCirclePerPair();
+
+    // Runs the circle kernel over all pairs, gathered once beforehand.
+    protected abstract Workload circleCircleKernel();
+
+    // Gathers the circles and runs the circle kernel over all pairs.
+    protected abstract Workload circleCircleGatherAndKernel();
+
+    // Tests the next circle against the floor with the per-pair narrow phase.
+    protected abstract Workload halfSpaceCirclePerPair();
+
+    // Runs the boundary kernel over all circles, gathered once beforehand.
+    protected abstract Workload halfSpaceCircleKernel();
+
+    // Steps a settled box of circles, with or without batching.
+    protected abstract Workload step(boolean circleBatching);
+  }
+
+  @State(Scope.Thread)
+  public static class Pairs
+  {
+    Workload circleCirclePerPair;
+    Workload circleCircleKernel;
+    Workload circleCircleGatherAndKernel;
+    Workload halfSpaceCirclePerPair;
+    Workload halfSpaceCircleKernel;
+
+    @Setup
+    public void setUp()
+    {
+      final Workloads workloads = Workloads.get();
+      circleCirclePerPair = workloads.circleCirclePerPair();
+      circleCircleKernel = workloads.circleCircleKernel();
+      circleCircleGatherAndKernel = workloads.circleCircleGatherAndKernel();
+      halfSpaceCirclePerPair = workloads.halfSpaceCirclePerPair();
+      halfSpaceCircleKernel = workloads.halfSpaceCircleKernel();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Step
+  {
+    @Param({"false", "true"})
+    public boolean circleBatching;
+
+    Workload workload;
+
+    @Setup
+    public void setUp()
+    {
+      workload = Workloads.get().step(circleBatching);
+    }
+  }
+
+  @Benchmark
+  public float circleCirclePerPair(final Pairs state)
+  {
+    return state.circleCirclePerPair.run();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PAIRS)
+  public float circleCircleKernel(final Pairs state)
+  {
+    return state.circleCircleKernel.run();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PAIRS)
+  public float circleCircleGatherAndKernel(final Pairs state)
+  {
+    return state.circleCircleGatherAndKernel.run();
+  }
+
+  @Benchmark
+  public float halfSpaceCirclePerPair(final Pairs state)
+  {
+    return state.halfSpaceCirclePerPair.run();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(2 * PAIRS)
+  public float halfSpaceCircleKernel(final Pairs state)
+  {
+    return state.halfSpaceCircleKernel.run();
+  }
+
+  @Benchmark
+  public float worldStepCircles(final Step state)
+  {
+    return state.workload.run();
+  }
+}
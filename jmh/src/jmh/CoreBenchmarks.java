@@ -0,0 +1,153 @@
+package jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the narrow phase for every pair type, body integration, the polygon vertex caches
+ * and full headless steps at several body counts. Write the results as JSON for comparison
+ * between releases with -rf json.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoreBenchmarks
+{
+  // Bodies of the integration benchmark, which reports the time per body.
+  static final int INTEGRATED_BODIES = 1024;
+
+  // Creates the workloads of these benchmarks. Implemented by CoreWorkloads.
+  public abstract static class Workloads
+  {
+    static Workloads get()
+    {
+      return Engine.load(Workloads.class, "CoreWorkloads");
+    }
+
+    // The narrow phase of one of the pairs of the @Param list of NarrowPhase.
+    protected abstract Workload narrowPhase(String pair);
+
+    /**
+     * Runs one step of the named integrator over a store of spinning triangles, with the
+     * given number of bodies.
+     */
+    protected abstract Workload integrate(String integrator, int bodies);
+
+    // Recomputes the vertices of one triangle after the other.
+    protected abstract Workload getVerticesRecomputed();
+
+    // Reads the cached normals of one triangle after the other.
+    protected abstract Workload getNormalsCached();
+
+    // Steps a settled pile of the given number of bodies with the contact solver.
+    protected abstract Workload step(int bodies);
+  }
+
+  @State(Scope.Thread)
+  public static class NarrowPhase
+  {
+    @Param({"circleCircle.hit", "circleCircle.miss", "circleTriangle.hit",
+            "circleTriangle.miss", "triangleTriangle.hit", "triangleTriangle.miss",
+            "halfSpaceCircle.hit", "halfSpaceCircle.miss", "halfSpaceTriangle.hit",
+            "halfSpaceTriangle.miss"})
+    public String pair;
+
+    Workload workload;
+
+    @Setup
+    public void setUp()
+    {
+      workload = Workloads.get().narrowPhase(pair);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Integration
+  {
+    @Param({"SemiImplicitEuler", "VelocityVerlet", "RungeKutta4"})
+    public String integrator;
+
+    Workload workload;
+
+    @Setup
+    public void setUp()
+    {
+      workload = Workloads.get().integrate(integrator, INTEGRATED_BODIES);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Triangles
+  {
+    Workload getVerticesRecomputed;
+    Workload getNormalsCached;
+
+    @Setup
+    public void setUp()
+    {
+      final Workloads workloads = Workloads.get();
+      getVerticesRecomputed = workloads.getVerticesRecomputed();
+      getNormalsCached = workloads.getNormalsCached();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Step
+  {
+    @Param({"100", "1000", "10000"})
+    public int bodies;
+
+    Workload workload;
+
+    @Setup
+    public void setUp()
+    {
+      workload = Workloads.get().step(bodies);
+    }
+  }
+
+  @Benchmark
+  public float narrowPhase(final NarrowPhase state)
+  {
+    return state.workload.run();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(INTEGRATED_BODIES)
+  public float integrate(final Integration state)
+  {
+    return state.workload.run();
+  }
+
+  @Benchmark
+  public float getVerticesRecomputed(final Triangles state)
+  {
+    return state.getVerticesRecomputed.run();
+  }
+
+  @Benchmark
+  public float getNormalsCached(final Triangles state)
+  {
+    return state.getNormalsCached.run();
+  }
+
+  @Benchmark
+  public float worldStep(final Step state)
+  {
+    return state.workload.run();
+  }
+}
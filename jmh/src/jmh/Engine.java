@@ -0,0 +1,28 @@
+package jmh;
+
+/**
+ * Reaches the engine from the benchmarks. The engine lives in the unnamed package, which
+ * code in a package cannot name, while JMH only accepts benchmarks in a package. Every
+ * benchmark class therefore declares an abstract Workloads class that creates its
+ * {@link Workload}s, implemented in the unnamed package and loaded here by name from the
+ * setup methods.
+ */
+final class Engine
+{
+  private Engine()
+  {
+  }
+
+  // Creates the class of the unnamed package with the given name, which extends type.
+  static <T> T load(final Class<T> type, final String name)
+  {
+    try
+    {
+      return type.cast(Class.forName(name).newInstance());
+    }
+    catch (final ReflectiveOperationException e)
+    {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times one evaluation of the mutual gravity of n bodies with the Barnes-Hut tree, and
+ * with a plain loop over all pairs for the smaller counts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForceFieldBenchmarks
+{
+  // Creates the workloads of these benchmarks. Implemented by ForceFieldWorkloads.
+  public abstract static class Workloads
+  {
+    static Workloads get()
+    {
+      return Engine.load(Workloads.class, "ForceFieldWorkloads");
+    }
+
+    // Clears the forces of a cloud of bodies and applies NBodyGravity.
+    protected abstract Workload barnesHut(int bodies);
+
+    // Clears the forces of a cloud of bodies and sums the attraction over every pair.
+    protected abstract Workload pairwise(int bodies);
+  }
+
+  @State(Scope.Thread)
+  public static class BarnesHut
+  {
+    @Param({"1000", "4000", "16000"})
+    public int bodies;
+
+    Workload workload;
+
+    @Setup
+    public void setUp()
+    {
+      workload = Workloads.get().barnesHut(bodies);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Pairwise
+  {
+    @Param({"1000", "4000"})
+    public int bodies;
+
+    Workload workload;
+
+    @Setup
+    public void setUp()
+    {
+      workload = Workloads.get().pairwise(bodies);
+    }
+  }
+
+  @Benchmark
+  public float nBodyGravityBarnesHut(final BarnesHut state)
+  {
+    return state.workload.run();
+  }
+
+  @Benchmark
+  public float nBodyGravityPairwise(final Pairwise state)
+  {
+    return state.workload.run();
+  }
+}
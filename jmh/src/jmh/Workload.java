@@ -0,0 +1,11 @@
+package jmh;
+
+/**
+ * One operation of a benchmark, created in the unnamed package through {@link Engine}. The
+ * benchmark methods only ever see one implementation per fork, so the call is inlined.
+ */
+public interface Workload
+{
+  // Performs the operation once and returns a value computed from its result.
+  float run();
+}
@@ -0,0 +1,30 @@
+/**
+ * Axis-aligned bounding box in world coordinates.
+ */
+public class AABB
+{
+  public float minX;
+  public float minY;
+  public float maxX;
+  public float maxY;
+
+  public void set(final float minX, final float minY, final float maxX, final float maxY)
+  {
+    this.minX = minX;
+    this.minY = minY;
+    this.maxX = maxX;
+    this.maxY = maxY;
+  }
+
+  public boolean overlaps(final AABB other)
+  {
+    return minX <= other.maxX && other.minX <= maxX && minY <= other.maxY &&
+           other.minY <= maxY;
+  }
+
+  public boolean isBounded()
+  {
+    return !Float.isInfinite(minX) && !Float.isInfinite(minY) && !Float.isInfinite(maxX) &&
+           !Float.isInfinite(maxY);
+  }
+}
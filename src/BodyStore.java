@@ -0,0 +1,232 @@
+import java.util.Arrays;
+
+/**
+ * State of a set of bodies kept in parallel primitive arrays indexed by body id, so that
+ * loops over all bodies walk contiguous memory. {@link PhysicsObject} is a handle on one
+ * entry of a store.
+ */
+public class BodyStore
+{
+  public float[] mass = new float[0];
+  // Zero for static bodies such as half-spaces.
+  public float[] inverseMass = new float[0];
+  public float[] momentOfInertia = new float[0];
+  public float[] inverseMomentOfInertia = new float[0];
+  // Position of the local coordinate system origin in world coordinates.
+  public float[] positionX = new float[0];
+  public float[] positionY = new float[0];
+  public float[] velocityX = new float[0];
+  public float[] velocityY = new float[0];
+  public float[] forceX = new float[0];
+  public float[] forceY = new float[0];
+  public float[] orientation = new float[0];
+  public float[] angularVelocity = new float[0];
+  // Center of mass relative to the local origin at zero orientation.
+  public float[] centerOfMassX = new float[0];
+  public float[] centerOfMassY = new float[0];
+  // Rotation of each body and its center of mass offset, valid while rotationAngle equals
+  // orientation. Read them after calling updateRotation().
+  public float[] cos = new float[0];
+  public float[] sin = new float[0];
+  public float[] rotatedCenterOfMassX = new float[0];
+  public float[] rotatedCenterOfMassY = new float[0];
+  private float[] rotationAngle = new float[0];
+  // Sleeping bodies are not moved or tested against each other until they are woken.
+  public boolean[] asleep = new boolean[0];
+  // Number of consecutive steps in which a body moved slower than the sleep thresholds.
+  public int[] restingFrames = new int[0];
+  // Island a sleeping body fell asleep with, so that the whole island can be woken.
+  public int[] island = new int[0];
+
+  // Acceleration of every dynamic body on top of the one from its force, such as gravity.
+  public float accelerationX;
+  public float accelerationY;
+
+  private int size;
+  // Number of calls to moved().
+  private int moves;
+
+  public BodyStore()
+  {
+    this(16);
+  }
+
+  public BodyStore(final int capacity)
+  {
+    allocate(Math.max(capacity, 1));
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Adds a body with all of its state set to zero and returns its id.
+   */
+  public int add()
+  {
+    if (size == mass.length)
+    {
+      allocate(size * 2);
+    }
+    rotationAngle[size] = Float.NaN;
+    return size++;
+  }
+
+  /**
+   * Recomputes the cached rotation of a body if its orientation changed since the last
+   * call.
+   */
+  public void updateRotation(final int id)
+  {
+    final float angle = orientation[id];
+    if (rotationAngle[id] != angle)
+    {
+      final float c = (float) Math.cos(angle);
+      final float s = (float) Math.sin(angle);
+      cos[id] = c;
+      sin[id] = s;
+      rotatedCenterOfMassX[id] = c * centerOfMassX[id] - s * centerOfMassY[id];
+      rotatedCenterOfMassY[id] = s * centerOfMassX[id] + c * centerOfMassY[id];
+      rotationAngle[id] = angle;
+    }
+  }
+
+  /**
+   * Moves the origin of a body so that its center of mass is at the given point in world
+   * coordinates, at its current orientation.
+   */
+  public void setGlobalCenterOfMass(final int id, final float x, final float y)
+  {
+    updateRotation(id);
+    positionX[id] = x - rotatedCenterOfMassX[id];
+    positionY[id] = y - rotatedCenterOfMassY[id];
+  }
+
+  public void setCenterOfMass(final int id, final float x, final float y)
+  {
+    centerOfMassX[id] = x;
+    centerOfMassY[id] = y;
+    rotationAngle[id] = Float.NaN;
+  }
+
+  public void setMass(final int id, final float mass)
+  {
+    this.mass[id] = mass;
+    inverseMass[id] = 1 / mass;
+  }
+
+  public void setMomentOfInertia(final int id, final float momentOfInertia)
+  {
+    this.momentOfInertia[id] = momentOfInertia;
+    inverseMomentOfInertia[id] = 1 / momentOfInertia;
+  }
+
+  /**
+   * Copies all state of body {@code id} in {@code source} to body {@code target} here.
+   */
+  public void copy(final BodyStore source, final int id, final int target)
+  {
+    mass[target] = source.mass[id];
+    inverseMass[target] = source.inverseMass[id];
+    momentOfInertia[target] = source.momentOfInertia[id];
+    inverseMomentOfInertia[target] = source.inverseMomentOfInertia[id];
+    positionX[target] = source.positionX[id];
+    positionY[target] = source.positionY[id];
+    velocityX[target] = source.velocityX[id];
+    velocityY[target] = source.velocityY[id];
+    forceX[target] = source.forceX[id];
+    forceY[target] = source.forceY[id];
+    orientation[target] = source.orientation[id];
+    angularVelocity[target] = source.angularVelocity[id];
+    centerOfMassX[target] = source.centerOfMassX[id];
+    centerOfMassY[target] = source.centerOfMassY[id];
+    rotationAngle[target] = Float.NaN;
+    asleep[target] = source.asleep[id];
+    restingFrames[target] = source.restingFrames[id];
+    island[target] = source.island[id];
+  }
+
+  /**
+   * Records that bodies were moved or turned outside of a step, so that what is derived
+   * from their positions between steps, such as the query tree of a {@link World}, is
+   * rebuilt. The setters of {@link PhysicsObject} call it; call it after writing positions
+   * or orientations into the arrays directly.
+   */
+  public void moved()
+  {
+    moves++;
+  }
+
+  public int getMoves()
+  {
+    return moves;
+  }
+
+  // Marks a body as awake and restarts its count of resting steps.
+  public void wake(final int id)
+  {
+    asleep[id] = false;
+    restingFrames[id] = 0;
+  }
+
+  /**
+   * Adds a uniform acceleration to the force accumulator of every dynamic body. Setting
+   * accelerationX and accelerationY has the same effect without touching every body.
+   */
+  public void applyAcceleration(final float accelerationX, final float accelerationY)
+  {
+    for (int i = 0; i < size; i++)
+    {
+      if (inverseMass[i] != 0)
+      {
+        forceX[i] += accelerationX * mass[i];
+        forceY[i] += accelerationY * mass[i];
+      }
+    }
+  }
+
+  // Acceleration of a body from its force and the uniform acceleration.
+  public float getAccelerationX(final int id)
+  {
+    return inverseMass[id] == 0 ? 0 : forceX[id] * inverseMass[id] + accelerationX;
+  }
+
+  public float getAccelerationY(final int id)
+  {
+    return inverseMass[id] == 0 ? 0 : forceY[id] * inverseMass[id] + accelerationY;
+  }
+
+  public void clearForces()
+  {
+    Arrays.fill(forceX, 0, size, 0);
+    Arrays.fill(forceY, 0, size, 0);
+  }
+
+  private void allocate(final int capacity)
+  {
+    mass = Arrays.copyOf(mass, capacity);
+    inverseMass = Arrays.copyOf(inverseMass, capacity);
+    momentOfInertia = Arrays.copyOf(momentOfInertia, capacity);
+    inverseMomentOfInertia = Arrays.copyOf(inverseMomentOfInertia, capacity);
+    positionX = Arrays.copyOf(positionX, capacity);
+    positionY = Arrays.copyOf(positionY, capacity);
+    velocityX = Arrays.copyOf(velocityX, capacity);
+    velocityY = Arrays.copyOf(velocityY, capacity);
+    forceX = Arrays.copyOf(forceX, capacity);
+    forceY = Arrays.copyOf(forceY, capacity);
+    orientation = Arrays.copyOf(orientation, capacity);
+    angularVelocity = Arrays.copyOf(angularVelocity, capacity);
+    centerOfMassX = Arrays.copyOf(centerOfMassX, capacity);
+    centerOfMassY = Arrays.copyOf(centerOfMassY, capacity);
+    cos = Arrays.copyOf(cos, capacity);
+    sin = Arrays.copyOf(sin, capacity);
+    rotatedCenterOfMassX = Arrays.copyOf(rotatedCenterOfMassX, capacity);
+    rotatedCenterOfMassY = Arrays.copyOf(rotatedCenterOfMassY, capacity);
+    rotationAngle = Arrays.copyOf(rotationAngle, capacity);
+    asleep = Arrays.copyOf(asleep, capacity);
+    restingFrames = Arrays.copyOf(restingFrames, capacity);
+    island = Arrays.copyOf(island, capacity);
+  }
+}
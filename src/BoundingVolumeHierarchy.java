@@ -0,0 +1,457 @@
+import java.util.Arrays;
+
+/**
+ * Tree of bounding boxes over a set of objects, for finding the objects near a box, a
+ * point or a ray without testing every one. The tree is built top-down with the surface
+ * area heuristic: each node is split where the summed perimeters of the two halves,
+ * weighted by their object counts, are smallest, choosing among a few candidate planes
+ * along the longer axis of the centers. The nodes are kept in flat arrays in depth-first
+ * order, with the first child of a node right after it.
+ *
+ * The tree does not follow its objects; build it again after they moved, but not during
+ * a query. Each query takes its own segment of one traversal stack, so callbacks may
+ * query the tree again, such as casting a ray from every object a box query finds. The
+ * stack only grows the first time queries nest that deep; queries do not allocate
+ * otherwise. A tree must not be queried from several threads at once.
+ */
+public class BoundingVolumeHierarchy
+{
+  // Nodes with at most this many objects are not split.
+  private static final int MAX_LEAF_SIZE = 4;
+  // Candidate split planes per node.
+  private static final int BINS = 12;
+
+  private PhysicsObject[] objects = new PhysicsObject[0];
+  private int objectCount;
+  // Centers of the bounds of the objects, in the order of the leaves after building.
+  private float[] centerX = new float[0];
+  private float[] centerY = new float[0];
+
+  // Bounds of each node, and the index of its second child or, for leaves, of its first
+  // object. Leaves have a positive object count, inner nodes a count of zero.
+  private float[] minX = new float[0];
+  private float[] minY = new float[0];
+  private float[] maxX = new float[0];
+  private float[] maxY = new float[0];
+  private int[] next = new int[0];
+  private int[] count = new int[0];
+  private int nodeCount;
+  private int depth;
+  // Traversal stack of the queries in progress; the ones below stackUsed are taken.
+  private int[] stack = new int[0];
+  private int stackUsed;
+
+  private final int[] binCount = new int[BINS];
+  private final AABB[] binBounds = new AABB[BINS];
+  // Cost of the objects right of each plane: their count times the perimeter of their
+  // bounds.
+  private final float[] rightCost = new float[BINS];
+
+  public BoundingVolumeHierarchy()
+  {
+    for (int i = 0; i < BINS; i++)
+    {
+      binBounds[i] = new AABB();
+    }
+  }
+
+  public int getObjectCount()
+  {
+    return objectCount;
+  }
+
+  // Whether a query is in progress, during which the tree must not be built.
+  public boolean isQuerying()
+  {
+    return stackUsed > 0;
+  }
+
+  public int getNodeCount()
+  {
+    return nodeCount;
+  }
+
+  /**
+   * Builds the tree over the first {@code count} objects at their current bounds, which
+   * must be up to date and bounded.
+   */
+  public void build(final PhysicsObject[] objects, final int count)
+  {
+    if (this.objects.length < count)
+    {
+      this.objects = new PhysicsObject[count];
+      centerX = new float[count];
+      centerY = new float[count];
+    }
+    for (int i = 0; i < count; i++)
+    {
+      final AABB bounds = objects[i].bounds;
+      if (!bounds.isBounded())
+      {
+        throw new IllegalArgumentException();
+      }
+      this.objects[i] = objects[i];
+      centerX[i] = (bounds.minX + bounds.maxX) / 2;
+      centerY[i] = (bounds.minY + bounds.maxY) / 2;
+    }
+    // Drop references to objects of an earlier, larger build.
+    if (count < objectCount)
+    {
+      Arrays.fill(this.objects, count, objectCount, null);
+    }
+    objectCount = count;
+    nodeCount = 0;
+    depth = 0;
+    if (count > 0)
+    {
+      depth = build(0, count);
+    }
+    if (stack.length < depth + 1)
+    {
+      stack = new int[depth + 1];
+    }
+  }
+
+  // Builds the subtree over objects from..to-1 and returns its depth.
+  private int build(final int from, final int to)
+  {
+    final int node = addNode();
+    float boxMinX = Float.POSITIVE_INFINITY;
+    float boxMinY = Float.POSITIVE_INFINITY;
+    float boxMaxX = Float.NEGATIVE_INFINITY;
+    float boxMaxY = Float.NEGATIVE_INFINITY;
+    float centerMinX = Float.POSITIVE_INFINITY;
+    float centerMinY = Float.POSITIVE_INFINITY;
+    float centerMaxX = Float.NEGATIVE_INFINITY;
+    float centerMaxY = Float.NEGATIVE_INFINITY;
+    for (int i = from; i < to; i++)
+    {
+      final AABB bounds = objects[i].bounds;
+      boxMinX = Math.min(boxMinX, bounds.minX);
+      boxMinY = Math.min(boxMinY, bounds.minY);
+      boxMaxX = Math.max(boxMaxX, bounds.maxX);
+      boxMaxY = Math.max(boxMaxY, bounds.maxY);
+      centerMinX = Math.min(centerMinX, centerX[i]);
+      centerMinY = Math.min(centerMinY, centerY[i]);
+      centerMaxX = Math.max(centerMaxX, centerX[i]);
+      centerMaxY = Math.max(centerMaxY, centerY[i]);
+    }
+    minX[node] = boxMinX;
+    minY[node] = boxMinY;
+    maxX[node] = boxMaxX;
+    maxY[node] = boxMaxY;
+
+    final boolean alongX = centerMaxX - centerMinX >= centerMaxY - centerMinY;
+    final float low = alongX ? centerMinX : centerMinY;
+    final float extent = alongX ? centerMaxX - centerMinX : centerMaxY - centerMinY;
+    final int split = to - from <= MAX_LEAF_SIZE || extent == 0 ? -1
+        : findSplit(from, to, alongX, low, extent,
+                    boxMaxX - boxMinX + boxMaxY - boxMinY);
+    if (split < 0)
+    {
+      next[node] = from;
+      count[node] = to - from;
+      return 1;
+    }
+
+    // Move the objects left of the plane to the front.
+    int middle = from;
+    for (int i = from; i < to; i++)
+    {
+      if (bin(alongX ? centerX[i] : centerY[i], low, extent) < split)
+      {
+        swap(i, middle++);
+      }
+    }
+    final int leftDepth = build(from, middle);
+    next[node] = nodeCount;
+    count[node] = 0;
+    return 1 + Math.max(leftDepth, build(middle, to));
+  }
+
+  /**
+   * Returns the first bin right of the cheapest plane, or -1 if no split is cheaper than
+   * testing all objects of the node.
+   */
+  private int findSplit(final int from, final int to, final boolean alongX, final float low,
+                        final float extent, final float perimeter)
+  {
+    Arrays.fill(binCount, 0);
+    for (int b = 0; b < BINS; b++)
+    {
+      binBounds[b].set(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                       Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+    }
+    for (int i = from; i < to; i++)
+    {
+      final int b = bin(alongX ? centerX[i] : centerY[i], low, extent);
+      binCount[b]++;
+      grow(binBounds[b], objects[i].bounds);
+    }
+    // Sweep from the right, then from the left, pricing each plane.
+    float boundsMinX = Float.POSITIVE_INFINITY;
+    float boundsMinY = Float.POSITIVE_INFINITY;
+    float boundsMaxX = Float.NEGATIVE_INFINITY;
+    float boundsMaxY = Float.NEGATIVE_INFINITY;
+    int objectsRight = 0;
+    for (int b = BINS - 1; b > 0; b--)
+    {
+      final AABB bin = binBounds[b];
+      if (binCount[b] > 0)
+      {
+        boundsMinX = Math.min(boundsMinX, bin.minX);
+        boundsMinY = Math.min(boundsMinY, bin.minY);
+        boundsMaxX = Math.max(boundsMaxX, bin.maxX);
+        boundsMaxY = Math.max(boundsMaxY, bin.maxY);
+      }
+      objectsRight += binCount[b];
+      rightCost[b] = objectsRight == 0 ? 0
+          : objectsRight * (boundsMaxX - boundsMinX + boundsMaxY - boundsMinY);
+    }
+    boundsMinX = Float.POSITIVE_INFINITY;
+    boundsMinY = Float.POSITIVE_INFINITY;
+    boundsMaxX = Float.NEGATIVE_INFINITY;
+    boundsMaxY = Float.NEGATIVE_INFINITY;
+    int objectsLeft = 0;
+    float bestCost = Float.POSITIVE_INFINITY;
+    int best = -1;
+    for (int b = 1; b < BINS; b++)
+    {
+      final AABB bin = binBounds[b - 1];
+      if (binCount[b - 1] > 0)
+      {
+        boundsMinX = Math.min(boundsMinX, bin.minX);
+        boundsMinY = Math.min(boundsMinY, bin.minY);
+        boundsMaxX = Math.max(boundsMaxX, bin.maxX);
+        boundsMaxY = Math.max(boundsMaxY, bin.maxY);
+      }
+      objectsLeft += binCount[b - 1];
+      if (objectsLeft == 0 || objectsLeft == to - from)
+      {
+        continue;
+      }
+      final float cost =
+          objectsLeft * (boundsMaxX - boundsMinX + boundsMaxY - boundsMinY) + rightCost[b];
+      if (cost < bestCost)
+      {
+        bestCost = cost;
+        best = b;
+      }
+    }
+    // A leaf costs a test of every object against the whole node.
+    return to - from > 2 * MAX_LEAF_SIZE || bestCost < (to - from) * perimeter ? best : -1;
+  }
+
+  private static int bin(final float center, final float low, final float extent)
+  {
+    return Math.min((int) ((center - low) / extent * BINS), BINS - 1);
+  }
+
+  private static void grow(final AABB box, final AABB bounds)
+  {
+    box.minX = Math.min(box.minX, bounds.minX);
+    box.minY = Math.min(box.minY, bounds.minY);
+    box.maxX = Math.max(box.maxX, bounds.maxX);
+    box.maxY = Math.max(box.maxY, bounds.maxY);
+  }
+
+  private void swap(final int i, final int j)
+  {
+    final PhysicsObject object = objects[i];
+    objects[i] = objects[j];
+    objects[j] = object;
+    final float x = centerX[i];
+    centerX[i] = centerX[j];
+    centerX[j] = x;
+    final float y = centerY[i];
+    centerY[i] = centerY[j];
+    centerY[j] = y;
+  }
+
+  private int addNode()
+  {
+    if (nodeCount == minX.length)
+    {
+      final int capacity = Math.max(2 * nodeCount, 16);
+      minX = Arrays.copyOf(minX, capacity);
+      minY = Arrays.copyOf(minY, capacity);
+      maxX = Arrays.copyOf(maxX, capacity);
+      maxY = Arrays.copyOf(maxY, capacity);
+      next = Arrays.copyOf(next, capacity);
+      count = Arrays.copyOf(count, capacity);
+    }
+    return nodeCount++;
+  }
+
+  /**
+   * Reports every object whose bounds overlap the box. Returns false if the callback
+   * ended the query.
+   */
+  public boolean query(final AABB box, final QueryCallback callback)
+  {
+    if (nodeCount == 0)
+    {
+      return true;
+    }
+    final int base = beginQuery();
+    try
+    {
+      return query(box, callback, base);
+    }
+    finally
+    {
+      stackUsed = base;
+    }
+  }
+
+  private boolean query(final AABB box, final QueryCallback callback, final int base)
+  {
+    final int[] stack = this.stack;
+    int top = base;
+    stack[top++] = 0;
+    while (top > base)
+    {
+      final int node = stack[--top];
+      if (minX[node] > box.maxX || box.minX > maxX[node] || minY[node] > box.maxY ||
+          box.minY > maxY[node])
+      {
+        continue;
+      }
+      if (count[node] == 0)
+      {
+        stack[top++] = next[node];
+        stack[top++] = node + 1;
+        continue;
+      }
+      for (int i = next[node]; i < next[node] + count[node]; i++)
+      {
+        if (objects[i].bounds.overlaps(box) && !callback.found(objects[i]))
+        {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reports every object that contains the point. Returns false if the callback ended
+   * the query.
+   */
+  public boolean queryPoint(final float x, final float y, final QueryCallback callback)
+  {
+    if (nodeCount == 0)
+    {
+      return true;
+    }
+    final int base = beginQuery();
+    try
+    {
+      return queryPoint(x, y, callback, base);
+    }
+    finally
+    {
+      stackUsed = base;
+    }
+  }
+
+  private boolean queryPoint(final float x, final float y, final QueryCallback callback,
+                             final int base)
+  {
+    final int[] stack = this.stack;
+    int top = base;
+    stack[top++] = 0;
+    while (top > base)
+    {
+      final int node = stack[--top];
+      if (x < minX[node] || x > maxX[node] || y < minY[node] || y > maxY[node])
+      {
+        continue;
+      }
+      if (count[node] == 0)
+      {
+        stack[top++] = next[node];
+        stack[top++] = node + 1;
+        continue;
+      }
+      for (int i = next[node]; i < next[node] + count[node]; i++)
+      {
+        final AABB bounds = objects[i].bounds;
+        if (x >= bounds.minX && x <= bounds.maxX && y >= bounds.minY && y <= bounds.maxY &&
+            objects[i].containsPoint(x, y) && !callback.found(objects[i]))
+        {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Finds the object that the ray origin + t * direction enters first, for t below the
+   * fraction of the hit, and stores it in the hit. Nodes beyond the nearest hit so far are
+   * skipped. Returns whether a nearer hit was found.
+   */
+  public boolean raycast(final float originX, final float originY, final float directionX,
+                         final float directionY, final RaycastHit hit)
+  {
+    if (nodeCount == 0)
+    {
+      return false;
+    }
+    final float inverseX = 1 / directionX;
+    final float inverseY = 1 / directionY;
+    boolean found = false;
+    final int base = beginQuery();
+    final int[] stack = this.stack;
+    int top = base;
+    stack[top++] = 0;
+    while (top > base)
+    {
+      final int node = stack[--top];
+      if (!crosses(node, originX, originY, inverseX, inverseY, hit.fraction))
+      {
+        continue;
+      }
+      if (count[node] == 0)
+      {
+        stack[top++] = next[node];
+        stack[top++] = node + 1;
+        continue;
+      }
+      for (int i = next[node]; i < next[node] + count[node]; i++)
+      {
+        found |= objects[i].raycast(originX, originY, directionX, directionY, hit);
+      }
+    }
+    stackUsed = base;
+    return found;
+  }
+
+  // Takes a segment of the stack for a traversal above those in progress, and returns
+  // its start.
+  private int beginQuery()
+  {
+    final int base = stackUsed;
+    stackUsed = base + depth + 1;
+    if (stack.length < stackUsed)
+    {
+      stack = Arrays.copyOf(stack, 2 * stackUsed);
+    }
+    return base;
+  }
+
+  // Slab test of the ray against the bounds of a node.
+  private boolean crosses(final int node, final float originX, final float originY,
+                          final float inverseX, final float inverseY, final float maxFraction)
+  {
+    final float x1 = (minX[node] - originX) * inverseX;
+    final float x2 = (maxX[node] - originX) * inverseX;
+    final float y1 = (minY[node] - originY) * inverseY;
+    final float y2 = (maxY[node] - originY) * inverseY;
+    // NaN from a zero direction through the edge of a box counts as a crossing.
+    final float enter = Math.max(Math.max(Math.min(x1, x2), Math.min(y1, y2)), 0);
+    final float exit = Math.min(Math.min(Math.max(x1, x2), Math.max(y1, y2)), maxFraction);
+    return !(enter > exit);
+  }
+}
@@ -0,0 +1,13 @@
+/**
+ * Culls object pairs that cannot collide before the narrow phase runs.
+ */
+public interface BroadPhase
+{
+  /**
+   * Clears {@code pairs} and fills it with the indices of every pair of the first
+   * {@code count} objects whose bounding boxes overlap. Each pair is reported once, with
+   * the lower index first. Pairs of two sleeping objects are left out. The bounds of the
+   * objects must already be up to date.
+   */
+  void findPairs(PhysicsObject[] objects, int count, PairList pairs);
+}
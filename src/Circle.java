@@ -3,20 +3,19 @@ import java.awt.Color;
 import javax.media.j3d.Appearance;
 import javax.media.j3d.BranchGroup;
 import javax.media.j3d.ColoringAttributes;
-import javax.media.j3d.GeometryArray;
 import javax.media.j3d.Node;
-import javax.media.j3d.PointArray;
-import javax.media.j3d.PointAttributes;
-import javax.media.j3d.PolygonAttributes;
 import javax.media.j3d.Shape3D;
-import javax.media.j3d.TriangleFanArray;
 import javax.vecmath.Color3f;
-import javax.vecmath.Point3f;
 import javax.vecmath.Tuple2f;
 
 public class Circle extends PhysicsObject
 {
+  // Number of segments of the outline.
+  private static final int SAMPLES = 20;
+
   public float radius;
+  private Color3f color1;
+  private Color3f color2;
 
   public Circle(float mass, float positionX, float positionY, float velocityX,
                 float velocityY, float orientation, float angularVelocity, float radius,
@@ -27,12 +26,13 @@ public class Circle extends PhysicsObject
     if (radius <= 0)
       throw new IllegalArgumentException();
 
-    momentOfInertia = mass * radius * radius / 2;
-    centerOfMass.x = radius / 2;
+    setShapeType(CIRCLE);
+    setCenterOfMass(radius / 2, 0);
     // Using the parallel axis theorem
-    momentOfInertia += mass * centerOfMass.lengthSquared();
+    setMomentOfInertia(mass * radius * radius / 2 + mass * radius * radius / 4);
     this.radius = radius;
-    TG.addChild(createShape(radius, 20, color1, color2));
+    this.color1 = color1;
+    this.color2 = color2;
   }
 
   public Circle(float mass, Tuple2f position, Tuple2f velocity, float orientation,
@@ -42,57 +42,115 @@ public class Circle extends PhysicsObject
          radius, color1, color2);
   }
 
-  private Node createShape(float radius, int samples, Color3f color1, Color3f color2)
+  public float getInnerRadius()
   {
-    samples += samples % 2;
+    // The center of mass is half a radius off the center.
+    return radius / 2;
+  }
 
-    TriangleFanArray topGeometry =
-        new TriangleFanArray(samples / 2 + 2, GeometryArray.COORDINATES,
-                             new int[] {samples / 2 + 2});
-    Point3f[] vertices = new Point3f[samples / 2 + 2];
-    vertices[0] = new Point3f();
-    for (int i = 0; i <= samples / 2; i++)
-      vertices[i + 1] =
-          new Point3f(radius * (float) Math.cos(2 * Math.PI * i / samples),
-                      radius * (float) Math.sin(2 * Math.PI * i / samples), 0);
-    topGeometry.setCoordinates(0, vertices);
-
-    TriangleFanArray bottomGeometry =
-        new TriangleFanArray(samples / 2 + 2, GeometryArray.COORDINATES,
-                             new int[] {samples / 2 + 2});
-    for (int i = samples / 2; i <= samples; i++)
-      vertices[i - samples / 2 + 1] =
-          new Point3f(radius * (float) Math.cos(2 * Math.PI * i / samples),
-                      radius * (float) Math.sin(2 * Math.PI * i / samples), 0);
-    bottomGeometry.setCoordinates(0, vertices);
-
-    PointArray centerOfMassGeometry = new PointArray(1, GeometryArray.COORDINATES);
-    centerOfMassGeometry.setCoordinate(0, new Point3f(centerOfMass.x, centerOfMass.y, 0));
+  public boolean containsPoint(final float x, final float y)
+  {
+    final float dx = x - getPositionX();
+    final float dy = y - getPositionY();
+    return dx * dx + dy * dy <= radius * radius;
+  }
 
-    BranchGroup root = new BranchGroup();
+  public boolean raycast(final float originX, final float originY, final float directionX,
+                         final float directionY, final RaycastHit hit)
+  {
+    final float offsetX = originX - getPositionX();
+    final float offsetY = originY - getPositionY();
+    final float c = offsetX * offsetX + offsetY * offsetY - radius * radius;
+    final float a = directionX * directionX + directionY * directionY;
+    final float b = offsetX * directionX + offsetY * directionY;
+    final float discriminant = b * b - a * c;
+    if (c <= 0 || a == 0 || discriminant < 0)
+    {
+      return false;
+    }
+    // The first of the two intersections of the ray with the circle.
+    final float t = (-b - (float) Math.sqrt(discriminant)) / a;
+    if (t < 0 || t >= hit.fraction)
+    {
+      return false;
+    }
+    hit.set(this, t, (offsetX + t * directionX) / radius, (offsetY + t * directionY) / radius);
+    return true;
+  }
+
+  public void updateBounds()
+  {
+    final float positionX = getPositionX();
+    final float positionY = getPositionY();
+    bounds.set(positionX - radius, positionY - radius, positionX + radius, positionY + radius);
+  }
+
+  protected Node createShape()
+  {
+    chooseColors();
+    return createShape(radius, SAMPLES, color1, color2);
+  }
+
+  public int getTriangleCount()
+  {
+    return SAMPLES;
+  }
+
+  public void getTriangles(final float[] vertices, final float[] colors, final int offset)
+  {
+    chooseColors();
+    // A fan around the center, one half in each color.
+    for (int i = 0; i < SAMPLES; i++)
+    {
+      final int vertex = offset + 3 * i;
+      final double angle1 = 2 * Math.PI * i / SAMPLES;
+      final double angle2 = 2 * Math.PI * (i + 1) / SAMPLES;
+      vertices[2 * vertex] = 0;
+      vertices[2 * vertex + 1] = 0;
+      vertices[2 * vertex + 2] = radius * (float) Math.cos(angle1);
+      vertices[2 * vertex + 3] = radius * (float) Math.sin(angle1);
+      vertices[2 * vertex + 4] = radius * (float) Math.cos(angle2);
+      vertices[2 * vertex + 5] = radius * (float) Math.sin(angle2);
+      final Color3f color = i < SAMPLES / 2 ? color1 : color2;
+      for (int k = 0; k < 3; k++)
+      {
+        colors[3 * (vertex + k)] = color.x;
+        colors[3 * (vertex + k) + 1] = color.y;
+        colors[3 * (vertex + k) + 2] = color.z;
+      }
+    }
+  }
+
+  // Picks random colors for the ones that were not given.
+  private void chooseColors()
+  {
     if (color1 == null)
       color1 =
           new Color3f(Color.getHSBColor((float) Math.random(), (float) Math.random(),
                                         (float) Math.max(Math.random(), 0.5)));
+    if (color2 == null)
+      color2 = new Color3f(Color.getHSBColor((float) Math.random(), 1, 1));
+  }
+
+  private Node createShape(float radius, int samples, Color3f color1, Color3f color2)
+  {
+    samples += samples % 2;
+
+    BranchGroup root = new BranchGroup();
     Appearance appearance = new Appearance();
     appearance
         .setColoringAttributes(new ColoringAttributes(color1, ColoringAttributes.FASTEST));
-    PolygonAttributes polyAttr =
-        new PolygonAttributes(PolygonAttributes.POLYGON_FILL, PolygonAttributes.CULL_NONE, 0);
-    appearance.setPolygonAttributes(polyAttr);
-    root.addChild(new Shape3D(topGeometry, appearance));
+    appearance.setPolygonAttributes(GeometryCache.getPolygonAttributes());
+    root.addChild(new Shape3D(GeometryCache.getHalfCircle(radius, samples, true), appearance));
 
-    if (color2 == null)
-      color2 = new Color3f(Color.getHSBColor((float) Math.random(), 1, 1));
     appearance = new Appearance();
     appearance
         .setColoringAttributes(new ColoringAttributes(color2, ColoringAttributes.FASTEST));
-    appearance.setPolygonAttributes(polyAttr);
-    root.addChild(new Shape3D(bottomGeometry, appearance));
+    appearance.setPolygonAttributes(GeometryCache.getPolygonAttributes());
+    root.addChild(new Shape3D(GeometryCache.getHalfCircle(radius, samples, false), appearance));
 
-    appearance = new Appearance();
-    appearance.setPointAttributes(new PointAttributes(4, true));
-    root.addChild(new Shape3D(centerOfMassGeometry, appearance));
+    root.addChild(new Shape3D(GeometryCache.getPoint(getCenterOfMassX(), getCenterOfMassY()),
+                              GeometryCache.getCenterOfMassAppearance()));
 
     return root;
   }
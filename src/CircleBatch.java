@@ -0,0 +1,187 @@
+import java.util.Arrays;
+
+/**
+ * Narrow phase for many circles at once. Candidate circle pairs and the circles tested
+ * against the boundaries are gathered into primitive arrays, and the depths and normals of
+ * the whole batch are computed in straight loops without calls or object accesses, which
+ * the JIT can unroll and vectorize. Pairs that do not touch get a negative depth.
+ */
+public class CircleBatch
+{
+  // Gathered circle pairs: object indices, centers and radii.
+  int pairCount;
+  int[] pairA = new int[0];
+  int[] pairB = new int[0];
+  float[] ax = new float[0];
+  float[] ay = new float[0];
+  float[] ar = new float[0];
+  float[] bx = new float[0];
+  float[] by = new float[0];
+  float[] br = new float[0];
+  // Results of circleCircle(), by gathered pair.
+  float[] normalX = new float[0];
+  float[] normalY = new float[0];
+  float[] depth = new float[0];
+
+  // Gathered circles: object indices, centers and radii.
+  int circleCount;
+  int[] circle = new int[0];
+  // Index of each object among the gathered circles, or -1, by object index.
+  private int[] slot = new int[0];
+  float[] cx = new float[0];
+  float[] cy = new float[0];
+  float[] cr = new float[0];
+  // Result of halfSpaceCircle(), by gathered circle.
+  float[] boundaryDepth = new float[0];
+
+  /**
+   * Computes the penetration depth and the unit normal from a to b of {@code count} circle
+   * pairs. Coincident centers get the normal (1, 0).
+   */
+  public static void circleCircle(final float[] ax, final float[] ay, final float[] ar,
+                                  final float[] bx, final float[] by, final float[] br,
+                                  final int count, final float[] normalX,
+                                  final float[] normalY, final float[] depth)
+  {
+    for (int i = 0; i < count; i++)
+    {
+      final float dx = bx[i] - ax[i];
+      final float dy = by[i] - ay[i];
+      final float length = (float) Math.sqrt(dx * dx + dy * dy);
+      final float inverse = length > 0 ? 1 / length : 0;
+      normalX[i] = length > 0 ? dx * inverse : 1;
+      normalY[i] = dy * inverse;
+      depth[i] = ar[i] + br[i] - length;
+    }
+  }
+
+  /**
+   * Computes how deep {@code count} circles reach into the half-space with the given unit
+   * normal and intercept. The normal of every contact is the normal of the half-space.
+   */
+  public static void halfSpaceCircle(final float normalX, final float normalY,
+                                     final float intercept, final float[] cx,
+                                     final float[] cy, final float[] cr, final int count,
+                                     final float[] depth)
+  {
+    for (int i = 0; i < count; i++)
+    {
+      depth[i] = intercept + cr[i] - (normalX * cx[i] + normalY * cy[i]);
+    }
+  }
+
+  /**
+   * Gathers the centers and radii of all circles, by object index. Call before
+   * {@link #collidePairs(PairList)} and {@link #collideBoundary(HalfSpace)}.
+   */
+  void gatherCircles(final PhysicsObject[] objects, final int count)
+  {
+    if (circle.length < count)
+    {
+      growCircles(count);
+    }
+    final int[] circle = this.circle;
+    final int[] slot = this.slot;
+    final float[] cx = this.cx;
+    final float[] cy = this.cy;
+    final float[] cr = this.cr;
+    int n = 0;
+    for (int i = 0; i < count; i++)
+    {
+      final PhysicsObject o = objects[i];
+      if (o.getShapeType() != PhysicsObject.CIRCLE)
+      {
+        slot[i] = -1;
+        continue;
+      }
+      final BodyStore store = o.getStore();
+      slot[i] = n;
+      circle[n] = i;
+      cx[n] = store.positionX[o.getId()];
+      cy[n] = store.positionY[o.getId()];
+      cr[n] = ((Circle) o).radius;
+      n++;
+    }
+    circleCount = n;
+  }
+
+  /**
+   * Gathers the pairs of two circles from {@code pairs} and runs {@link #circleCircle} on
+   * them. Only reads the arrays filled by gatherCircles(), not the objects.
+   */
+  void collidePairs(final PairList pairs)
+  {
+    if (pairA.length < pairs.size)
+    {
+      growPairs(pairs.size);
+    }
+    final int[] first = pairs.first;
+    final int[] second = pairs.second;
+    final int[] slot = this.slot;
+    final float[] cx = this.cx;
+    final float[] cy = this.cy;
+    final float[] cr = this.cr;
+    final int[] pairA = this.pairA;
+    final int[] pairB = this.pairB;
+    final float[] ax = this.ax;
+    final float[] ay = this.ay;
+    final float[] ar = this.ar;
+    final float[] bx = this.bx;
+    final float[] by = this.by;
+    final float[] br = this.br;
+    int n = 0;
+    for (int p = 0; p < pairs.size; p++)
+    {
+      final int a = slot[first[p]];
+      final int b = slot[second[p]];
+      if (a < 0 || b < 0)
+      {
+        continue;
+      }
+      pairA[n] = first[p];
+      pairB[n] = second[p];
+      ax[n] = cx[a];
+      ay[n] = cy[a];
+      ar[n] = cr[a];
+      bx[n] = cx[b];
+      by[n] = cy[b];
+      br[n] = cr[b];
+      n++;
+    }
+    pairCount = n;
+    circleCircle(ax, ay, ar, bx, by, br, n, normalX, normalY, depth);
+  }
+
+  void collideBoundary(final HalfSpace boundary)
+  {
+    halfSpaceCircle(boundary.normal.x, boundary.normal.y, boundary.intercept, cx, cy, cr,
+                    circleCount, boundaryDepth);
+  }
+
+  private void growPairs(final int size)
+  {
+    final int capacity = Math.max(size, pairA.length * 2);
+    pairA = Arrays.copyOf(pairA, capacity);
+    pairB = Arrays.copyOf(pairB, capacity);
+    ax = Arrays.copyOf(ax, capacity);
+    ay = Arrays.copyOf(ay, capacity);
+    ar = Arrays.copyOf(ar, capacity);
+    bx = Arrays.copyOf(bx, capacity);
+    by = Arrays.copyOf(by, capacity);
+    br = Arrays.copyOf(br, capacity);
+    normalX = new float[capacity];
+    normalY = new float[capacity];
+    depth = new float[capacity];
+  }
+
+  private void growCircles(final int size)
+  {
+    final int capacity = Math.max(size, circle.length * 2);
+    circle = Arrays.copyOf(circle, capacity);
+    slot = new int[capacity];
+    cx = Arrays.copyOf(cx, capacity);
+    cy = Arrays.copyOf(cy, capacity);
+    cr = Arrays.copyOf(cr, capacity);
+    boundaryDepth = new float[capacity];
+  }
+}
@@ -0,0 +1,13 @@
+/**
+ * Narrow phase routine for one pair of shape types, registered with
+ * {@link CollisionHandler#register(int, int, Collider)}.
+ */
+public interface Collider
+{
+  /**
+   * Fills {@code ci} with the collision between a and b. The normal must point out of a.
+   *
+   * @return whether the objects are colliding; {@code ci} is undefined otherwise
+   */
+  boolean collide(PhysicsObject a, PhysicsObject b, CollisionInfo ci);
+}
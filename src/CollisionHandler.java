@@ -1,8 +1,10 @@
 import javax.vecmath.Vector2f;
-import javax.vecmath.Vector3f;
 
 /**
- * 
+ * Narrow phase collision detection and impulse based resolution. A handler keeps its
+ * collision info and scratch vectors between calls so that detecting and resolving a
+ * collision does not allocate; use one handler per thread.
+ *
  * @author Daniel Beraun
  * @author Phil Adriaan
  *
@@ -11,367 +13,464 @@ public class CollisionHandler
 {
   private static final float COEFFICIENT_OF_RESTITUTION = 0.9f;
 
-  public static void checkAndResolveCollision(final PhysicsObject a, final PhysicsObject b)
+  // Narrow phase routines indexed by the shape types of both objects. Replaced as a whole
+  // on registration so that readers never see a partially updated table.
+  private static volatile Collider[][] colliders = new Collider[0][0];
+
+  static
   {
-    final CollisionInfo ci = getCollisionInfo(a, b);
-    if (ci == null)
+    register(PhysicsObject.HALF_SPACE, PhysicsObject.CIRCLE, new Collider()
+    {
+      public boolean collide(final PhysicsObject a, final PhysicsObject b,
+                             final CollisionInfo ci)
+      {
+        return getCollision((HalfSpace) a, (Circle) b, ci);
+      }
+    });
+    register(PhysicsObject.HALF_SPACE, PhysicsObject.POLYGON, new Collider()
+    {
+      public boolean collide(final PhysicsObject a, final PhysicsObject b,
+                             final CollisionInfo ci)
+      {
+        return getCollision((HalfSpace) a, (ConvexPolygon) b, ci);
+      }
+    });
+    register(PhysicsObject.CIRCLE, PhysicsObject.CIRCLE, new Collider()
+    {
+      public boolean collide(final PhysicsObject a, final PhysicsObject b,
+                             final CollisionInfo ci)
+      {
+        return getCollision((Circle) a, (Circle) b, ci);
+      }
+    });
+    register(PhysicsObject.CIRCLE, PhysicsObject.POLYGON, new Collider()
+    {
+      public boolean collide(final PhysicsObject a, final PhysicsObject b,
+                             final CollisionInfo ci)
+      {
+        return getCollision((Circle) a, (ConvexPolygon) b, ci);
+      }
+    });
+    register(PhysicsObject.POLYGON, PhysicsObject.POLYGON, new Collider()
     {
-      return;
+      public boolean collide(final PhysicsObject a, final PhysicsObject b,
+                             final CollisionInfo ci)
+      {
+        return getCollision((ConvexPolygon) a, (ConvexPolygon) b, ci);
+      }
+    });
+  }
+
+  private final CollisionInfo ci = new CollisionInfo();
+  private final Vector2f centerOfMassA = new Vector2f();
+  private final Vector2f centerOfMassB = new Vector2f();
+  // Collisions resolved since the last resetCounters(), and their summed depth.
+  private int collisionCount;
+  private double depthTotal;
+
+  /**
+   * Resolves the collision between a and b, if any.
+   *
+   * @return whether the objects were colliding
+   */
+  public boolean checkAndResolveCollision(final PhysicsObject a, final PhysicsObject b)
+  {
+    final CollisionInfo ci = this.ci;
+    if (!getCollisionInfo(a, b, ci))
+    {
+      return false;
     }
+    collisionCount++;
+    depthTotal += ci.depth;
+    final float normalX = ci.normal.x;
+    final float normalY = ci.normal.y;
+    final BodyStore storeA = a.getStore();
+    final int idA = a.getId();
+    final BodyStore storeB = b.getStore();
+    final int idB = b.getId();
+    final float inverseMassA = storeA.inverseMass[idA];
+    final float inverseMassB = storeB.inverseMass[idB];
+    final float inverseMomentOfInertiaA = storeA.inverseMomentOfInertia[idA];
+    final float inverseMomentOfInertiaB = storeB.inverseMomentOfInertia[idB];
 
+    a.getGlobalCenterOfMass(centerOfMassA);
+    b.getGlobalCenterOfMass(centerOfMassB);
     // Vector from the center of mass of object a to the collision point
-    final Vector2f r_ap = new Vector2f();
-    r_ap.scaleAdd(-1, a.getGlobalCenterOfMass(), ci.position);
+    final float r_apX = ci.position.x - centerOfMassA.x;
+    final float r_apY = ci.position.y - centerOfMassA.y;
     // Vector from the center of mass of object b to the collision point
-    final Vector2f r_bp = new Vector2f();
-    r_bp.scaleAdd(-1, b.getGlobalCenterOfMass(), ci.position);
+    final float r_bpX = ci.position.x - centerOfMassB.x;
+    final float r_bpY = ci.position.y - centerOfMassB.y;
     // Velocity of object a at the point of collision
-    final Vector2f v_ap1 = new Vector2f();
-    v_ap1.x = a.velocity.x - a.angularVelocity * r_ap.y;
-    v_ap1.y = a.velocity.y + a.angularVelocity * r_ap.x;
+    final float v_ap1X = storeA.velocityX[idA] - storeA.angularVelocity[idA] * r_apY;
+    final float v_ap1Y = storeA.velocityY[idA] + storeA.angularVelocity[idA] * r_apX;
     // Velocity of object b at the point of collision
-    final Vector2f v_bp1 = new Vector2f();
-    v_bp1.x = b.velocity.x - b.angularVelocity * r_bp.y;
-    v_bp1.y = b.velocity.y + b.angularVelocity * r_bp.x;
+    final float v_bp1X = storeB.velocityX[idB] - storeB.angularVelocity[idB] * r_bpY;
+    final float v_bp1Y = storeB.velocityY[idB] + storeB.angularVelocity[idB] * r_bpX;
     // The collision impulse
-    final Vector2f v_ab1 = new Vector2f();
-    v_ab1.scaleAdd(-1, v_bp1, v_ap1);
-    final float tmpA = r_ap.x * ci.normal.y - r_ap.y * ci.normal.x;
-    final float tmpB = r_bp.x * ci.normal.y - r_bp.y * ci.normal.x;
+    final float v_ab1X = v_ap1X - v_bp1X;
+    final float v_ab1Y = v_ap1Y - v_bp1Y;
+    final float tmpA = r_apX * normalY - r_apY * normalX;
+    final float tmpB = r_bpX * normalY - r_bpY * normalX;
     final float j =
         -(1 + COEFFICIENT_OF_RESTITUTION) *
-            v_ab1.dot(ci.normal) /
-            (1 / a.mass + 1 / b.mass + tmpA * tmpA / a.momentOfInertia + tmpB * tmpB /
-                                                                         b.momentOfInertia);
-    // Update object a's velocity
-    a.velocity.scaleAdd(j / a.mass, ci.normal, a.velocity);
-    // Update object b's velocity
-    b.velocity.scaleAdd(-j / b.mass, ci.normal, b.velocity);
-    // Update object a's angular velocity
-    a.angularVelocity += j * (r_ap.x * ci.normal.y - r_ap.y * ci.normal.x) / a.momentOfInertia;
-    // Update object b's angular velocity
-    b.angularVelocity -= j * (r_bp.x * ci.normal.y - r_bp.y * ci.normal.x) / b.momentOfInertia;
-    // Remove object overlap
-
-    a.position.scaleAdd(-ci.depth / (a.mass * (1 / a.mass + 1 / b.mass)), ci.normal,
-                        a.position);
-    b.position
-        .scaleAdd(ci.depth / (b.mass * (1 / a.mass + 1 / b.mass)), ci.normal, b.position);
-
-    // Overlap Resolution using rotation
-    Vector2f l = new Vector2f();
-    l.scale(1, ci.normal);
-    l.normalize();
-    l.scale(ci.depth, l);
-    Vector2f la = new Vector2f();
-    la.scaleAdd(1, ci.position, l);
-    l.scale(2, l);
-    Vector2f lb = new Vector2f();
-    lb.scaleAdd(1, ci.position, l);
-    Vector2f a_a = new Vector2f(la.x - b.position.x, la.y - b.position.y);
-    Vector2f a_b = new Vector2f(lb.x - b.position.x, lb.y - b.position.y);
-    float aa = a_a.length();
-    float ab = a_b.length();
-    float ac = ci.depth;
-    float angle =
-        (float) Math.acos((Math.pow(aa, 2) + Math.pow(ab, 2) - Math.pow(ac, 2)) / 2 * aa * ab);
-    if (!Float.isNaN(angle))
+            (v_ab1X * normalX + v_ab1Y * normalY) /
+            (inverseMassA + inverseMassB + tmpA * tmpA * inverseMomentOfInertiaA +
+             tmpB * tmpB * inverseMomentOfInertiaB);
+    // Static objects are never written, so that several threads can resolve collisions
+    // against the same boundary.
+    if (inverseMassA != 0)
     {
-      angle = (float) Math.toRadians(angle);
-      // System.out.println(angle);
-      Vector3f cross = new Vector3f();
-      Vector3f la3 = new Vector3f(la.x, la.y, 0);
-      Vector3f lb3 = new Vector3f(lb.x, lb.y, 0);
-      cross.cross(la3, lb3);
-      if (cross.z > 0)
-      {
-        b.orientation += angle / b.mass;
-      }
-      else
-      {
-        b.orientation -= angle / b.mass;
-      }
+      // Update object a's velocity
+      storeA.velocityX[idA] += j * inverseMassA * normalX;
+      storeA.velocityY[idA] += j * inverseMassA * normalY;
+      // Update object a's angular velocity
+      storeA.angularVelocity[idA] += j * tmpA * inverseMomentOfInertiaA;
+      // Remove object overlap
+      final float shareA = -ci.depth * inverseMassA / (inverseMassA + inverseMassB);
+      storeA.positionX[idA] += shareA * normalX;
+      storeA.positionY[idA] += shareA * normalY;
     }
-    // End of overlap resolution
-    
+    if (inverseMassB != 0)
+    {
+      // Update object b's velocity
+      storeB.velocityX[idB] -= j * inverseMassB * normalX;
+      storeB.velocityY[idB] -= j * inverseMassB * normalY;
+      // Update object b's angular velocity
+      storeB.angularVelocity[idB] -= j * tmpB * inverseMomentOfInertiaB;
+      // Remove object overlap
+      final float shareB = ci.depth * inverseMassB / (inverseMassA + inverseMassB);
+      storeB.positionX[idB] += shareB * normalX;
+      storeB.positionY[idB] += shareB * normalY;
+    }
+
     a.clearCaches();
     b.clearCaches();
+    return true;
   }
 
-  private static CollisionInfo getCollisionInfo(final PhysicsObject a, final PhysicsObject b)
+  public int getCollisionCount()
+  {
+    return collisionCount;
+  }
+
+  // Sum of the penetration depths of the resolved collisions.
+  public double getDepthTotal()
+  {
+    return depthTotal;
+  }
+
+  public void resetCounters()
+  {
+    collisionCount = 0;
+    depthTotal = 0;
+  }
+
+  /**
+   * Fills {@code ci} with the collision between a and b.
+   *
+   * @return whether the objects are colliding; {@code ci} is undefined otherwise
+   */
+  public boolean getCollisionInfo(final PhysicsObject a, final PhysicsObject b,
+                                  final CollisionInfo ci)
   {
     if (a == b)
     {
-      return null;
+      return false;
     }
-    CollisionInfo ci = null;
-    if (a instanceof HalfSpace)
+    final Collider[][] table = colliders;
+    final int typeA = a.getShapeType();
+    final int typeB = b.getShapeType();
+    if (typeA < 0 || typeB < 0 || typeA >= table.length || typeB >= table.length)
     {
-      if (b instanceof Circle)
-      {
-        ci = getCollision((HalfSpace) a, (Circle) b);
-      }
-      else if (b instanceof Triangle)
-      {
-        ci = getCollision((HalfSpace) a, (Triangle) b);
-      }
+      return false;
     }
-    else if (a instanceof Circle)
+    final Collider collider = table[typeA][typeB];
+    return collider != null && collider.collide(a, b, ci);
+  }
+
+  /**
+   * Registers the narrow phase routine for objects of the given shape types. The reversed
+   * pair is registered as well, calling {@code collider} with swapped arguments and
+   * flipping the normal. Register new shape types before stepping any world.
+   */
+  public static synchronized void register(final int typeA, final int typeB,
+                                           final Collider collider)
+  {
+    final int size = Math.max(colliders.length, Math.max(typeA, typeB) + 1);
+    final Collider[][] table = new Collider[size][size];
+    for (int i = 0; i < colliders.length; i++)
     {
-      if (b instanceof Circle)
-      {
-        ci = getCollision((Circle) a, (Circle) b);
-      }
-      else if (b instanceof Triangle)
-      {
-        ci = getCollision((Circle) a, (Triangle) b);
-      }
+      System.arraycopy(colliders[i], 0, table[i], 0, colliders.length);
     }
-    else if (a instanceof Triangle)
+    table[typeA][typeB] = collider;
+    if (typeA != typeB)
     {
-      if (b instanceof Triangle)
+      table[typeB][typeA] = new Collider()
       {
-        ci = getCollision((Triangle) a, (Triangle) b);
-      }
-      else if (b instanceof Circle)
-      {
-        ci = getCollision((Circle) b, (Triangle) a);
-      }
+        public boolean collide(final PhysicsObject a, final PhysicsObject b,
+                               final CollisionInfo ci)
+        {
+          if (!collider.collide(b, a, ci))
+          {
+            return false;
+          }
+          ci.normal.negate();
+          return true;
+        }
+      };
     }
-    return ci;
+    colliders = table;
   }
 
-  private static CollisionInfo getCollision(final Circle a, final Triangle b)
+  private static boolean getCollision(final Circle a, final ConvexPolygon b,
+                                      final CollisionInfo ci)
   {
     final Vector2f[] verticesB = b.getVertices();
     final Vector2f[] normalsB = b.getNormals();
-    final float[][] distanceFromA = new float[1][verticesB.length];
-    final float[][] distanceFromB = new float[verticesB.length][1];
-    final int[] indexMinDistanceFromA = new int[1];
-    final int[] indexMinDistanceFromB = new int[verticesB.length];
-    for (int i = 0; i < 1; i++)
+    // The edge of b that the center of a is the least far behind, or the furthest in
+    // front of.
+    float maxDistance = Float.NEGATIVE_INFINITY;
+    int maxIndex = 0;
+    final float centerX = a.getPositionX();
+    final float centerY = a.getPositionY();
+    for (int i = 0; i < verticesB.length; i++)
     {
-      for (int j = 0; j < verticesB.length; j++)
+      final float distance =
+          (centerX - verticesB[i].x) * normalsB[i].x + (centerY - verticesB[i].y) *
+                                                       normalsB[i].y;
+      if (distance >= a.radius)
       {
-        final Vector2f tmp = new Vector2f();
-        tmp.scaleAdd(-1, a.position, verticesB[j]);
-        Vector2f normal = new Vector2f();
-        normal.negate(normalsB[j]);
-        distanceFromA[i][j] = tmp.dot(normal) - a.radius;
-        if (distanceFromA[i][j] < distanceFromA[i][indexMinDistanceFromA[i]])
-        {
-          indexMinDistanceFromA[i] = j;
-        }
+        return false;
       }
-      if (distanceFromA[i][indexMinDistanceFromA[i]] >= 0)
+      if (distance > maxDistance)
       {
-        return null;
+        maxDistance = distance;
+        maxIndex = i;
       }
     }
-    for (int i = 0; i < verticesB.length; i++)
+    if (maxDistance > 0)
     {
-      for (int j = 0; j < 1; j++)
+      // The center is outside b, so the closest feature may be a vertex of the edge
+      // rather than the edge itself.
+      final Vector2f v1 = verticesB[maxIndex];
+      final Vector2f v2 = verticesB[(maxIndex + 1) % verticesB.length];
+      final float edgeX = v2.x - v1.x;
+      final float edgeY = v2.y - v1.y;
+      final float along = (centerX - v1.x) * edgeX + (centerY - v1.y) * edgeY;
+      final Vector2f vertex =
+          along < 0 ? v1 : along > edgeX * edgeX + edgeY * edgeY ? v2 : null;
+      if (vertex != null)
       {
-        final Vector2f tmp = new Vector2f(a.position);
-        tmp.scaleAdd(-1, verticesB[i], a.position);
-        distanceFromB[i][j] = tmp.dot(normalsB[i]) - a.radius;
-        if (distanceFromB[i][j] < distanceFromB[i][indexMinDistanceFromB[i]])
+        final float nX = vertex.x - centerX;
+        final float nY = vertex.y - centerY;
+        final float length = (float) Math.sqrt(nX * nX + nY * nY);
+        if (length >= a.radius)
         {
-          indexMinDistanceFromB[i] = j;
+          return false;
         }
-      }
-      if (distanceFromB[i][indexMinDistanceFromB[i]] >= 0)
-      {
-        return null;
+        ci.depth = a.radius - length;
+        ci.normal.set(nX / length, nY / length);
+        ci.position.set(centerX + (a.radius - ci.depth / 2) * ci.normal.x,
+                        centerY + (a.radius - ci.depth / 2) * ci.normal.y);
+        return true;
       }
     }
-    int indexMaxDistanceFromA = 0;
-    for (int i = 1; i < 1; i++)
-    {
-      if (distanceFromA[i][indexMinDistanceFromA[i]] > distanceFromA[indexMaxDistanceFromA][indexMinDistanceFromA[indexMaxDistanceFromA]])
-      {
-        indexMaxDistanceFromA = i;
-      }
-    }
-    int indexMaxDistanceFromB = 0;
-    for (int i = 1; i < verticesB.length; i++)
-    {
-      if (distanceFromB[i][indexMinDistanceFromB[i]] > distanceFromB[indexMaxDistanceFromB][indexMinDistanceFromB[indexMaxDistanceFromB]])
-      {
-        indexMaxDistanceFromB = i;
-      }
-    }
-    final CollisionInfo ci = new CollisionInfo();
-    if (distanceFromA[indexMaxDistanceFromA][indexMinDistanceFromA[indexMaxDistanceFromA]] > distanceFromB[indexMaxDistanceFromB][indexMinDistanceFromB[indexMaxDistanceFromB]])
-    {
-      ci.depth =
-          -distanceFromA[indexMaxDistanceFromA][indexMinDistanceFromA[indexMaxDistanceFromA]];
-      Vector2f normal = new Vector2f();
-      normal.negate(normalsB[indexMaxDistanceFromA]);
-      ci.normal = new Vector2f(normal);
-      ci.position = new Vector2f(verticesB[indexMinDistanceFromA[indexMaxDistanceFromA]]);
-      ci.position.scaleAdd(-ci.depth, ci.normal, ci.position);
-    }
-    else
-    {
-      ci.depth =
-          -distanceFromB[indexMaxDistanceFromB][indexMinDistanceFromB[indexMaxDistanceFromB]];
-      ci.normal = new Vector2f(normalsB[indexMaxDistanceFromB]);
-      ci.normal.scale(-1);
-      ci.position = new Vector2f(a.position);
-    }
-    return ci;
+    ci.depth = a.radius - maxDistance;
+    ci.normal.negate(normalsB[maxIndex]);
+    ci.position.set(centerX + (a.radius - ci.depth / 2) * ci.normal.x,
+                    centerY + (a.radius - ci.depth / 2) * ci.normal.y);
+    return true;
   }
 
-  private static CollisionInfo getCollision(final HalfSpace a, final Circle b)
+  private static boolean getCollision(final HalfSpace a, final Circle b, final CollisionInfo ci)
   {
-    final float distance = a.normal.dot(b.position) - a.intercept - b.radius;
+    final float centerX = b.getPositionX();
+    final float centerY = b.getPositionY();
+    final float distance =
+        a.normal.x * centerX + a.normal.y * centerY - a.intercept - b.radius;
     if (distance < 0)
     {
-      final CollisionInfo ci = new CollisionInfo();
-      ci.normal = a.normal;
+      ci.normal.set(a.normal);
       ci.depth = -distance;
-      ci.position = new Vector2f();
-      ci.position.scaleAdd(-(b.radius - ci.depth), ci.normal, b.position);
-      return ci;
+      ci.position.set(centerX - (b.radius - ci.depth) * ci.normal.x,
+                      centerY - (b.radius - ci.depth) * ci.normal.y);
+      return true;
     }
-    return null;
+    return false;
   }
 
-  private static CollisionInfo getCollision(final HalfSpace a, final Triangle b)
+  private static boolean getCollision(final HalfSpace a, final ConvexPolygon b,
+                                      final CollisionInfo ci)
   {
     final Vector2f[] vertices = b.getVertices();
-    final float[] distances = new float[vertices.length];
-
-    for (int i = 0; i < vertices.length; i++)
-    {
-      distances[i] = a.normal.dot(vertices[i]) - a.intercept;
-    }
 
+    float minDistance = Float.POSITIVE_INFINITY;
     int minIndex = 0;
-    for (int i = 1; i < distances.length; i++)
+    for (int i = 0; i < vertices.length; i++)
     {
-      if (distances[i] < distances[minIndex])
+      final float distance = a.normal.dot(vertices[i]) - a.intercept;
+      if (distance < minDistance)
       {
+        minDistance = distance;
         minIndex = i;
       }
     }
-    if (distances[minIndex] >= 0)
+    if (minDistance >= 0)
     {
-      return null;
+      return false;
     }
 
-    final CollisionInfo ci = new CollisionInfo();
-    ci.depth = -distances[minIndex];
-    ci.normal = a.normal;
-    ci.position = new Vector2f(vertices[minIndex]);
-    ci.position.scaleAdd(ci.depth, ci.normal, ci.position);
-    return ci;
+    ci.depth = -minDistance;
+    ci.normal.set(a.normal);
+    ci.position.scaleAdd(ci.depth, ci.normal, vertices[minIndex]);
+    return true;
   }
 
-  private static CollisionInfo getCollision(final Circle a, final Circle b)
+  private static boolean getCollision(final Circle a, final Circle b, final CollisionInfo ci)
   {
-    final Vector2f n = new Vector2f();
-    n.scaleAdd(-1, a.position, b.position);
-    float distance = n.length() - a.radius - b.radius;
+    final float nX = b.getPositionX() - a.getPositionX();
+    final float nY = b.getPositionY() - a.getPositionY();
+    final float length = (float) Math.sqrt(nX * nX + nY * nY);
+    final float distance = length - a.radius - b.radius;
     if (distance < 0)
     {
-      final CollisionInfo ci = new CollisionInfo();
-      n.normalize();
-      ci.normal = n;
-      if (distance < 0)
-      {
-        ci.depth = -distance;
-      }
-      else
-      {
-        ci.depth = 0;
-      }
-      ci.position = new Vector2f();
-      ci.position.scaleAdd(a.radius - ci.depth / 2, ci.normal, a.position);
-      return ci;
+      ci.normal.set(nX / length, nY / length);
+      ci.depth = -distance;
+      ci.position.set(a.getPositionX() + (a.radius - ci.depth / 2) * ci.normal.x,
+                      a.getPositionY() + (a.radius - ci.depth / 2) * ci.normal.y);
+      return true;
     }
-    return null;
+    return false;
   }
 
-  private static CollisionInfo getCollision(final Triangle a, final Triangle b)
+  private static boolean getCollision(final ConvexPolygon a, final ConvexPolygon b,
+                                      final CollisionInfo ci)
   {
+    // The last separating axis of the pair is kept by the polygon with the lower id and
+    // encoded as twice the edge index, plus one if the edge belongs to the other polygon.
+    // A separating axis usually keeps separating for many frames, so it is tested first.
+    final boolean aOwnsCache = a.getId() <= b.getId();
+    final ConvexPolygon owner = aOwnsCache ? a : b;
+    final ConvexPolygon partner = aOwnsCache ? b : a;
+    final int cachedAxis = owner.getCachedAxis(partner.getId());
+    if (cachedAxis >= 0)
+    {
+      final boolean ownerEdge = (cachedAxis & 1) == 0;
+      if (separates(ownerEdge ? owner : partner, cachedAxis >> 1, ownerEdge ? partner : owner))
+      {
+        return false;
+      }
+    }
+
     final Vector2f[] verticesA = a.getVertices();
     final Vector2f[] normalsA = a.getNormals();
     final Vector2f[] verticesB = b.getVertices();
     final Vector2f[] normalsB = b.getNormals();
-    final float[][] distanceFromA = new float[verticesA.length][verticesB.length];
-    final float[][] distanceFromB = new float[verticesB.length][verticesA.length];
-    final int[] indexMinDistanceFromA = new int[verticesA.length];
-    final int[] indexMinDistanceFromB = new int[verticesB.length];
+    // For each normal of a, the vertex of b furthest behind it. The separating axis is the
+    // one where that vertex is the least far behind.
+    float maxDistanceFromA = Float.NEGATIVE_INFINITY;
+    int axisA = 0;
+    int vertexA = 0;
     for (int i = 0; i < verticesA.length; i++)
     {
+      float minDistance = Float.POSITIVE_INFINITY;
+      int minIndex = 0;
       for (int j = 0; j < verticesB.length; j++)
       {
-        final Vector2f tmp = new Vector2f();
-        tmp.scaleAdd(-1, verticesA[i], verticesB[j]);
-        distanceFromA[i][j] = tmp.dot(normalsA[i]);
-        if (distanceFromA[i][j] < distanceFromA[i][indexMinDistanceFromA[i]])
+        final float distance =
+            (verticesB[j].x - verticesA[i].x) * normalsA[i].x +
+                (verticesB[j].y - verticesA[i].y) * normalsA[i].y;
+        if (distance < minDistance)
         {
-          indexMinDistanceFromA[i] = j;
+          minDistance = distance;
+          minIndex = j;
         }
       }
-      if (distanceFromA[i][indexMinDistanceFromA[i]] >= 0)
+      if (minDistance >= 0)
       {
-        return null;
+        owner.setCachedAxis(partner.getId(), aOwnsCache ? 2 * i : 2 * i + 1);
+        return false;
+      }
+      if (minDistance > maxDistanceFromA)
+      {
+        maxDistanceFromA = minDistance;
+        axisA = i;
+        vertexA = minIndex;
       }
     }
+    float maxDistanceFromB = Float.NEGATIVE_INFINITY;
+    int axisB = 0;
+    int vertexB = 0;
     for (int i = 0; i < verticesB.length; i++)
     {
+      float minDistance = Float.POSITIVE_INFINITY;
+      int minIndex = 0;
       for (int j = 0; j < verticesA.length; j++)
       {
-        final Vector2f tmp = new Vector2f(verticesA[j]);
-        tmp.scaleAdd(-1, verticesB[i], verticesA[j]);
-        distanceFromB[i][j] = tmp.dot(normalsB[i]);
-        if (distanceFromB[i][j] < distanceFromB[i][indexMinDistanceFromB[i]])
+        final float distance =
+            (verticesA[j].x - verticesB[i].x) * normalsB[i].x +
+                (verticesA[j].y - verticesB[i].y) * normalsB[i].y;
+        if (distance < minDistance)
         {
-          indexMinDistanceFromB[i] = j;
+          minDistance = distance;
+          minIndex = j;
         }
       }
-      if (distanceFromB[i][indexMinDistanceFromB[i]] >= 0)
+      if (minDistance >= 0)
       {
-        return null;
+        owner.setCachedAxis(partner.getId(), aOwnsCache ? 2 * i + 1 : 2 * i);
+        return false;
       }
-    }
-    int indexMaxDistanceFromA = 0;
-    for (int i = 1; i < verticesA.length; i++)
-    {
-      if (distanceFromA[i][indexMinDistanceFromA[i]] > distanceFromA[indexMaxDistanceFromA][indexMinDistanceFromA[indexMaxDistanceFromA]])
+      if (minDistance > maxDistanceFromB)
       {
-        indexMaxDistanceFromA = i;
+        maxDistanceFromB = minDistance;
+        axisB = i;
+        vertexB = minIndex;
       }
     }
-    int indexMaxDistanceFromB = 0;
-    for (int i = 1; i < verticesB.length; i++)
+    if (cachedAxis >= 0)
     {
-      if (distanceFromB[i][indexMinDistanceFromB[i]] > distanceFromB[indexMaxDistanceFromB][indexMinDistanceFromB[indexMaxDistanceFromB]])
-      {
-        indexMaxDistanceFromB = i;
-      }
+      owner.setCachedAxis(partner.getId(), -1);
     }
-    final CollisionInfo ci = new CollisionInfo();
-    if (distanceFromA[indexMaxDistanceFromA][indexMinDistanceFromA[indexMaxDistanceFromA]] > distanceFromB[indexMaxDistanceFromB][indexMinDistanceFromB[indexMaxDistanceFromB]])
+    if (maxDistanceFromA > maxDistanceFromB)
     {
-      ci.depth =
-          -distanceFromA[indexMaxDistanceFromA][indexMinDistanceFromA[indexMaxDistanceFromA]];
-      ci.normal = new Vector2f(normalsA[indexMaxDistanceFromA]);
-      ci.position = new Vector2f(verticesB[indexMinDistanceFromA[indexMaxDistanceFromA]]);
-      ci.position.scaleAdd(-ci.depth, ci.normal, ci.position);
+      ci.depth = -maxDistanceFromA;
+      ci.normal.set(normalsA[axisA]);
+      ci.position.scaleAdd(-ci.depth, ci.normal, verticesB[vertexA]);
     }
     else
     {
-      ci.depth =
-          -distanceFromB[indexMaxDistanceFromB][indexMinDistanceFromB[indexMaxDistanceFromB]];
-      ci.normal = new Vector2f(normalsB[indexMaxDistanceFromB]);
-      ci.normal.scale(-1);
-      ci.position = new Vector2f(verticesA[indexMinDistanceFromB[indexMaxDistanceFromB]]);
+      ci.depth = -maxDistanceFromB;
+      ci.normal.negate(normalsB[axisB]);
+      ci.position.set(verticesA[vertexB]);
       // ci.position.scaleAdd(ci.depth, ci.normal, ci.position);
     }
-    return ci;
+    return true;
+  }
+
+  /**
+   * Returns true if every vertex of incident lies in front of the given edge of reference.
+   * Stale axes from another pair are harmless, since any separating axis proves that the
+   * polygons do not overlap.
+   */
+  private static boolean separates(final ConvexPolygon reference, final int edge,
+                                   final ConvexPolygon incident)
+  {
+    if (edge >= reference.getVertexCount())
+    {
+      return false;
+    }
+    final Vector2f vertex = reference.getVertices()[edge];
+    final Vector2f normal = reference.getNormals()[edge];
+    final Vector2f[] vertices = incident.getVertices();
+    for (int i = 0; i < vertices.length; i++)
+    {
+      if ((vertices[i].x - vertex.x) * normal.x + (vertices[i].y - vertex.y) * normal.y < 0)
+      {
+        return false;
+      }
+    }
+    return true;
   }
 }
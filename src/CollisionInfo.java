@@ -2,9 +2,9 @@ import javax.vecmath.*;
 
 public class CollisionInfo {
 	// Position of the collision in world coordinates. 
-	Vector2f position;
+	final Vector2f position = new Vector2f();
 	// Normal on the surface of the first object at the collision position.
-	Vector2f normal;
+	final Vector2f normal = new Vector2f();
 	// Depth of overlap (positive).
 	float depth;
-}
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+/**
+ * Up to two contact points between a pair of touching objects. A manifold is kept for as
+ * long as the pair touches, so that the impulses found in one frame can warm-start the
+ * next. Points are matched between frames by the features (vertices and edges) that
+ * produced them.
+ */
+public class ContactManifold
+{
+  public static final int MAX_POINTS = 2;
+
+  PhysicsObject a;
+  PhysicsObject b;
+  // Frame in which the pair last touched.
+  long frame;
+  // Unit normal pointing out of a, towards b.
+  float normalX;
+  float normalY;
+  int pointCount;
+  final float[] pointX = new float[MAX_POINTS];
+  final float[] pointY = new float[MAX_POINTS];
+  final float[] depth = new float[MAX_POINTS];
+  final int[] feature = new int[MAX_POINTS];
+  // Impulses accumulated over the velocity iterations, reused as the first guess of the
+  // next frame.
+  final float[] normalImpulse = new float[MAX_POINTS];
+  final float[] tangentImpulse = new float[MAX_POINTS];
+
+  // Solver state, computed once per frame from the points.
+  final float[] rAX = new float[MAX_POINTS];
+  final float[] rAY = new float[MAX_POINTS];
+  final float[] rBX = new float[MAX_POINTS];
+  final float[] rBY = new float[MAX_POINTS];
+  final float[] normalMass = new float[MAX_POINTS];
+  final float[] tangentMass = new float[MAX_POINTS];
+  final float[] bias = new float[MAX_POINTS];
+  // Matrix relating the normal impulses of two points to their normal velocities. The
+  // points are solved together when it is well conditioned.
+  boolean solveBlock;
+  float k11;
+  float k12;
+  float k22;
+
+  public PhysicsObject getObjectA()
+  {
+    return a;
+  }
+
+  public PhysicsObject getObjectB()
+  {
+    return b;
+  }
+
+  public float getNormalX()
+  {
+    return normalX;
+  }
+
+  public float getNormalY()
+  {
+    return normalY;
+  }
+
+  public int getPointCount()
+  {
+    return pointCount;
+  }
+
+  public float getPointX(final int point)
+  {
+    return pointX[point];
+  }
+
+  public float getPointY(final int point)
+  {
+    return pointY[point];
+  }
+
+  public float getDepth(final int point)
+  {
+    return depth[point];
+  }
+
+  public float getNormalImpulse(final int point)
+  {
+    return normalImpulse[point];
+  }
+}
@@ -0,0 +1,831 @@
+import java.util.Arrays;
+
+import javax.vecmath.Vector2f;
+
+/**
+ * Sequential impulse contact solver. Contacts are detected once per step and kept in
+ * manifolds of up to two points per pair. The solver then iterates over all contacts,
+ * applying impulses that stop the objects from approaching each other. The impulses are
+ * accumulated per point and clamped so that the total never pulls the objects together.
+ * The totals of one step are applied up front in the next (warm starting), so that
+ * resting contacts converge within a few iterations. Overlap is removed gradually by
+ * biasing the target separating velocity (Baumgarte stabilization), not by moving the
+ * objects.
+ */
+public class ContactSolver
+{
+  private static final int DEFAULT_VELOCITY_ITERATIONS = 8;
+  private static final float DEFAULT_RESTITUTION = 0;
+  private static final float DEFAULT_FRICTION = 0.3f;
+  // Fraction of the overlap removed per step.
+  private static final float BAUMGARTE = 0.2f;
+  // Overlap that is tolerated, so that resting contacts do not flicker.
+  private static final float SLOP = 0.01f;
+  // Approach speed below which contacts do not bounce.
+  private static final float RESTITUTION_THRESHOLD = 1;
+  // Largest condition number of the matrix of a two point manifold that is solved as a
+  // block.
+  private static final float MAX_CONDITION_NUMBER = 1000;
+
+  private int velocityIterations = DEFAULT_VELOCITY_ITERATIONS;
+  private float restitution = DEFAULT_RESTITUTION;
+  private float friction = DEFAULT_FRICTION;
+
+  private final CollisionHandler handler = new CollisionHandler();
+  private final CollisionInfo ci = new CollisionInfo();
+  // Narrow phase for circles, or null to test circles pair by pair.
+  private CircleBatch circleBatch;
+  private final Vector2f centerOfMassA = new Vector2f();
+  private final Vector2f centerOfMassB = new Vector2f();
+
+  // Manifolds of the current step, and of the previous step while detecting.
+  private ManifoldMap manifoldMap = new ManifoldMap();
+  private ManifoldMap previousMap = new ManifoldMap();
+  private ContactManifold[] manifolds = new ContactManifold[64];
+  private int manifoldCount;
+  private ContactManifold[] previousManifolds = new ContactManifold[64];
+  private int previousCount;
+  private ContactManifold[] pool = new ContactManifold[64];
+  private int poolSize;
+  private long frame;
+  private int pairsTested;
+  // Object whose contacts with the static bodies are being found.
+  private PhysicsObject staticQueryObject;
+  private final QueryCallback staticContacts = new QueryCallback()
+  {
+    public boolean found(final PhysicsObject body)
+    {
+      pairsTested++;
+      detect(body, staticQueryObject);
+      return true;
+    }
+  };
+
+  // Points of the manifold being built.
+  private int pointCount;
+  private final float[] pointX = new float[ContactManifold.MAX_POINTS];
+  private final float[] pointY = new float[ContactManifold.MAX_POINTS];
+  private final float[] pointDepth = new float[ContactManifold.MAX_POINTS];
+  private final int[] pointFeature = new int[ContactManifold.MAX_POINTS];
+  private float pointNormalX;
+  private float pointNormalY;
+  private final float[] clipX = new float[2];
+  private final float[] clipY = new float[2];
+
+  public void setVelocityIterations(final int velocityIterations)
+  {
+    if (velocityIterations < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.velocityIterations = velocityIterations;
+  }
+
+  public int getVelocityIterations()
+  {
+    return velocityIterations;
+  }
+
+  public void setRestitution(final float restitution)
+  {
+    if (restitution < 0 || restitution > 1)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.restitution = restitution;
+  }
+
+  public float getRestitution()
+  {
+    return restitution;
+  }
+
+  public void setFriction(final float friction)
+  {
+    if (friction < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.friction = friction;
+  }
+
+  public float getFriction()
+  {
+    return friction;
+  }
+
+  // Pairs passed to the narrow phase by the last call to detect().
+  public int getPairsTested()
+  {
+    return pairsTested;
+  }
+
+  /**
+   * Sets whether circles are tested against each other and against the boundaries in
+   * batches. The contacts found are the same either way, though they may be solved in a
+   * different order. Off by default: the batch tests themselves are several times faster,
+   * but gathering the circles from their objects costs about as much as that saves.
+   */
+  public void setCircleBatching(final boolean circleBatching)
+  {
+    circleBatch = circleBatching ? new CircleBatch() : null;
+  }
+
+  public boolean isCircleBatching()
+  {
+    return circleBatch != null;
+  }
+
+  public int getManifoldCount()
+  {
+    return manifoldCount;
+  }
+
+  public ContactManifold getManifold(final int index)
+  {
+    return manifolds[index];
+  }
+
+  /**
+   * Replaces the manifolds with the contacts between the objects and the boundaries and
+   * between the given pairs. Points of pairs that were touching in the previous call keep
+   * their accumulated impulses. Sleeping objects are not tested against the boundaries.
+   * The bounds of the objects must be up to date.
+   */
+  public void detect(final PhysicsObject[] objects, final int count,
+                     final HalfSpace[] boundaries, final int boundaryCount,
+                     final PairList pairs)
+  {
+    detect(objects, count, boundaries, boundaryCount, null, pairs);
+  }
+
+  /**
+   * Like {@link #detect(PhysicsObject[], int, HalfSpace[], int, PairList)}, and also finds
+   * the contacts of the awake objects with the static bodies of a tree, or none if it is
+   * null.
+   */
+  public void detect(final PhysicsObject[] objects, final int count,
+                     final HalfSpace[] boundaries, final int boundaryCount,
+                     final BoundingVolumeHierarchy statics, final PairList pairs)
+  {
+    frame++;
+    ManifoldMap map = previousMap;
+    previousMap = manifoldMap;
+    manifoldMap = map;
+    manifoldMap.clear();
+    ContactManifold[] list = previousManifolds;
+    previousManifolds = manifolds;
+    previousCount = manifoldCount;
+    manifolds = list;
+    manifoldCount = 0;
+    pairsTested = pairs.size;
+
+    final CircleBatch batch = circleBatch;
+    for (int i = 0; i < count; i++)
+    {
+      if (objects[i].isAsleep() ||
+          batch != null && objects[i].getShapeType() == PhysicsObject.CIRCLE)
+      {
+        continue;
+      }
+      for (int j = 0; j < boundaryCount; j++)
+      {
+        detect(boundaries[j], objects[i]);
+      }
+      pairsTested += boundaryCount;
+    }
+    if (batch != null)
+    {
+      detectCircles(objects, count, boundaries, boundaryCount, pairs, batch);
+    }
+    for (int p = 0; p < pairs.size; p++)
+    {
+      final PhysicsObject a = objects[pairs.first[p]];
+      final PhysicsObject b = objects[pairs.second[p]];
+      if (batch == null || a.getShapeType() != PhysicsObject.CIRCLE ||
+          b.getShapeType() != PhysicsObject.CIRCLE)
+      {
+        detect(a, b);
+      }
+    }
+    if (statics != null)
+    {
+      for (int i = 0; i < count; i++)
+      {
+        if (!objects[i].isAsleep())
+        {
+          staticQueryObject = objects[i];
+          statics.query(objects[i].bounds, staticContacts);
+        }
+      }
+      staticQueryObject = null;
+    }
+
+    // Manifolds of pairs that stopped touching go back to the pool.
+    for (int i = 0; i < previousCount; i++)
+    {
+      if (previousManifolds[i].frame != frame)
+      {
+        release(previousManifolds[i]);
+      }
+      previousManifolds[i] = null;
+    }
+    previousMap.clear();
+  }
+
+  // Finds the contacts of the awake circles with the boundaries and with each other.
+  private void detectCircles(final PhysicsObject[] objects, final int count,
+                             final HalfSpace[] boundaries, final int boundaryCount,
+                             final PairList pairs, final CircleBatch batch)
+  {
+    batch.gatherCircles(objects, count);
+    for (int k = 0; k < batch.circleCount; k++)
+    {
+      if (!objects[batch.circle[k]].isAsleep())
+      {
+        pairsTested += boundaryCount;
+      }
+    }
+    for (int j = 0; j < boundaryCount; j++)
+    {
+      final HalfSpace boundary = boundaries[j];
+      batch.collideBoundary(boundary);
+      for (int k = 0; k < batch.circleCount; k++)
+      {
+        final float depth = batch.boundaryDepth[k];
+        if (depth > 0 && !objects[batch.circle[k]].isAsleep())
+        {
+          // Same contact as CollisionHandler's half-space/circle routine.
+          final float offset = batch.cr[k] - depth;
+          ci.normal.set(boundary.normal);
+          ci.depth = depth;
+          ci.position.set(batch.cx[k] - offset * boundary.normal.x,
+                          batch.cy[k] - offset * boundary.normal.y);
+          addContact(boundary, objects[batch.circle[k]]);
+        }
+      }
+    }
+
+    batch.collidePairs(pairs);
+    for (int k = 0; k < batch.pairCount; k++)
+    {
+      final float depth = batch.depth[k];
+      if (depth > 0)
+      {
+        // Same contact as CollisionHandler's circle/circle routine.
+        final float offset = batch.ar[k] - depth / 2;
+        ci.normal.set(batch.normalX[k], batch.normalY[k]);
+        ci.depth = depth;
+        ci.position.set(batch.ax[k] + offset * batch.normalX[k],
+                        batch.ay[k] + offset * batch.normalY[k]);
+        addContact(objects[batch.pairA[k]], objects[batch.pairB[k]]);
+      }
+    }
+  }
+
+  private void detect(final PhysicsObject a, final PhysicsObject b)
+  {
+    if (handler.getCollisionInfo(a, b, ci))
+    {
+      addContact(a, b);
+    }
+  }
+
+  // Adds or updates the manifold of a and b from the collision in ci.
+  private void addContact(final PhysicsObject a, final PhysicsObject b)
+  {
+    if (!findPoints(a, b))
+    {
+      return;
+    }
+    final long key = ManifoldMap.key(a.getId(), b.getId());
+    ContactManifold m = previousMap.get(key);
+    if (m == null)
+    {
+      m = obtain();
+      m.a = a;
+      m.b = b;
+    }
+    m.frame = frame;
+    m.normalX = pointNormalX;
+    m.normalY = pointNormalY;
+    // Points produced by the same features as last frame keep their impulses.
+    final int oldCount = m.pointCount;
+    float normalImpulse0 = 0;
+    float tangentImpulse0 = 0;
+    float normalImpulse1 = 0;
+    float tangentImpulse1 = 0;
+    for (int k = 0; k < oldCount; k++)
+    {
+      if (pointFeature[0] == m.feature[k])
+      {
+        normalImpulse0 = m.normalImpulse[k];
+        tangentImpulse0 = m.tangentImpulse[k];
+      }
+      else if (pointCount > 1 && pointFeature[1] == m.feature[k])
+      {
+        normalImpulse1 = m.normalImpulse[k];
+        tangentImpulse1 = m.tangentImpulse[k];
+      }
+    }
+    m.normalImpulse[0] = normalImpulse0;
+    m.tangentImpulse[0] = tangentImpulse0;
+    m.normalImpulse[1] = normalImpulse1;
+    m.tangentImpulse[1] = tangentImpulse1;
+    m.pointCount = pointCount;
+    for (int k = 0; k < pointCount; k++)
+    {
+      m.pointX[k] = pointX[k];
+      m.pointY[k] = pointY[k];
+      m.depth[k] = pointDepth[k];
+      m.feature[k] = pointFeature[k];
+    }
+
+    manifoldMap.put(key, m);
+    if (manifoldCount == manifolds.length)
+    {
+      manifolds = Arrays.copyOf(manifolds, manifoldCount * 2);
+    }
+    manifolds[manifoldCount++] = m;
+  }
+
+  /**
+   * Fills the point buffers from the collision in {@code ci}. Polygons resting on a
+   * boundary or on another polygon get up to two points, everything else gets the single
+   * point found by the narrow phase.
+   *
+   * @return whether any point was found
+   */
+  private boolean findPoints(final PhysicsObject a, final PhysicsObject b)
+  {
+    pointCount = 0;
+    pointNormalX = ci.normal.x;
+    pointNormalY = ci.normal.y;
+    if (a instanceof ConvexPolygon && b instanceof ConvexPolygon)
+    {
+      clip((ConvexPolygon) a, (ConvexPolygon) b);
+    }
+    else if (a instanceof HalfSpace && b instanceof ConvexPolygon)
+    {
+      findPoints((HalfSpace) a, (ConvexPolygon) b);
+    }
+    else if (b instanceof HalfSpace && a instanceof ConvexPolygon)
+    {
+      findPoints((HalfSpace) b, (ConvexPolygon) a);
+    }
+    if (pointCount == 0)
+    {
+      addPoint(ci.position.x, ci.position.y, ci.depth, 0);
+    }
+    return ci.depth > 0;
+  }
+
+  // The two vertices of the polygon that are deepest behind the boundary.
+  private void findPoints(final HalfSpace boundary, final ConvexPolygon polygon)
+  {
+    final Vector2f[] vertices = polygon.getVertices();
+    for (int i = 0; i < vertices.length; i++)
+    {
+      final float distance = boundary.normal.dot(vertices[i]) - boundary.intercept;
+      if (distance < 0)
+      {
+        addPoint(vertices[i].x, vertices[i].y, -distance, i);
+      }
+    }
+  }
+
+  /**
+   * Clips the edge of one polygon that faces the other (the incident edge) against the
+   * sides of the edge of the other polygon that is most aligned with the collision normal
+   * (the reference edge). The clipped points behind the reference edge are the contacts.
+   */
+  private void clip(final ConvexPolygon a, final ConvexPolygon b)
+  {
+    final float normalX = ci.normal.x;
+    final float normalY = ci.normal.y;
+    final Vector2f[] normalsA = a.getNormals();
+    final Vector2f[] normalsB = b.getNormals();
+    int edgeA = 0;
+    float alignmentA = Float.NEGATIVE_INFINITY;
+    for (int i = 0; i < normalsA.length; i++)
+    {
+      final float alignment = normalsA[i].x * normalX + normalsA[i].y * normalY;
+      if (alignment > alignmentA)
+      {
+        alignmentA = alignment;
+        edgeA = i;
+      }
+    }
+    int edgeB = 0;
+    float alignmentB = Float.NEGATIVE_INFINITY;
+    for (int i = 0; i < normalsB.length; i++)
+    {
+      final float alignment = -(normalsB[i].x * normalX + normalsB[i].y * normalY);
+      if (alignment > alignmentB)
+      {
+        alignmentB = alignment;
+        edgeB = i;
+      }
+    }
+    // Prefer a as the reference, so that nearly parallel edges do not swap roles every
+    // frame.
+    final boolean flip = alignmentB > alignmentA + 1e-3f;
+    final ConvexPolygon reference = flip ? b : a;
+    final ConvexPolygon incident = flip ? a : b;
+    final int referenceEdge = flip ? edgeB : edgeA;
+    final Vector2f[] referenceVertices = reference.getVertices();
+    final Vector2f referenceNormal = reference.getNormals()[referenceEdge];
+    final Vector2f r1 = referenceVertices[referenceEdge];
+    final Vector2f r2 = referenceVertices[(referenceEdge + 1) % referenceVertices.length];
+
+    final Vector2f[] incidentNormals = incident.getNormals();
+    int incidentEdge = 0;
+    float minAlignment = Float.POSITIVE_INFINITY;
+    for (int i = 0; i < incidentNormals.length; i++)
+    {
+      final float alignment = incidentNormals[i].dot(referenceNormal);
+      if (alignment < minAlignment)
+      {
+        minAlignment = alignment;
+        incidentEdge = i;
+      }
+    }
+    final Vector2f[] incidentVertices = incident.getVertices();
+    clipX[0] = incidentVertices[incidentEdge].x;
+    clipY[0] = incidentVertices[incidentEdge].y;
+    clipX[1] = incidentVertices[(incidentEdge + 1) % incidentVertices.length].x;
+    clipY[1] = incidentVertices[(incidentEdge + 1) % incidentVertices.length].y;
+
+    // Keep the part of the incident edge between the sides of the reference edge.
+    final float tangentX = -referenceNormal.y;
+    final float tangentY = referenceNormal.x;
+    final float lower = Math.min(r1.x * tangentX + r1.y * tangentY,
+                                 r2.x * tangentX + r2.y * tangentY);
+    final float upper = Math.max(r1.x * tangentX + r1.y * tangentY,
+                                 r2.x * tangentX + r2.y * tangentY);
+    if (!clipSegment(tangentX, tangentY, lower, 1) || !clipSegment(tangentX, tangentY, upper, -1))
+    {
+      return;
+    }
+
+    pointNormalX = flip ? -referenceNormal.x : referenceNormal.x;
+    pointNormalY = flip ? -referenceNormal.y : referenceNormal.y;
+    final int features = (flip ? 1 << 24 : 0) | referenceEdge << 16 | incidentEdge << 8;
+    for (int k = 0; k < 2; k++)
+    {
+      final float separation =
+          (clipX[k] - r1.x) * referenceNormal.x + (clipY[k] - r1.y) * referenceNormal.y;
+      if (separation < 0)
+      {
+        addPoint(clipX[k], clipY[k], -separation, features | k);
+      }
+    }
+  }
+
+  /**
+   * Clips the segment in the clip buffers to the side of the line {@code t . p = offset}
+   * where {@code side * (t . p - offset) >= 0}.
+   *
+   * @return whether any part of the segment is left
+   */
+  private boolean clipSegment(final float tangentX, final float tangentY, final float offset,
+                              final int side)
+  {
+    final float distance0 = side * (clipX[0] * tangentX + clipY[0] * tangentY - offset);
+    final float distance1 = side * (clipX[1] * tangentX + clipY[1] * tangentY - offset);
+    if (distance0 < 0 && distance1 < 0)
+    {
+      return false;
+    }
+    if (distance0 < 0 || distance1 < 0)
+    {
+      final int outside = distance0 < 0 ? 0 : 1;
+      final float t = distance0 / (distance0 - distance1);
+      clipX[outside] = clipX[0] + t * (clipX[1] - clipX[0]);
+      clipY[outside] = clipY[0] + t * (clipY[1] - clipY[0]);
+    }
+    return true;
+  }
+
+  // Adds a point, keeping the deepest ones when the manifold is full.
+  private void addPoint(final float x, final float y, final float depth, final int feature)
+  {
+    int k = pointCount;
+    if (k == ContactManifold.MAX_POINTS)
+    {
+      k = pointDepth[0] < pointDepth[1] ? 0 : 1;
+      if (depth <= pointDepth[k])
+      {
+        return;
+      }
+    }
+    else
+    {
+      pointCount++;
+    }
+    pointX[k] = x;
+    pointY[k] = y;
+    pointDepth[k] = depth;
+    pointFeature[k] = feature;
+  }
+
+  /**
+   * Changes the velocities of the objects in the manifolds so that no contact approaches
+   * and overlap shrinks during the next {@code duration} seconds.
+   */
+  public void solve(final float duration)
+  {
+    for (int i = 0; i < manifoldCount; i++)
+    {
+      prepare(manifolds[i], duration);
+    }
+    for (int iteration = 0; iteration < velocityIterations; iteration++)
+    {
+      for (int i = 0; i < manifoldCount; i++)
+      {
+        solve(manifolds[i]);
+      }
+    }
+  }
+
+  // Computes the effective masses and target velocities and applies the warm start.
+  private void prepare(final ContactManifold m, final float duration)
+  {
+    final BodyStore storeA = m.a.getStore();
+    final int idA = m.a.getId();
+    final BodyStore storeB = m.b.getStore();
+    final int idB = m.b.getId();
+    final float inverseMassA = storeA.inverseMass[idA];
+    final float inverseMassB = storeB.inverseMass[idB];
+    final float inverseMomentOfInertiaA = storeA.inverseMomentOfInertia[idA];
+    final float inverseMomentOfInertiaB = storeB.inverseMomentOfInertia[idB];
+    m.a.getGlobalCenterOfMass(centerOfMassA);
+    m.b.getGlobalCenterOfMass(centerOfMassB);
+    final float normalX = m.normalX;
+    final float normalY = m.normalY;
+    final float tangentX = -normalY;
+    final float tangentY = normalX;
+
+    for (int k = 0; k < m.pointCount; k++)
+    {
+      final float rAX = m.pointX[k] - centerOfMassA.x;
+      final float rAY = m.pointY[k] - centerOfMassA.y;
+      final float rBX = m.pointX[k] - centerOfMassB.x;
+      final float rBY = m.pointY[k] - centerOfMassB.y;
+      m.rAX[k] = rAX;
+      m.rAY[k] = rAY;
+      m.rBX[k] = rBX;
+      m.rBY[k] = rBY;
+
+      final float rnA = rAX * normalY - rAY * normalX;
+      final float rnB = rBX * normalY - rBY * normalX;
+      m.normalMass[k] =
+          1 / (inverseMassA + inverseMassB + rnA * rnA * inverseMomentOfInertiaA +
+               rnB * rnB * inverseMomentOfInertiaB);
+      final float rtA = rAX * tangentY - rAY * tangentX;
+      final float rtB = rBX * tangentY - rBY * tangentX;
+      m.tangentMass[k] =
+          1 / (inverseMassA + inverseMassB + rtA * rtA * inverseMomentOfInertiaA +
+               rtB * rtB * inverseMomentOfInertiaB);
+
+      // Velocity of b relative to a at the point, along the normal.
+      final float relativeVelocityX =
+          storeB.velocityX[idB] - storeB.angularVelocity[idB] * rBY - storeA.velocityX[idA] +
+              storeA.angularVelocity[idA] * rAY;
+      final float relativeVelocityY =
+          storeB.velocityY[idB] + storeB.angularVelocity[idB] * rBX - storeA.velocityY[idA] -
+              storeA.angularVelocity[idA] * rAX;
+      final float normalVelocity = relativeVelocityX * normalX + relativeVelocityY * normalY;
+      float bias = BAUMGARTE / duration * Math.max(m.depth[k] - SLOP, 0);
+      if (normalVelocity < -RESTITUTION_THRESHOLD)
+      {
+        bias += -restitution * normalVelocity;
+      }
+      m.bias[k] = bias;
+
+      apply(m, k, m.normalImpulse[k] * normalX + m.tangentImpulse[k] * tangentX,
+            m.normalImpulse[k] * normalY + m.tangentImpulse[k] * tangentY);
+    }
+
+    m.solveBlock = false;
+    if (m.pointCount == 2)
+    {
+      final float rn1A = m.rAX[0] * normalY - m.rAY[0] * normalX;
+      final float rn1B = m.rBX[0] * normalY - m.rBY[0] * normalX;
+      final float rn2A = m.rAX[1] * normalY - m.rAY[1] * normalX;
+      final float rn2B = m.rBX[1] * normalY - m.rBY[1] * normalX;
+      m.k11 = 1 / m.normalMass[0];
+      m.k22 = 1 / m.normalMass[1];
+      m.k12 =
+          inverseMassA + inverseMassB + rn1A * rn2A * inverseMomentOfInertiaA +
+              rn1B * rn2B * inverseMomentOfInertiaB;
+      m.solveBlock = m.k11 * m.k11 < MAX_CONDITION_NUMBER * (m.k11 * m.k22 - m.k12 * m.k12);
+    }
+  }
+
+  private void solve(final ContactManifold m)
+  {
+    final BodyStore storeA = m.a.getStore();
+    final int idA = m.a.getId();
+    final BodyStore storeB = m.b.getStore();
+    final int idB = m.b.getId();
+    final float normalX = m.normalX;
+    final float normalY = m.normalY;
+    final float tangentX = -normalY;
+    final float tangentY = normalX;
+
+    for (int k = 0; k < m.pointCount; k++)
+    {
+      // Friction, limited by the normal impulse of the point.
+      final float relativeVelocityX =
+          storeB.velocityX[idB] - storeB.angularVelocity[idB] * m.rBY[k] -
+              storeA.velocityX[idA] + storeA.angularVelocity[idA] * m.rAY[k];
+      final float relativeVelocityY =
+          storeB.velocityY[idB] + storeB.angularVelocity[idB] * m.rBX[k] -
+              storeA.velocityY[idA] - storeA.angularVelocity[idA] * m.rAX[k];
+      final float maxFriction = friction * m.normalImpulse[k];
+      final float oldTangentImpulse = m.tangentImpulse[k];
+      m.tangentImpulse[k] =
+          Math.max(-maxFriction, Math.min(maxFriction, oldTangentImpulse - m.tangentMass[k] *
+              (relativeVelocityX * tangentX + relativeVelocityY * tangentY)));
+      final float tangentImpulse = m.tangentImpulse[k] - oldTangentImpulse;
+      apply(m, k, tangentImpulse * tangentX, tangentImpulse * tangentY);
+    }
+
+    if (m.solveBlock)
+    {
+      solveBlock(m);
+      return;
+    }
+    for (int k = 0; k < m.pointCount; k++)
+    {
+      // The total normal impulse may push but never pull.
+      final float relativeVelocityX =
+          storeB.velocityX[idB] - storeB.angularVelocity[idB] * m.rBY[k] -
+              storeA.velocityX[idA] + storeA.angularVelocity[idA] * m.rAY[k];
+      final float relativeVelocityY =
+          storeB.velocityY[idB] + storeB.angularVelocity[idB] * m.rBX[k] -
+              storeA.velocityY[idA] - storeA.angularVelocity[idA] * m.rAX[k];
+      final float oldNormalImpulse = m.normalImpulse[k];
+      m.normalImpulse[k] =
+          Math.max(0, oldNormalImpulse + m.normalMass[k] *
+              (m.bias[k] - (relativeVelocityX * normalX + relativeVelocityY * normalY)));
+      final float normalImpulse = m.normalImpulse[k] - oldNormalImpulse;
+      apply(m, k, normalImpulse * normalX, normalImpulse * normalY);
+    }
+  }
+
+  /**
+   * Solves both normal impulses of a two point manifold at once. The new totals x must
+   * satisfy x >= 0, v >= 0 and x * v = 0 for the normal velocity v of each point relative
+   * to its target, so each combination of active points is tried in turn.
+   */
+  private void solveBlock(final ContactManifold m)
+  {
+    final float normalX = m.normalX;
+    final float normalY = m.normalY;
+    final float oldImpulse1 = m.normalImpulse[0];
+    final float oldImpulse2 = m.normalImpulse[1];
+    // Velocities with the current totals removed, relative to the targets.
+    final float b1 = normalVelocity(m, 0) - m.bias[0] - m.k11 * oldImpulse1 - m.k12 * oldImpulse2;
+    final float b2 = normalVelocity(m, 1) - m.bias[1] - m.k12 * oldImpulse1 - m.k22 * oldImpulse2;
+
+    float x1;
+    float x2;
+    // Both points active.
+    final float determinant = m.k11 * m.k22 - m.k12 * m.k12;
+    x1 = (m.k12 * b2 - m.k22 * b1) / determinant;
+    x2 = (m.k12 * b1 - m.k11 * b2) / determinant;
+    if (x1 < 0 || x2 < 0)
+    {
+      // Only the first point active.
+      x1 = -b1 / m.k11;
+      x2 = 0;
+      if (x1 < 0 || m.k12 * x1 + b2 < 0)
+      {
+        // Only the second point active.
+        x1 = 0;
+        x2 = -b2 / m.k22;
+        if (x2 < 0 || m.k12 * x2 + b1 < 0)
+        {
+          // Neither point active. If the points are still approaching, no combination
+          // works because of rounding; keep the old impulses.
+          x1 = 0;
+          x2 = 0;
+          if (b1 < 0 || b2 < 0)
+          {
+            return;
+          }
+        }
+      }
+    }
+    m.normalImpulse[0] = x1;
+    m.normalImpulse[1] = x2;
+    apply(m, 0, (x1 - oldImpulse1) * normalX, (x1 - oldImpulse1) * normalY);
+    apply(m, 1, (x2 - oldImpulse2) * normalX, (x2 - oldImpulse2) * normalY);
+  }
+
+  // Velocity of b relative to a at point k, along the normal.
+  private static float normalVelocity(final ContactManifold m, final int k)
+  {
+    final BodyStore storeA = m.a.getStore();
+    final int idA = m.a.getId();
+    final BodyStore storeB = m.b.getStore();
+    final int idB = m.b.getId();
+    final float relativeVelocityX =
+        storeB.velocityX[idB] - storeB.angularVelocity[idB] * m.rBY[k] -
+            storeA.velocityX[idA] + storeA.angularVelocity[idA] * m.rAY[k];
+    final float relativeVelocityY =
+        storeB.velocityY[idB] + storeB.angularVelocity[idB] * m.rBX[k] -
+            storeA.velocityY[idA] - storeA.angularVelocity[idA] * m.rAX[k];
+    return relativeVelocityX * m.normalX + relativeVelocityY * m.normalY;
+  }
+
+  // Applies the impulse to b at point k and the opposite impulse to a.
+  private static void apply(final ContactManifold m, final int k, final float impulseX,
+                            final float impulseY)
+  {
+    final BodyStore storeA = m.a.getStore();
+    final int idA = m.a.getId();
+    final BodyStore storeB = m.b.getStore();
+    final int idB = m.b.getId();
+    // Static objects are never written.
+    final float inverseMassA = storeA.inverseMass[idA];
+    if (inverseMassA != 0)
+    {
+      storeA.velocityX[idA] -= impulseX * inverseMassA;
+      storeA.velocityY[idA] -= impulseY * inverseMassA;
+      storeA.angularVelocity[idA] -=
+          (m.rAX[k] * impulseY - m.rAY[k] * impulseX) * storeA.inverseMomentOfInertia[idA];
+    }
+    final float inverseMassB = storeB.inverseMass[idB];
+    if (inverseMassB != 0)
+    {
+      storeB.velocityX[idB] += impulseX * inverseMassB;
+      storeB.velocityY[idB] += impulseY * inverseMassB;
+      storeB.angularVelocity[idB] +=
+          (m.rBX[k] * impulseY - m.rBY[k] * impulseX) * storeB.inverseMomentOfInertia[idB];
+    }
+  }
+
+  // Frame of the manifolds of the last call to detect().
+  long getFrame()
+  {
+    return frame;
+  }
+
+  /**
+   * Drops all manifolds and sets the frame of the last call to detect(), before the
+   * manifolds of a snapshot are added with {@link #restoreManifold}.
+   */
+  void restore(final long frame)
+  {
+    for (int i = 0; i < manifoldCount; i++)
+    {
+      release(manifolds[i]);
+      manifolds[i] = null;
+    }
+    manifoldCount = 0;
+    manifoldMap.clear();
+    this.frame = frame;
+  }
+
+  // Adds an empty manifold of a and b as if detect() had found it, for its points to be set.
+  ContactManifold restoreManifold(final PhysicsObject a, final PhysicsObject b)
+  {
+    final ContactManifold m = obtain();
+    m.a = a;
+    m.b = b;
+    m.frame = frame;
+    manifoldMap.put(ManifoldMap.key(a.getId(), b.getId()), m);
+    if (manifoldCount == manifolds.length)
+    {
+      manifolds = Arrays.copyOf(manifolds, manifoldCount * 2);
+    }
+    manifolds[manifoldCount++] = m;
+    return m;
+  }
+
+  private ContactManifold obtain()
+  {
+    if (poolSize == 0)
+    {
+      return new ContactManifold();
+    }
+    final ContactManifold m = pool[--poolSize];
+    pool[poolSize] = null;
+    m.pointCount = 0;
+    return m;
+  }
+
+  private void release(final ContactManifold m)
+  {
+    m.a = null;
+    m.b = null;
+    if (poolSize == pool.length)
+    {
+      pool = Arrays.copyOf(pool, poolSize * 2);
+    }
+    pool[poolSize++] = m;
+  }
+}
@@ -0,0 +1,203 @@
+import java.util.Arrays;
+import javax.vecmath.Vector2f;
+
+/**
+ * Keeps fast objects from passing through boundaries and circles within one step. An
+ * object is fast when it would move further than its inner radius in the step. Only fast
+ * objects are swept; all others move normally.
+ *
+ * Before the broad phase, the bounds of fast objects are grown to cover their motion, so
+ * that the pairs they may hit are reported. Once the solver has set the velocities, every
+ * fast object only moves up to its earliest time of impact, just far enough into what it
+ * hits for the next step to find the contact and stop it. The rest of its step is dropped.
+ *
+ * Circles and polygons are swept against half-spaces, and circles against circles. Against
+ * a half-space, the rotation of an object is linearized: every point moves in a straight
+ * line with its velocity at the start of the step, which includes the part due to the
+ * angular velocity. Points of an object spinning through a large angle in one step may
+ * therefore still end up behind the boundary. Circle pairs only use the velocities of the
+ * centers, as the rotation of a circle does not move its edge.
+ */
+public class ContinuousCollision
+{
+  // Depth to which an object is moved into what it hits.
+  private static final float TARGET_DEPTH = 0.005f;
+
+  // Whether each object was fast when the bounds were grown, by object index.
+  private boolean[] fast = new boolean[0];
+  // Fraction of the step each object moves, by object index.
+  private float[] fraction = new float[0];
+  private int fastCount;
+  private final Vector2f centerOfMass = new Vector2f();
+
+  public int getFastCount()
+  {
+    return fastCount;
+  }
+
+  // Fraction of the step the object at the given index moves.
+  public float getFraction(final int index)
+  {
+    return fraction[index];
+  }
+
+  /**
+   * Finds the fast objects and grows their bounds by their motion over the step. Call
+   * after updating the bounds and before the broad phase.
+   */
+  public void expandBounds(final PhysicsObject[] objects, final int count, final float duration)
+  {
+    if (fast.length < count)
+    {
+      fast = new boolean[Math.max(count, fast.length * 2)];
+      fraction = new float[fast.length];
+    }
+    Arrays.fill(fast, 0, count, false);
+    Arrays.fill(fraction, 0, count, 1);
+    fastCount = 0;
+    for (int i = 0; i < count; i++)
+    {
+      final PhysicsObject o = objects[i];
+      if (o.isAsleep())
+      {
+        continue;
+      }
+      final float dx = o.getVelocityX() * duration;
+      final float dy = o.getVelocityY() * duration;
+      final float innerRadius = o.getInnerRadius();
+      if (dx * dx + dy * dy <= innerRadius * innerRadius)
+      {
+        continue;
+      }
+      fast[i] = true;
+      fastCount++;
+      final AABB bounds = o.bounds;
+      if (dx < 0)
+      {
+        bounds.minX += dx;
+      }
+      else
+      {
+        bounds.maxX += dx;
+      }
+      if (dy < 0)
+      {
+        bounds.minY += dy;
+      }
+      else
+      {
+        bounds.maxY += dy;
+      }
+    }
+  }
+
+  /**
+   * Finds the fraction of the step each fast object can move before its first impact,
+   * using the velocities of the objects now. {@code pairs} must come from the broad phase
+   * run on the grown bounds.
+   */
+  public void findImpacts(final PhysicsObject[] objects, final int count,
+                          final HalfSpace[] boundaries, final int boundaryCount,
+                          final PairList pairs, final float duration)
+  {
+    if (fastCount == 0)
+    {
+      return;
+    }
+    for (int i = 0; i < count; i++)
+    {
+      if (!fast[i])
+      {
+        continue;
+      }
+      final PhysicsObject o = objects[i];
+      for (int j = 0; j < boundaryCount; j++)
+      {
+        fraction[i] = Math.min(fraction[i], sweep(boundaries[j], o, duration));
+      }
+    }
+    for (int p = 0; p < pairs.size; p++)
+    {
+      final int a = pairs.first[p];
+      final int b = pairs.second[p];
+      if ((fast[a] || fast[b]) && objects[a].getShapeType() == PhysicsObject.CIRCLE &&
+          objects[b].getShapeType() == PhysicsObject.CIRCLE)
+      {
+        final float t = sweep((Circle) objects[a], (Circle) objects[b], duration);
+        fraction[a] = Math.min(fraction[a], t);
+        fraction[b] = Math.min(fraction[b], t);
+      }
+    }
+  }
+
+  /**
+   * Returns the fraction of the step after which the object has moved {@link #TARGET_DEPTH}
+   * into the half-space boundary, or 1 if it does not get there. Points of the object that
+   * already touch the boundary are left to the solver. Points move with the velocity they
+   * have now, including the part due to the rotation of the object.
+   */
+  private float sweep(final HalfSpace boundary, final PhysicsObject o, final float duration)
+  {
+    o.getGlobalCenterOfMass(centerOfMass);
+    if (o.getShapeType() == PhysicsObject.CIRCLE)
+    {
+      final Circle circle = (Circle) o;
+      return sweep(boundary, o, circle.getPositionX(), circle.getPositionY(), circle.radius,
+                   duration);
+    }
+    if (o.getShapeType() == PhysicsObject.POLYGON)
+    {
+      float t = 1;
+      for (final Vector2f vertex : ((ConvexPolygon) o).getVertices())
+      {
+        t = Math.min(t, sweep(boundary, o, vertex.x, vertex.y, 0, duration));
+      }
+      return t;
+    }
+    return 1;
+  }
+
+  // Sweeps a circle around a point of the object; the radius is 0 for vertices.
+  private float sweep(final HalfSpace boundary, final PhysicsObject o, final float x,
+                      final float y, final float radius, final float duration)
+  {
+    final float normalX = boundary.normal.x;
+    final float normalY = boundary.normal.y;
+    final float distance = normalX * x + normalY * y - boundary.intercept - radius;
+    final float angularVelocity = o.getAngularVelocity();
+    final float velocityX = o.getVelocityX() - angularVelocity * (y - centerOfMass.y);
+    final float velocityY = o.getVelocityY() + angularVelocity * (x - centerOfMass.x);
+    final float approach = -(normalX * velocityX + normalY * velocityY) * duration;
+    if (distance < 0 || approach <= distance)
+    {
+      return 1;
+    }
+    return Math.min((distance + TARGET_DEPTH) / approach, 1);
+  }
+
+  // Same for two circles moving towards each other.
+  private static float sweep(final Circle a, final Circle b, final float duration)
+  {
+    final float px = b.getPositionX() - a.getPositionX();
+    final float py = b.getPositionY() - a.getPositionY();
+    final float dx = (b.getVelocityX() - a.getVelocityX()) * duration;
+    final float dy = (b.getVelocityY() - a.getVelocityY()) * duration;
+    final float radius = a.radius + b.radius - TARGET_DEPTH;
+    // Solve |p + t d| = radius for the smaller t.
+    final float qa = dx * dx + dy * dy;
+    final float qb = 2 * (px * dx + py * dy);
+    final float qc = px * px + py * py - radius * radius;
+    if (qc <= 0 || qb >= 0)
+    {
+      // Already touching, or moving apart.
+      return 1;
+    }
+    final float discriminant = qb * qb - 4 * qa * qc;
+    if (discriminant < 0)
+    {
+      return 1;
+    }
+    final float t = (-qb - (float) Math.sqrt(discriminant)) / (2 * qa);
+    return Math.min(t, 1);
+  }
+}
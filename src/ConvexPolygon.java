@@ -0,0 +1,374 @@
+import java.awt.Color;
+import java.util.Arrays;
+
+import javax.media.j3d.Appearance;
+import javax.media.j3d.BranchGroup;
+import javax.media.j3d.ColoringAttributes;
+import javax.media.j3d.Node;
+import javax.media.j3d.Shape3D;
+import javax.vecmath.Color3f;
+import javax.vecmath.Vector2f;
+
+/**
+ * Convex polygon with any number of vertices. The vertices and outward edge normals are
+ * kept in model space. They are rotated at most once per change of orientation, and the
+ * vertices are moved to the position at most once per change of position.
+ */
+public class ConvexPolygon extends PhysicsObject
+{
+  // Number of pairs per polygon whose last separating axis is remembered.
+  private static final int AXIS_CACHE_SIZE = 4;
+
+  // Counter-clockwise vertices relative to the position, as x, y pairs.
+  private final float[] modelVertices;
+  // Outward unit normal of the edge from vertex i to vertex i + 1, as x, y pairs.
+  private final float[] modelNormals;
+  // Vertices rotated by the cached orientation but not translated, as x, y pairs.
+  private final float[] rotatedVertices;
+  private final Vector2f[] vertexCache;
+  private final Vector2f[] normalCache;
+  // Orientation the rotated vertices and the normals are valid for, NaN when none.
+  private float cachedOrientation = Float.NaN;
+  // Distance from the center of mass to the nearest edge.
+  private final float innerRadius;
+  // Position and orientation the vertices were last moved to, NaN when none.
+  private float cachedPositionX = Float.NaN;
+  private float cachedPositionY = Float.NaN;
+  private float translatedOrientation = Float.NaN;
+  private Color3f color;
+
+  // Partner id and encoded axis of the pairs whose separating axis is remembered.
+  private final int[] axisCachePartner = new int[AXIS_CACHE_SIZE];
+  private final int[] axisCacheAxis = new int[AXIS_CACHE_SIZE];
+
+  /**
+   * Creates a polygon of uniform density from counter-clockwise vertices given as x, y
+   * pairs relative to the position.
+   */
+  public ConvexPolygon(final float mass, final float positionX, final float positionY,
+                       final float velocityX, final float velocityY, final float orientation,
+                       final float angularVelocity, final float[] vertices, final Color3f color)
+  {
+    super(mass, positionX, positionY, velocityX, velocityY, orientation, angularVelocity);
+
+    if (vertices.length < 6 || vertices.length % 2 != 0)
+    {
+      throw new IllegalArgumentException();
+    }
+
+    final int count = vertices.length / 2;
+    modelVertices = vertices.clone();
+    modelNormals = new float[vertices.length];
+    rotatedVertices = new float[vertices.length];
+    vertexCache = new Vector2f[count];
+    normalCache = new Vector2f[count];
+    // Area, centroid and second moment of area about the origin.
+    float area = 0;
+    float centroidX = 0;
+    float centroidY = 0;
+    float secondMoment = 0;
+    for (int i = 0; i < count; i++)
+    {
+      final float x1 = vertices[2 * i];
+      final float y1 = vertices[2 * i + 1];
+      final float x2 = vertices[(2 * i + 2) % vertices.length];
+      final float y2 = vertices[(2 * i + 3) % vertices.length];
+      final float cross = x1 * y2 - x2 * y1;
+      area += cross / 2;
+      centroidX += (x1 + x2) * cross / 6;
+      centroidY += (y1 + y2) * cross / 6;
+      secondMoment += (x1 * x1 + x1 * x2 + x2 * x2 + y1 * y1 + y1 * y2 + y2 * y2) * cross / 12;
+
+      final float edgeLength = (float) Math.sqrt((x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1));
+      modelNormals[2 * i] = (y2 - y1) / edgeLength;
+      modelNormals[2 * i + 1] = -(x2 - x1) / edgeLength;
+      vertexCache[i] = new Vector2f();
+      normalCache[i] = new Vector2f();
+    }
+    if (area <= 0)
+    {
+      // Clockwise or degenerate.
+      throw new IllegalArgumentException();
+    }
+    centroidX /= area;
+    centroidY /= area;
+
+    float innerRadius = Float.POSITIVE_INFINITY;
+    for (int i = 0; i < count; i++)
+    {
+      innerRadius = Math.min(innerRadius,
+                             modelNormals[2 * i] * (vertices[2 * i] - centroidX) +
+                                 modelNormals[2 * i + 1] * (vertices[2 * i + 1] - centroidY));
+    }
+    this.innerRadius = innerRadius;
+
+    setShapeType(POLYGON);
+    setCenterOfMass(centroidX, centroidY);
+    // Using the parallel axis theorem
+    setMomentOfInertia(mass *
+                       (secondMoment / area - centroidX * centroidX - centroidY * centroidY));
+    this.color = color;
+    Arrays.fill(axisCachePartner, -1);
+  }
+
+  /**
+   * Returns the vertices of a regular polygon with the given circumradius, centered on the
+   * origin.
+   */
+  public static float[] regularVertices(final int sides, final float radius)
+  {
+    if (sides < 3 || radius <= 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    final float[] vertices = new float[2 * sides];
+    for (int i = 0; i < sides; i++)
+    {
+      vertices[2 * i] = radius * (float) Math.cos(2 * Math.PI * i / sides);
+      vertices[2 * i + 1] = radius * (float) Math.sin(2 * Math.PI * i / sides);
+    }
+    return vertices;
+  }
+
+  // Returns the vertices multiplied by a positive width.
+  static float[] scale(final float[] vertices, final float width)
+  {
+    if (width <= 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    final float[] scaled = new float[vertices.length];
+    for (int i = 0; i < vertices.length; i++)
+    {
+      scaled[i] = vertices[i] * width;
+    }
+    return scaled;
+  }
+
+  public float getInnerRadius()
+  {
+    return innerRadius;
+  }
+
+  public int getVertexCount()
+  {
+    return vertexCache.length;
+  }
+
+  public void clearCaches()
+  {
+    cachedPositionX = Float.NaN;
+  }
+
+  // World-space vertices. The array is reused and updated in place.
+  public Vector2f[] getVertices()
+  {
+    updateCaches();
+    return vertexCache;
+  }
+
+  // World-space outward edge normals. The array is reused and updated in place.
+  public Vector2f[] getNormals()
+  {
+    updateRotation();
+    return normalCache;
+  }
+
+  /**
+   * Translates the rotated vertices to the position if the object moved or turned since
+   * the last call, so integrators can move objects without clearing the caches. Objects
+   * that moved without turning, such as ones sliding or falling, only pay for the
+   * translation.
+   */
+  private void updateCaches()
+  {
+    final float positionX = getPositionX();
+    final float positionY = getPositionY();
+    final float orientation = getOrientation();
+    if (positionX == cachedPositionX && positionY == cachedPositionY &&
+        orientation == translatedOrientation)
+    {
+      return;
+    }
+    updateRotation();
+    for (int i = 0; i < vertexCache.length; i++)
+    {
+      vertexCache[i].x = rotatedVertices[2 * i] + positionX;
+      vertexCache[i].y = rotatedVertices[2 * i + 1] + positionY;
+    }
+    cachedPositionX = positionX;
+    cachedPositionY = positionY;
+    translatedOrientation = orientation;
+  }
+
+  // Rotates the model vertices and normals if the orientation changed since the last call.
+  private void updateRotation()
+  {
+    final float orientation = getOrientation();
+    if (orientation == cachedOrientation)
+    {
+      return;
+    }
+    final float cos = getOrientationCos();
+    final float sin = getOrientationSin();
+    for (int i = 0; i < vertexCache.length; i++)
+    {
+      final float x = modelVertices[2 * i];
+      final float y = modelVertices[2 * i + 1];
+      rotatedVertices[2 * i] = cos * x - sin * y;
+      rotatedVertices[2 * i + 1] = sin * x + cos * y;
+      final float normalX = modelNormals[2 * i];
+      final float normalY = modelNormals[2 * i + 1];
+      normalCache[i].x = cos * normalX - sin * normalY;
+      normalCache[i].y = sin * normalX + cos * normalY;
+    }
+    cachedOrientation = orientation;
+  }
+
+  public boolean containsPoint(final float x, final float y)
+  {
+    final Vector2f[] vertices = getVertices();
+    final Vector2f[] normals = getNormals();
+    for (int i = 0; i < vertices.length; i++)
+    {
+      if (normals[i].x * (x - vertices[i].x) + normals[i].y * (y - vertices[i].y) > 0)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Clips the ray against the half-plane of every edge. The ray enters the polygon where
+   * it crosses the last edge it enters through and leaves where it crosses the first edge
+   * it leaves through.
+   */
+  public boolean raycast(final float originX, final float originY, final float directionX,
+                         final float directionY, final RaycastHit hit)
+  {
+    final Vector2f[] vertices = getVertices();
+    final Vector2f[] normals = getNormals();
+    float lower = 0;
+    float upper = hit.fraction;
+    int edge = -1;
+    for (int i = 0; i < vertices.length; i++)
+    {
+      final float numerator = normals[i].x * (vertices[i].x - originX) +
+          normals[i].y * (vertices[i].y - originY);
+      final float denominator = normals[i].x * directionX + normals[i].y * directionY;
+      if (denominator == 0)
+      {
+        if (numerator < 0)
+        {
+          return false;
+        }
+      }
+      else if (denominator < 0 && numerator < lower * denominator)
+      {
+        lower = numerator / denominator;
+        edge = i;
+      }
+      else if (denominator > 0 && numerator < upper * denominator)
+      {
+        upper = numerator / denominator;
+      }
+      if (upper < lower)
+      {
+        return false;
+      }
+    }
+    if (edge < 0 || lower >= hit.fraction)
+    {
+      return false;
+    }
+    hit.set(this, lower, normals[edge].x, normals[edge].y);
+    return true;
+  }
+
+  public void updateBounds()
+  {
+    final Vector2f[] vertices = getVertices();
+    bounds.set(vertices[0].x, vertices[0].y, vertices[0].x, vertices[0].y);
+    for (int i = 1; i < vertices.length; i++)
+    {
+      bounds.minX = Math.min(bounds.minX, vertices[i].x);
+      bounds.minY = Math.min(bounds.minY, vertices[i].y);
+      bounds.maxX = Math.max(bounds.maxX, vertices[i].x);
+      bounds.maxY = Math.max(bounds.maxY, vertices[i].y);
+    }
+  }
+
+  /**
+   * Returns the axis that last separated this polygon from the polygon with the given id,
+   * encoded by {@link CollisionHandler}, or -1 if none is remembered.
+   */
+  int getCachedAxis(final int partner)
+  {
+    final int slot = partner & AXIS_CACHE_SIZE - 1;
+    return axisCachePartner[slot] == partner ? axisCacheAxis[slot] : -1;
+  }
+
+  void setCachedAxis(final int partner, final int axis)
+  {
+    final int slot = partner & AXIS_CACHE_SIZE - 1;
+    axisCachePartner[slot] = partner;
+    axisCacheAxis[slot] = axis;
+  }
+
+  // Color used when none was given.
+  protected Color3f createDefaultColor()
+  {
+    return new Color3f(Color.getHSBColor((float) Math.random(), (float) Math.random(),
+                                         (float) Math.max(Math.random(), 0.5)));
+  }
+
+  public int getTriangleCount()
+  {
+    return vertexCache.length - 2;
+  }
+
+  public void getTriangles(final float[] vertices, final float[] colors, final int offset)
+  {
+    if (color == null)
+    {
+      color = createDefaultColor();
+    }
+    // A fan around the first vertex.
+    for (int i = 0; i < vertexCache.length - 2; i++)
+    {
+      final int vertex = offset + 3 * i;
+      vertices[2 * vertex] = modelVertices[0];
+      vertices[2 * vertex + 1] = modelVertices[1];
+      vertices[2 * vertex + 2] = modelVertices[2 * i + 2];
+      vertices[2 * vertex + 3] = modelVertices[2 * i + 3];
+      vertices[2 * vertex + 4] = modelVertices[2 * i + 4];
+      vertices[2 * vertex + 5] = modelVertices[2 * i + 5];
+      for (int k = 0; k < 3; k++)
+      {
+        colors[3 * (vertex + k)] = color.x;
+        colors[3 * (vertex + k) + 1] = color.y;
+        colors[3 * (vertex + k) + 2] = color.z;
+      }
+    }
+  }
+
+  protected Node createShape()
+  {
+    final BranchGroup root = new BranchGroup();
+    if (color == null)
+    {
+      color = createDefaultColor();
+    }
+    final Appearance appearance = new Appearance();
+    appearance
+        .setColoringAttributes(new ColoringAttributes(color, ColoringAttributes.FASTEST));
+    appearance.setPolygonAttributes(GeometryCache.getPolygonAttributes());
+    root.addChild(new Shape3D(GeometryCache.getPolygon(modelVertices), appearance));
+
+    root.addChild(new Shape3D(GeometryCache.getPoint(getCenterOfMassX(), getCenterOfMassY()),
+                              GeometryCache.getCenterOfMassAppearance()));
+
+    return root;
+  }
+}
@@ -0,0 +1,36 @@
+/**
+ * Slows bodies down with a force of -(linear + quadratic * speed) * velocity, the linear
+ * part for viscous media and the quadratic part for fast bodies in air or water.
+ */
+public class DragField extends ForceField
+{
+  private final float linear;
+  private final float quadratic;
+
+  public DragField(final float linear, final float quadratic)
+  {
+    if (linear < 0 || quadratic < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.linear = linear;
+    this.quadratic = quadratic;
+  }
+
+  public void applyForces(final BodyStore store)
+  {
+    for (int i = 0; i < store.size(); i++)
+    {
+      if (!isAffected(store, i))
+      {
+        continue;
+      }
+      final float velocityX = store.velocityX[i];
+      final float velocityY = store.velocityY[i];
+      final float speed = (float) Math.sqrt(velocityX * velocityX + velocityY * velocityY);
+      final float scale = linear + quadratic * speed;
+      store.forceX[i] -= scale * velocityX;
+      store.forceY[i] -= scale * velocityY;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+import java.util.Arrays;
+
+/**
+ * Steps a {@link World} with a fixed time step however much real time passes between
+ * calls to {@link #advance(double)}. Elapsed time is accumulated and consumed in whole
+ * steps; the remainder carries over to the next call. At most a fixed number of steps is
+ * taken per call, and time beyond that is dropped, so a slow frame cannot make the next
+ * one slower still.
+ *
+ * The positions and orientations before the last step are kept, so that the bodies can be
+ * drawn at the accumulated fraction of a step between the last two states.
+ */
+public class FixedStepScheduler
+{
+  private static final int DEFAULT_MAX_SUBSTEPS = 8;
+
+  private final World world;
+  private final float timeStep;
+  private int maxSubsteps = DEFAULT_MAX_SUBSTEPS;
+  private double accumulator;
+  private double droppedTime;
+
+  // State of the bodies before the last step, by store id.
+  private float[] previousPositionX = new float[0];
+  private float[] previousPositionY = new float[0];
+  private float[] previousOrientation = new float[0];
+  // Number of bodies in the world when the state was saved.
+  private int previousCount;
+
+  public FixedStepScheduler(final World world, final float timeStep)
+  {
+    if (world == null || !(timeStep > 0))
+    {
+      throw new IllegalArgumentException();
+    }
+    this.world = world;
+    this.timeStep = timeStep;
+  }
+
+  public World getWorld()
+  {
+    return world;
+  }
+
+  public float getTimeStep()
+  {
+    return timeStep;
+  }
+
+  public void setMaxSubsteps(final int maxSubsteps)
+  {
+    if (maxSubsteps < 1)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.maxSubsteps = maxSubsteps;
+  }
+
+  public int getMaxSubsteps()
+  {
+    return maxSubsteps;
+  }
+
+  /**
+   * Adds {@code elapsed} seconds of real time and takes as many steps as fit in the
+   * accumulated time, up to the maximum number of substeps.
+   *
+   * @return the number of steps taken
+   */
+  public int advance(final double elapsed)
+  {
+    if (elapsed < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    accumulator += elapsed;
+    int steps = (int) Math.min(accumulator / timeStep, Integer.MAX_VALUE);
+    if (steps > maxSubsteps)
+    {
+      // Drop whole steps and keep the fraction, so the interpolation stays smooth.
+      final double dropped = (steps - maxSubsteps) * (double) timeStep;
+      accumulator -= dropped;
+      droppedTime += dropped;
+      steps = maxSubsteps;
+    }
+    for (int i = 0; i < steps; i++)
+    {
+      if (i == steps - 1)
+      {
+        savePreviousState();
+      }
+      world.step(timeStep);
+      accumulator -= timeStep;
+    }
+    return steps;
+  }
+
+  /**
+   * Returns the fraction of a step accumulated but not yet simulated, between 0 and 1.
+   * Bodies drawn at this fraction between their previous and current state move smoothly
+   * whatever the ratio of frame rate to step rate.
+   */
+  public float getAlpha()
+  {
+    return (float) Math.max(0, Math.min(accumulator / timeStep, 1));
+  }
+
+  // Real time that was dropped because a call needed more than the maximum substeps.
+  public double getDroppedTime()
+  {
+    return droppedTime;
+  }
+
+  /**
+   * Makes the current state the previous state, so that bodies are drawn where they are.
+   * Call after moving bodies by hand.
+   */
+  public void resetInterpolation()
+  {
+    savePreviousState();
+  }
+
+  public float getInterpolatedPositionX(final PhysicsObject object)
+  {
+    return interpolate(getPreviousPositionX(object), object.getPositionX());
+  }
+
+  public float getInterpolatedPositionY(final PhysicsObject object)
+  {
+    return interpolate(getPreviousPositionY(object), object.getPositionY());
+  }
+
+  public float getInterpolatedOrientation(final PhysicsObject object)
+  {
+    return interpolate(getPreviousOrientation(object), object.getOrientation());
+  }
+
+  // Position before the last step, or the current one for objects added since.
+  public float getPreviousPositionX(final PhysicsObject object)
+  {
+    final int id = object.getId();
+    return id < previousCount ? previousPositionX[id] : object.getPositionX();
+  }
+
+  public float getPreviousPositionY(final PhysicsObject object)
+  {
+    final int id = object.getId();
+    return id < previousCount ? previousPositionY[id] : object.getPositionY();
+  }
+
+  public float getPreviousOrientation(final PhysicsObject object)
+  {
+    final int id = object.getId();
+    return id < previousCount ? previousOrientation[id] : object.getOrientation();
+  }
+
+  private float interpolate(final float previous, final float current)
+  {
+    return previous + (current - previous) * getAlpha();
+  }
+
+  private void savePreviousState()
+  {
+    final BodyStore store = world.getStore();
+    previousCount = store.size();
+    if (previousPositionX.length < previousCount)
+    {
+      final int capacity = Math.max(previousCount, previousPositionX.length * 2);
+      previousPositionX = Arrays.copyOf(previousPositionX, capacity);
+      previousPositionY = Arrays.copyOf(previousPositionY, capacity);
+      previousOrientation = Arrays.copyOf(previousOrientation, capacity);
+    }
+    System.arraycopy(store.positionX, 0, previousPositionX, 0, previousCount);
+    System.arraycopy(store.positionY, 0, previousPositionY, 0, previousCount);
+    System.arraycopy(store.orientation, 0, previousOrientation, 0, previousCount);
+  }
+}
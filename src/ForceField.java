@@ -0,0 +1,39 @@
+/**
+ * Force generator that acts on every dynamic body, or only on the bodies whose center of
+ * mass is inside a region.
+ */
+public abstract class ForceField implements ForceGenerator
+{
+  private AABB region;
+
+  // Limits the field to a region, or lets it act everywhere again if region is null.
+  public void setRegion(final AABB region)
+  {
+    this.region = region;
+  }
+
+  public AABB getRegion()
+  {
+    return region;
+  }
+
+  /**
+   * Whether the body is dynamic, awake and inside the region. Also brings the rotated
+   * center of mass of the body up to date.
+   */
+  protected final boolean isAffected(final BodyStore store, final int id)
+  {
+    if (store.inverseMass[id] == 0 || store.asleep[id])
+    {
+      return false;
+    }
+    store.updateRotation(id);
+    if (region == null)
+    {
+      return true;
+    }
+    final float x = store.positionX[id] + store.rotatedCenterOfMassX[id];
+    final float y = store.positionY[id] + store.rotatedCenterOfMassY[id];
+    return x >= region.minX && x <= region.maxX && y >= region.minY && y <= region.maxY;
+  }
+}
@@ -0,0 +1,13 @@
+/**
+ * Adds forces to the bodies of a {@link World}. The world calls a generator once per
+ * evaluation of the forces, which is once per step or once per pass of a multi-pass
+ * {@link Integrator}, after the forces applied to the objects and before integrating.
+ */
+public interface ForceGenerator
+{
+  /**
+   * Adds the forces for the state the store holds now to its force arrays. Static bodies
+   * may be skipped, and sleeping bodies are not moved by their forces.
+   */
+  void applyForces(BodyStore store);
+}
@@ -0,0 +1,145 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.media.j3d.Appearance;
+import javax.media.j3d.GeometryArray;
+import javax.media.j3d.PointArray;
+import javax.media.j3d.PointAttributes;
+import javax.media.j3d.PolygonAttributes;
+import javax.media.j3d.TriangleFanArray;
+import javax.vecmath.Point3f;
+
+/**
+ * Shares the geometry of the shapes of objects between all objects of the same size, so
+ * that a scene of many equal bodies builds each tessellation once. Geometry is only ever
+ * read once built, which Java3D allows to be shared between shapes. The least recently
+ * used entries are dropped once there are more than a limit, so scenes of bodies with
+ * sizes that all differ do not keep every tessellation alive.
+ */
+final class GeometryCache
+{
+  private static final int MAX_ENTRIES = 4096;
+
+  private static final Map<Key, GeometryArray> geometries =
+      new LinkedHashMap<Key, GeometryArray>(16, .75f, true)
+      {
+        protected boolean removeEldestEntry(final Map.Entry<Key, GeometryArray> eldest)
+        {
+          return size() > MAX_ENTRIES;
+        }
+      };
+  private static PolygonAttributes polygonAttributes;
+  private static Appearance centerOfMassAppearance;
+
+  private GeometryCache()
+  {
+  }
+
+  /**
+   * Returns a fan of one half of a circle around the origin, the half above the x axis
+   * if {@code upper} or the half below it otherwise, outlined by half the samples.
+   */
+  static synchronized GeometryArray getHalfCircle(final float radius, final int samples,
+                                                  final boolean upper)
+  {
+    final Key key = new Key(0, radius, samples, upper ? 1 : 0);
+    GeometryArray geometry = geometries.get(key);
+    if (geometry == null)
+    {
+      geometry = new TriangleFanArray(samples / 2 + 2, GeometryArray.COORDINATES,
+                                      new int[] {samples / 2 + 2});
+      final int first = upper ? 0 : samples / 2;
+      geometry.setCoordinate(0, new Point3f());
+      for (int i = 0; i <= samples / 2; i++)
+      {
+        final double angle = 2 * Math.PI * (first + i) / samples;
+        geometry.setCoordinate(i + 1, new Point3f(radius * (float) Math.cos(angle),
+                                                  radius * (float) Math.sin(angle), 0));
+      }
+      geometries.put(key, geometry);
+    }
+    return geometry;
+  }
+
+  // Returns a fan of a convex polygon with the given vertices, as x, y pairs.
+  static synchronized GeometryArray getPolygon(final float[] vertices)
+  {
+    final float[] values = new float[vertices.length + 1];
+    values[0] = 1;
+    System.arraycopy(vertices, 0, values, 1, vertices.length);
+    final Key key = new Key(values);
+    GeometryArray geometry = geometries.get(key);
+    if (geometry == null)
+    {
+      final int count = vertices.length / 2;
+      geometry =
+          new TriangleFanArray(count, GeometryArray.COORDINATES, new int[] {count});
+      for (int i = 0; i < count; i++)
+      {
+        geometry.setCoordinate(i, new Point3f(vertices[2 * i], vertices[2 * i + 1], 0));
+      }
+      geometries.put(key, geometry);
+    }
+    return geometry;
+  }
+
+  // Returns a single point at the given coordinates.
+  static synchronized GeometryArray getPoint(final float x, final float y)
+  {
+    final Key key = new Key(2, x, y);
+    GeometryArray geometry = geometries.get(key);
+    if (geometry == null)
+    {
+      geometry = new PointArray(1, GeometryArray.COORDINATES);
+      geometry.setCoordinate(0, new Point3f(x, y, 0));
+      geometries.put(key, geometry);
+    }
+    return geometry;
+  }
+
+  // Filled polygons visible from both sides.
+  static synchronized PolygonAttributes getPolygonAttributes()
+  {
+    if (polygonAttributes == null)
+    {
+      polygonAttributes =
+          new PolygonAttributes(PolygonAttributes.POLYGON_FILL, PolygonAttributes.CULL_NONE, 0);
+    }
+    return polygonAttributes;
+  }
+
+  // Appearance of the marker at the center of mass.
+  static synchronized Appearance getCenterOfMassAppearance()
+  {
+    if (centerOfMassAppearance == null)
+    {
+      centerOfMassAppearance = new Appearance();
+      centerOfMassAppearance.setPointAttributes(new PointAttributes(4, true));
+    }
+    return centerOfMassAppearance;
+  }
+
+  // Kind of geometry followed by its parameters, compared by value.
+  private static final class Key
+  {
+    private final float[] values;
+    private final int hash;
+
+    Key(final float... values)
+    {
+      this.values = values;
+      hash = Arrays.hashCode(values);
+    }
+
+    public int hashCode()
+    {
+      return hash;
+    }
+
+    public boolean equals(final Object other)
+    {
+      return other instanceof Key && Arrays.equals(values, ((Key) other).values);
+    }
+  }
+}
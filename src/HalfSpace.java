@@ -7,13 +7,31 @@ public class HalfSpace extends PhysicsObject {
 	
 	public HalfSpace(float positionX, float positionY, float normalX, float normalY) {
 		super(Float.POSITIVE_INFINITY, positionX, positionY, 0, 0, 0, 0);
+		setShapeType(HALF_SPACE);
 		normal = new Vector2f(normalX, normalY);
 		normal.normalize();
-		intercept = normal.dot(position);
-		momentOfInertia = Float.POSITIVE_INFINITY;
+		intercept = normal.x * getPositionX() + normal.y * getPositionY();
+		setMomentOfInertia(Float.POSITIVE_INFINITY);
 	}
 
 	public HalfSpace(Tuple2f position, Tuple2f normal) {
 		this(position.x, position.y, normal.x, normal.y);
 	}
+
+	// The solid side is the one the normal points away from.
+	public boolean containsPoint(float x, float y) {
+		return normal.x * x + normal.y * y <= intercept;
+	}
+
+	public boolean raycast(float originX, float originY, float directionX, float directionY, RaycastHit hit) {
+		final float distance = normal.x * originX + normal.y * originY - intercept;
+		final float approach = normal.x * directionX + normal.y * directionY;
+		if (distance < 0 || approach >= 0)
+			return false;
+		final float t = -distance / approach;
+		if (t >= hit.fraction)
+			return false;
+		hit.set(this, t, normal.x, normal.y);
+		return true;
+	}
 }
@@ -0,0 +1,23 @@
+/**
+ * Advances the velocities and positions of the bodies of a {@link BodyStore} over one
+ * step of the iterated collision resolution of {@link World}. A step is made of passes
+ * over the whole arrays of the store; before every pass but the first, the world
+ * evaluates the forces again for the state the previous pass left in the store.
+ * Integrators skip static and sleeping bodies.
+ */
+public interface Integrator
+{
+  int getPassCount();
+
+  /**
+   * Called on the stepping thread before the first pass of every step, with the force
+   * arrays holding the forces at the start of the step.
+   */
+  void prepare(BodyStore store);
+
+  /**
+   * Runs one pass over the bodies with ids from {@code from} up to, but not including,
+   * {@code to}. Disjoint ranges of one pass may run on different threads.
+   */
+  void integrate(int pass, BodyStore store, int from, int to, float duration);
+}
@@ -0,0 +1,206 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Groups touching bodies into islands with union-find over the contact manifolds and puts
+ * islands to sleep once all of their bodies have rested for a number of steps. The ends of
+ * a {@link Spring} join the same island, so that they fall asleep together. Static
+ * bodies never join islands, so bodies resting on the same boundary can sleep
+ * separately. A sleeping island is woken as a whole when an awake body touches it.
+ */
+public class Islands
+{
+  private static final float DEFAULT_LINEAR_THRESHOLD = 0.05f;
+  private static final float DEFAULT_ANGULAR_THRESHOLD = 0.05f;
+  private static final int DEFAULT_SLEEP_FRAMES = 60;
+
+  private float linearThreshold = DEFAULT_LINEAR_THRESHOLD;
+  private float angularThreshold = DEFAULT_ANGULAR_THRESHOLD;
+  private int sleepFrames = DEFAULT_SLEEP_FRAMES;
+
+  // Union-find parent of each body, by store id.
+  private int[] parent = new int[0];
+  // Smallest number of resting frames of the bodies of each island, by root id.
+  private int[] islandRestingFrames = new int[0];
+  // Islands to wake, by island id.
+  private boolean[] waking = new boolean[0];
+
+  /**
+   * Sets the speeds below which a body counts as resting and the number of consecutive
+   * resting steps after which its island falls asleep.
+   */
+  public void setThresholds(final float linear, final float angular, final int frames)
+  {
+    if (linear < 0 || angular < 0 || frames < 1)
+    {
+      throw new IllegalArgumentException();
+    }
+    linearThreshold = linear;
+    angularThreshold = angular;
+    sleepFrames = frames;
+  }
+
+  public float getLinearThreshold()
+  {
+    return linearThreshold;
+  }
+
+  public float getAngularThreshold()
+  {
+    return angularThreshold;
+  }
+
+  public int getSleepFrames()
+  {
+    return sleepFrames;
+  }
+
+  /**
+   * Wakes the islands of sleeping objects that share a pair with an awake object.
+   *
+   * @return whether any object was woken
+   */
+  public boolean wakeTouched(final PhysicsObject[] objects, final int count,
+                             final PairList pairs, final BodyStore store)
+  {
+    ensureCapacity(store.size());
+    boolean woken = false;
+    for (int p = 0; p < pairs.size; p++)
+    {
+      final PhysicsObject a = objects[pairs.first[p]];
+      final PhysicsObject b = objects[pairs.second[p]];
+      if (store.asleep[a.getId()] != store.asleep[b.getId()])
+      {
+        final int sleeper = store.asleep[a.getId()] ? a.getId() : b.getId();
+        waking[store.island[sleeper]] = true;
+        woken = true;
+      }
+    }
+    if (woken)
+    {
+      for (int i = 0; i < count; i++)
+      {
+        final int id = objects[i].getId();
+        if (store.asleep[id] && waking[store.island[id]])
+        {
+          store.wake(id);
+        }
+      }
+      Arrays.fill(waking, false);
+    }
+    return woken;
+  }
+
+  public void wakeAll(final PhysicsObject[] objects, final int count)
+  {
+    for (int i = 0; i < count; i++)
+    {
+      objects[i].wake();
+    }
+  }
+
+  /**
+   * Builds the islands of the awake objects from the manifolds of the last solve and the
+   * springs among the generators, counts the resting steps of every awake object and puts
+   * islands that rested long enough to sleep.
+   */
+  public void update(final PhysicsObject[] objects, final int count,
+                     final ContactSolver solver, final List<ForceGenerator> generators,
+                     final BodyStore store)
+  {
+    ensureCapacity(store.size());
+    for (int i = 0; i < count; i++)
+    {
+      final int id = objects[i].getId();
+      parent[id] = id;
+      islandRestingFrames[id] = Integer.MAX_VALUE;
+    }
+    for (int m = 0; m < solver.getManifoldCount(); m++)
+    {
+      final ContactManifold manifold = solver.getManifold(m);
+      final int a = manifold.getObjectA().getId();
+      final int b = manifold.getObjectB().getId();
+      if (store.inverseMass[a] != 0 && store.inverseMass[b] != 0)
+      {
+        parent[find(a)] = find(b);
+      }
+    }
+    for (int g = 0; g < generators.size(); g++)
+    {
+      if (generators.get(g) instanceof Spring)
+      {
+        final Spring spring = (Spring) generators.get(g);
+        final int a = spring.getObjectA().getId();
+        final int b = spring.getObjectB().getId();
+        if (store.inverseMass[a] != 0 && store.inverseMass[b] != 0 && !store.asleep[a] &&
+            !store.asleep[b])
+        {
+          parent[find(a)] = find(b);
+        }
+      }
+    }
+
+    final float linearSquared = linearThreshold * linearThreshold;
+    final float angularSquared = angularThreshold * angularThreshold;
+    for (int i = 0; i < count; i++)
+    {
+      final int id = objects[i].getId();
+      if (store.asleep[id])
+      {
+        continue;
+      }
+      final float speedSquared =
+          store.velocityX[id] * store.velocityX[id] + store.velocityY[id] * store.velocityY[id];
+      final float angularSpeed = store.angularVelocity[id];
+      if (speedSquared <= linearSquared && angularSpeed * angularSpeed <= angularSquared)
+      {
+        store.restingFrames[id]++;
+      }
+      else
+      {
+        store.restingFrames[id] = 0;
+      }
+      final int root = find(id);
+      islandRestingFrames[root] = Math.min(islandRestingFrames[root], store.restingFrames[id]);
+    }
+
+    for (int i = 0; i < count; i++)
+    {
+      final int id = objects[i].getId();
+      if (!store.asleep[id])
+      {
+        final int root = find(id);
+        if (islandRestingFrames[root] >= sleepFrames)
+        {
+          store.asleep[id] = true;
+          store.island[id] = root;
+          store.velocityX[id] = 0;
+          store.velocityY[id] = 0;
+          store.angularVelocity[id] = 0;
+          objects[i].updateBounds();
+        }
+      }
+    }
+  }
+
+  private int find(int id)
+  {
+    while (parent[id] != id)
+    {
+      // Path halving
+      parent[id] = parent[parent[id]];
+      id = parent[id];
+    }
+    return id;
+  }
+
+  private void ensureCapacity(final int capacity)
+  {
+    if (parent.length < capacity)
+    {
+      parent = new int[capacity];
+      islandRestingFrames = new int[capacity];
+      waking = new boolean[capacity];
+    }
+  }
+}
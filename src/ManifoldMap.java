@@ -0,0 +1,91 @@
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from a pair key to its contact manifold. Keys are not boxed, so
+ * lookups and insertions into a map with enough capacity do not allocate.
+ */
+public class ManifoldMap
+{
+  private long[] keys = new long[64];
+  private ContactManifold[] values = new ContactManifold[64];
+  private int size;
+
+  /**
+   * Returns the key of the pair of objects with the given ids, which must be ids in the
+   * same store.
+   */
+  public static long key(final int idA, final int idB)
+  {
+    return (long) idA << 32 | idB & 0xffffffffL;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public ContactManifold get(final long key)
+  {
+    final int mask = keys.length - 1;
+    for (int slot = hash(key) & mask; values[slot] != null; slot = slot + 1 & mask)
+    {
+      if (keys[slot] == key)
+      {
+        return values[slot];
+      }
+    }
+    return null;
+  }
+
+  // Adds a manifold under a key that is not in the map yet.
+  public void put(final long key, final ContactManifold manifold)
+  {
+    if (manifold == null)
+    {
+      throw new IllegalArgumentException();
+    }
+    if (2 * (size + 1) > keys.length)
+    {
+      grow();
+    }
+    final int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    while (values[slot] != null)
+    {
+      slot = slot + 1 & mask;
+    }
+    keys[slot] = key;
+    values[slot] = manifold;
+    size++;
+  }
+
+  public void clear()
+  {
+    if (size > 0)
+    {
+      Arrays.fill(values, null);
+      size = 0;
+    }
+  }
+
+  private void grow()
+  {
+    final long[] oldKeys = keys;
+    final ContactManifold[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new ContactManifold[oldKeys.length * 2];
+    size = 0;
+    for (int i = 0; i < oldKeys.length; i++)
+    {
+      if (oldValues[i] != null)
+      {
+        put(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+  private static int hash(final long key)
+  {
+    return (int) (key * 0x9E3779B97F4A7C15L >>> 32);
+  }
+}
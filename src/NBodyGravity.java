@@ -0,0 +1,289 @@
+import java.util.Arrays;
+
+/**
+ * Mutual gravitational attraction between all dynamic bodies, approximated with a
+ * Barnes-Hut quadtree in O(n log n) per evaluation instead of summing all n^2 pairs.
+ * Every evaluation builds the tree over the centers of mass. A cell whose width is less
+ * than theta times its distance from a body acts on it as one mass at its center of mass;
+ * nearer cells are opened. Theta 0 opens every cell, which gives the exact sum.
+ *
+ * Sleeping bodies attract the others but are not pulled themselves, like bodies outside
+ * a {@link ForceField}, so the attraction alone never wakes them.
+ *
+ * The tree is kept in flat arrays that are reused between evaluations, so evaluating
+ * does not allocate once the arrays are large enough.
+ */
+public class NBodyGravity implements ForceGenerator
+{
+  // Bodies closer than the smallest cell of this depth share a leaf.
+  private static final int MAX_DEPTH = 24;
+
+  private final float constant;
+  private final float softening;
+  private float theta = .5f;
+
+  // Bodies in the tree: store id, center of mass and mass, and the next body in the
+  // same leaf, or -1.
+  private int[] ids = new int[0];
+  private float[] x = new float[0];
+  private float[] y = new float[0];
+  private float[] mass = new float[0];
+  private int[] nextBody = new int[0];
+  private int bodyCount;
+
+  // Cells: center and half width, total mass and center of mass, which holds the
+  // mass-weighted sum of the positions while the tree is built, first of the four
+  // children or -1 for leaves, and the first body of leaves or -1.
+  private float[] cellX = new float[0];
+  private float[] cellY = new float[0];
+  private float[] cellHalf = new float[0];
+  private float[] cellMass = new float[0];
+  private float[] massCenterX = new float[0];
+  private float[] massCenterY = new float[0];
+  private int[] firstChild = new int[0];
+  private int[] firstBody = new int[0];
+  private int cellCount;
+
+  private final int[] stack = new int[3 * MAX_DEPTH + 4];
+
+  /**
+   * Creates the attraction with the given gravitational constant. The softening length
+   * keeps the force between close bodies finite.
+   */
+  public NBodyGravity(final float constant, final float softening)
+  {
+    if (constant < 0 || softening < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.constant = constant;
+    this.softening = softening;
+  }
+
+  // Sets the opening angle; larger values are faster and less accurate.
+  public void setTheta(final float theta)
+  {
+    if (theta < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.theta = theta;
+  }
+
+  public float getTheta()
+  {
+    return theta;
+  }
+
+  public void applyForces(final BodyStore store)
+  {
+    gather(store);
+    if (bodyCount < 2)
+    {
+      return;
+    }
+    build();
+    final float theta2 = theta * theta;
+    final float softening2 = softening * softening;
+    for (int k = 0; k < bodyCount; k++)
+    {
+      if (store.asleep[ids[k]])
+      {
+        continue;
+      }
+      final float bodyX = x[k];
+      final float bodyY = y[k];
+      float accelerationX = 0;
+      float accelerationY = 0;
+      int top = 0;
+      stack[top++] = 0;
+      while (top > 0)
+      {
+        final int cell = stack[--top];
+        if (firstChild[cell] < 0)
+        {
+          for (int b = firstBody[cell]; b >= 0; b = nextBody[b])
+          {
+            if (b != k)
+            {
+              final float dx = x[b] - bodyX;
+              final float dy = y[b] - bodyY;
+              final float inverse =
+                  1 / (float) Math.sqrt(dx * dx + dy * dy + softening2);
+              final float scale = mass[b] * inverse * inverse * inverse;
+              accelerationX += scale * dx;
+              accelerationY += scale * dy;
+            }
+          }
+          continue;
+        }
+        final float dx = massCenterX[cell] - bodyX;
+        final float dy = massCenterY[cell] - bodyY;
+        final float distance2 = dx * dx + dy * dy;
+        final float width = 2 * cellHalf[cell];
+        // Cells holding the body are always opened, so that it does not attract itself.
+        final boolean outside = Math.abs(bodyX - cellX[cell]) > cellHalf[cell] ||
+            Math.abs(bodyY - cellY[cell]) > cellHalf[cell];
+        if (outside && width * width < theta2 * distance2)
+        {
+          final float inverse = 1 / (float) Math.sqrt(distance2 + softening2);
+          final float scale = cellMass[cell] * inverse * inverse * inverse;
+          accelerationX += scale * dx;
+          accelerationY += scale * dy;
+          continue;
+        }
+        for (int c = firstChild[cell]; c < firstChild[cell] + 4; c++)
+        {
+          if (cellMass[c] != 0)
+          {
+            stack[top++] = c;
+          }
+        }
+      }
+      final int id = ids[k];
+      store.forceX[id] += constant * mass[k] * accelerationX;
+      store.forceY[id] += constant * mass[k] * accelerationY;
+    }
+  }
+
+  // Collects the center of mass and the mass of every dynamic body.
+  private void gather(final BodyStore store)
+  {
+    if (ids.length < store.size())
+    {
+      ids = new int[store.size()];
+      x = new float[store.size()];
+      y = new float[store.size()];
+      mass = new float[store.size()];
+      nextBody = new int[store.size()];
+    }
+    bodyCount = 0;
+    for (int i = 0; i < store.size(); i++)
+    {
+      if (store.inverseMass[i] != 0)
+      {
+        store.updateRotation(i);
+        ids[bodyCount] = i;
+        x[bodyCount] = store.positionX[i] + store.rotatedCenterOfMassX[i];
+        y[bodyCount] = store.positionY[i] + store.rotatedCenterOfMassY[i];
+        mass[bodyCount] = store.mass[i];
+        bodyCount++;
+      }
+    }
+  }
+
+  private void build()
+  {
+    float minX = x[0];
+    float minY = y[0];
+    float maxX = x[0];
+    float maxY = y[0];
+    for (int k = 1; k < bodyCount; k++)
+    {
+      minX = Math.min(minX, x[k]);
+      minY = Math.min(minY, y[k]);
+      maxX = Math.max(maxX, x[k]);
+      maxY = Math.max(maxY, y[k]);
+    }
+    cellCount = 0;
+    // Slightly larger than the bodies, so that none lies on the far edges.
+    final float half = Math.max(Math.max(maxX - minX, maxY - minY) / 2 * 1.0001f, 1e-6f);
+    addCell((minX + maxX) / 2, (minY + maxY) / 2, half);
+    for (int k = 0; k < bodyCount; k++)
+    {
+      insert(k);
+    }
+    for (int cell = 0; cell < cellCount; cell++)
+    {
+      if (cellMass[cell] != 0)
+      {
+        massCenterX[cell] /= cellMass[cell];
+        massCenterY[cell] /= cellMass[cell];
+      }
+    }
+  }
+
+  private void insert(final int k)
+  {
+    int cell = 0;
+    int depth = 0;
+    while (true)
+    {
+      cellMass[cell] += mass[k];
+      massCenterX[cell] += mass[k] * x[k];
+      massCenterY[cell] += mass[k] * y[k];
+      if (firstChild[cell] >= 0)
+      {
+        cell = child(cell, x[k], y[k]);
+        depth++;
+      }
+      else if (firstBody[cell] < 0)
+      {
+        firstBody[cell] = k;
+        nextBody[k] = -1;
+        return;
+      }
+      else if (depth == MAX_DEPTH)
+      {
+        nextBody[k] = firstBody[cell];
+        firstBody[cell] = k;
+        return;
+      }
+      else
+      {
+        // Split the leaf: move its body down a level and go on placing this one.
+        split(cell);
+        final int other = firstBody[cell];
+        firstBody[cell] = -1;
+        final int otherCell = child(cell, x[other], y[other]);
+        cellMass[otherCell] = mass[other];
+        massCenterX[otherCell] = mass[other] * x[other];
+        massCenterY[otherCell] = mass[other] * y[other];
+        firstBody[otherCell] = other;
+        nextBody[other] = -1;
+        cell = child(cell, x[k], y[k]);
+        depth++;
+      }
+    }
+  }
+
+  private int child(final int cell, final float bodyX, final float bodyY)
+  {
+    return firstChild[cell] + (bodyX >= cellX[cell] ? 1 : 0) + (bodyY >= cellY[cell] ? 2 : 0);
+  }
+
+  private void split(final int cell)
+  {
+    final float half = cellHalf[cell] / 2;
+    final int first = addCell(cellX[cell] - half, cellY[cell] - half, half);
+    addCell(cellX[cell] + half, cellY[cell] - half, half);
+    addCell(cellX[cell] - half, cellY[cell] + half, half);
+    addCell(cellX[cell] + half, cellY[cell] + half, half);
+    firstChild[cell] = first;
+  }
+
+  private int addCell(final float centerX, final float centerY, final float half)
+  {
+    if (cellCount == cellX.length)
+    {
+      final int capacity = Math.max(2 * cellCount, 64);
+      cellX = Arrays.copyOf(cellX, capacity);
+      cellY = Arrays.copyOf(cellY, capacity);
+      cellHalf = Arrays.copyOf(cellHalf, capacity);
+      cellMass = Arrays.copyOf(cellMass, capacity);
+      massCenterX = Arrays.copyOf(massCenterX, capacity);
+      massCenterY = Arrays.copyOf(massCenterY, capacity);
+      firstChild = Arrays.copyOf(firstChild, capacity);
+      firstBody = Arrays.copyOf(firstBody, capacity);
+    }
+    cellX[cellCount] = centerX;
+    cellY[cellCount] = centerY;
+    cellHalf[cellCount] = half;
+    cellMass[cellCount] = 0;
+    massCenterX[cellCount] = 0;
+    massCenterY[cellCount] = 0;
+    firstChild[cellCount] = -1;
+    firstBody[cellCount] = -1;
+    return cellCount++;
+  }
+}
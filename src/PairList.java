@@ -0,0 +1,29 @@
+import java.util.Arrays;
+
+/**
+ * Growable list of object index pairs produced by a {@link BroadPhase}. The backing
+ * arrays are kept between frames so that steady-state use does not allocate.
+ */
+public class PairList
+{
+  public int[] first = new int[64];
+  public int[] second = new int[64];
+  public int size;
+
+  public void clear()
+  {
+    size = 0;
+  }
+
+  public void add(final int a, final int b)
+  {
+    if (size == first.length)
+    {
+      first = Arrays.copyOf(first, size * 2);
+      second = Arrays.copyOf(second, size * 2);
+    }
+    first[size] = a;
+    second[size] = b;
+    size++;
+  }
+}
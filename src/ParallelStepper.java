@@ -0,0 +1,326 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the phases of {@link World#step(float)} on a fork-join pool. Pairs are resolved in
+ * batches (colors) in which no two pairs share an object, so no two threads ever write
+ * the same body. The coloring only depends on the order of the pairs, which makes the
+ * result identical for any number of threads.
+ */
+public class ParallelStepper
+{
+  // Objects (or pairs) handled by one task before it stops splitting.
+  private static final int GRAIN = 256;
+  // Colors are tracked in a long bit mask per object.
+  private static final int MAX_COLORS = 64;
+
+  private final ForkJoinPool pool;
+  // Ids of the worker threads the pool started, in the order they were started.
+  private long[] workerIds = new long[0];
+  private int workerCount;
+  // Every handler created by the threads, for summing their counters.
+  private final List<CollisionHandler> allHandlers = new ArrayList<CollisionHandler>();
+  private final ThreadLocal<CollisionHandler> handlers = new ThreadLocal<CollisionHandler>()
+  {
+    protected CollisionHandler initialValue()
+    {
+      final CollisionHandler handler = new CollisionHandler();
+      synchronized (allHandlers)
+      {
+        allHandlers.add(handler);
+      }
+      return handler;
+    }
+  };
+
+  private long[] usedColors = new long[0];
+  private int[] pairColors = new int[0];
+  // Pair indices grouped by color; the pairs of color c start at colorStart[c].
+  private int[] coloredPairs = new int[0];
+  private final int[] colorStart = new int[MAX_COLORS + 2];
+  private final int[] colorNext = new int[MAX_COLORS + 2];
+
+  public ParallelStepper(final int threads)
+  {
+    if (threads < 1)
+    {
+      throw new IllegalArgumentException();
+    }
+    pool = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory()
+    {
+      public ForkJoinWorkerThread newThread(final ForkJoinPool pool)
+      {
+        final ForkJoinWorkerThread thread =
+            ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        addWorker(thread.getId());
+        return thread;
+      }
+    }, null, false);
+  }
+
+  private synchronized void addWorker(final long id)
+  {
+    if (workerCount == workerIds.length)
+    {
+      workerIds = Arrays.copyOf(workerIds, Math.max(2 * workerCount, 8));
+    }
+    workerIds[workerCount++] = id;
+  }
+
+  /**
+   * Number of worker threads the pool has started. Workers that ended are still counted,
+   * so the ids of {@link #getWorkerId(int)} only ever get added at the end.
+   */
+  public synchronized int getWorkerCount()
+  {
+    return workerCount;
+  }
+
+  public synchronized long getWorkerId(final int index)
+  {
+    return workerIds[index];
+  }
+
+  public int getParallelism()
+  {
+    return pool.getParallelism();
+  }
+
+  // Collisions resolved by all threads since the last resetCounters().
+  public int getCollisionCount()
+  {
+    synchronized (allHandlers)
+    {
+      int count = 0;
+      for (int i = 0; i < allHandlers.size(); i++)
+      {
+        count += allHandlers.get(i).getCollisionCount();
+      }
+      return count;
+    }
+  }
+
+  public double getDepthTotal()
+  {
+    synchronized (allHandlers)
+    {
+      double total = 0;
+      for (int i = 0; i < allHandlers.size(); i++)
+      {
+        total += allHandlers.get(i).getDepthTotal();
+      }
+      return total;
+    }
+  }
+
+  public void resetCounters()
+  {
+    synchronized (allHandlers)
+    {
+      for (int i = 0; i < allHandlers.size(); i++)
+      {
+        allHandlers.get(i).resetCounters();
+      }
+    }
+  }
+
+  public void shutdown()
+  {
+    pool.shutdown();
+  }
+
+  // Runs one pass of an integrator over all bodies of the store.
+  public void integrate(final Integrator integrator, final int pass, final BodyStore store,
+                        final float duration)
+  {
+    pool.invoke(new RangeTask(0, store.size(), new RangeBody()
+    {
+      public void run(final int from, final int to)
+      {
+        integrator.integrate(pass, store, from, to, duration);
+      }
+    }));
+  }
+
+  // Applies the net forces to the velocities and refreshes the bounds of awake objects.
+  public void integrateVelocities(final PhysicsObject[] objects, final int count,
+                                  final float duration)
+  {
+    pool.invoke(new RangeTask(0, count, new RangeBody()
+    {
+      public void run(final int from, final int to)
+      {
+        for (int i = from; i < to; i++)
+        {
+          if (!objects[i].isAsleep())
+          {
+            objects[i].integrateVelocity(duration);
+            objects[i].updateBounds();
+          }
+        }
+      }
+    }));
+  }
+
+  // Moves the awake objects, each by its fraction of the step if continuous is not null.
+  public void integratePositions(final PhysicsObject[] objects, final int count,
+                                 final float duration, final ContinuousCollision continuous)
+  {
+    pool.invoke(new RangeTask(0, count, new RangeBody()
+    {
+      public void run(final int from, final int to)
+      {
+        for (int i = from; i < to; i++)
+        {
+          if (!objects[i].isAsleep())
+          {
+            objects[i].integratePosition(
+                continuous == null ? duration : duration * continuous.getFraction(i));
+          }
+        }
+      }
+    }));
+  }
+
+  /**
+   * Resolves the collisions of every object with the boundaries and refreshes the bounds
+   * of the objects. Boundaries are static, so each task only writes its own objects.
+   */
+  public void resolveBoundaries(final PhysicsObject[] objects, final int count,
+                                final HalfSpace[] boundaries, final int boundaryCount)
+  {
+    pool.invoke(new RangeTask(0, count, new RangeBody()
+    {
+      public void run(final int from, final int to)
+      {
+        final CollisionHandler handler = handlers.get();
+        for (int i = from; i < to; i++)
+        {
+          for (int j = 0; j < boundaryCount; j++)
+          {
+            handler.checkAndResolveCollision(boundaries[j], objects[i]);
+          }
+          objects[i].updateBounds();
+        }
+      }
+    }));
+  }
+
+  public void resolvePairs(final PhysicsObject[] objects, final int count, final PairList pairs)
+  {
+    color(count, pairs);
+    for (int c = 0; c <= MAX_COLORS; c++)
+    {
+      final int start = colorStart[c];
+      final int end = colorStart[c + 1];
+      if (c == MAX_COLORS)
+      {
+        // Pairs that did not fit in any color are resolved in order on this thread.
+        final CollisionHandler handler = handlers.get();
+        for (int k = start; k < end; k++)
+        {
+          final int p = coloredPairs[k];
+          handler.checkAndResolveCollision(objects[pairs.first[p]], objects[pairs.second[p]]);
+        }
+      }
+      else if (end > start)
+      {
+        pool.invoke(new RangeTask(start, end, new RangeBody()
+        {
+          public void run(final int from, final int to)
+          {
+            final CollisionHandler handler = handlers.get();
+            for (int k = from; k < to; k++)
+            {
+              final int p = coloredPairs[k];
+              handler.checkAndResolveCollision(objects[pairs.first[p]],
+                                               objects[pairs.second[p]]);
+            }
+          }
+        }));
+      }
+    }
+  }
+
+  /**
+   * Greedily gives every pair the lowest color not used by another pair of either of its
+   * objects, then groups the pairs by color.
+   */
+  private void color(final int count, final PairList pairs)
+  {
+    if (usedColors.length < count)
+    {
+      usedColors = new long[count];
+    }
+    Arrays.fill(usedColors, 0, count, 0);
+    if (pairColors.length < pairs.size)
+    {
+      pairColors = new int[pairs.first.length];
+      coloredPairs = new int[pairs.first.length];
+    }
+    Arrays.fill(colorStart, 0);
+
+    for (int p = 0; p < pairs.size; p++)
+    {
+      final int a = pairs.first[p];
+      final int b = pairs.second[p];
+      final int color = Long.numberOfTrailingZeros(~(usedColors[a] | usedColors[b]));
+      if (color < MAX_COLORS)
+      {
+        usedColors[a] |= 1L << color;
+        usedColors[b] |= 1L << color;
+      }
+      pairColors[p] = color;
+      colorStart[color + 1]++;
+    }
+    for (int c = 1; c < colorStart.length; c++)
+    {
+      colorStart[c] += colorStart[c - 1];
+    }
+    // Stable counting sort, so pairs keep their broad phase order within a color.
+    System.arraycopy(colorStart, 0, colorNext, 0, colorStart.length);
+    for (int p = 0; p < pairs.size; p++)
+    {
+      coloredPairs[colorNext[pairColors[p]]++] = p;
+    }
+  }
+
+  private interface RangeBody
+  {
+    void run(int from, int to);
+  }
+
+  /**
+   * Splits an index range in halves until it is small enough to run directly.
+   */
+  private static class RangeTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final RangeBody body;
+    private final int from;
+    private final int to;
+
+    RangeTask(final int from, final int to, final RangeBody body)
+    {
+      this.body = body;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute()
+    {
+      if (to - from <= GRAIN)
+      {
+        body.run(from, to);
+        return;
+      }
+      final int middle = (from + to) >>> 1;
+      invokeAll(new RangeTask(from, middle, body), new RangeTask(middle, to, body));
+    }
+  }
+}
@@ -6,15 +6,14 @@ import javax.swing.*;
 import javax.vecmath.*;
 
 public class PhysicsDemo {
-	// Physics updates per second (approximate).
+	// Physics updates per second of simulated time.
 	static final int UPDATE_RATE = 60;
-	// Number of full iterations of the collision detection and resolution system.
-	private static final int COLLISION_ITERATIONS = 4;
+	// Number of contact solver iterations per update.
+	private static final int VELOCITY_ITERATIONS = 8;
 	// Width of the extent in meters.
 	private static final float EXTENT_WIDTH = 20;
 
-	private final HalfSpace[] boundaries;
-	private final PhysicsObject[] objects;
+	private final World world;
 	
 	public static void main(String[] args) {
 		SwingUtilities.invokeLater(new Runnable() {
@@ -28,25 +27,45 @@ public class PhysicsDemo {
 		final int CIRCLES = 10;
 		final int TRIANGLES = 10;
 		final int SQUARES = 10;
+		final int HEXAGONS = 5;
+		final int OCTAGONS = 5;
 		
-		boundaries = new HalfSpace[] {new HalfSpace(-EXTENT_WIDTH/2, -EXTENT_WIDTH/2, 0, 1),
-		                              new HalfSpace(-EXTENT_WIDTH/2, -EXTENT_WIDTH/2, 1, 0),
-		                              new HalfSpace(EXTENT_WIDTH/2, EXTENT_WIDTH/2, 0, -1),
-		                              new HalfSpace(EXTENT_WIDTH/2, EXTENT_WIDTH/2, -1, 0)};
-		objects = new PhysicsObject[CIRCLES + TRIANGLES + SQUARES];
-		int index = 0;
+		world = new World();
+		ContactSolver contactSolver = new ContactSolver();
+		contactSolver.setVelocityIterations(VELOCITY_ITERATIONS);
+		world.setContactSolver(contactSolver);
+		world.setSleepingEnabled(true);
+		// Lets the step rate stay low without fast objects passing through the boundaries.
+		world.setContinuousCollisionEnabled(true);
+		// Per-phase step times, readable with any JMX console and in Flight Recorder
+		// recordings where the VM has one.
+		StepMetricsMonitor.register(world, "PhysicsDemo");
+		StepMetricsEvents.register(world);
+		world.setBroadPhase(new SpatialHashGrid(EXTENT_WIDTH * .15f));
+		world.addBoundary(new HalfSpace(-EXTENT_WIDTH/2, -EXTENT_WIDTH/2, 0, 1));
+		world.addBoundary(new HalfSpace(-EXTENT_WIDTH/2, -EXTENT_WIDTH/2, 1, 0));
+		world.addBoundary(new HalfSpace(EXTENT_WIDTH/2, EXTENT_WIDTH/2, 0, -1));
+		world.addBoundary(new HalfSpace(EXTENT_WIDTH/2, EXTENT_WIDTH/2, -1, 0));
 		for (int i = 0; i < CIRCLES; i++)
-			objects[index++] = new Circle(1, (float)(Math.random() - .5) * EXTENT_WIDTH, (float)(Math.random() - .5) * EXTENT_WIDTH,
+			world.addObject(new Circle(1, (float)(Math.random() - .5) * EXTENT_WIDTH, (float)(Math.random() - .5) * EXTENT_WIDTH,
 			                              0, 0,
-			                              0, 0, EXTENT_WIDTH * .03f, null, null);
+			                              0, 0, EXTENT_WIDTH * .03f, null, null));
 		for (int i = 0; i < TRIANGLES; i++)
-			objects[index++] = new Triangle(1, (float)(Math.random() - .5) * EXTENT_WIDTH, (float)(Math.random() - .5) * EXTENT_WIDTH,
+			world.addObject(new Triangle(1, (float)(Math.random() - .5) * EXTENT_WIDTH, (float)(Math.random() - .5) * EXTENT_WIDTH,
 			                                0, 0,
-			                                (float)(2 * Math.PI * Math.random()), 0, EXTENT_WIDTH * .1f, null, true);
+			                                (float)(2 * Math.PI * Math.random()), 0, EXTENT_WIDTH * .1f, null));
 		for (int i = 0; i < SQUARES; i++)
-			objects[index++] = new Square(1, (float)(Math.random() - .5) * EXTENT_WIDTH, (float)(Math.random() - .5) * EXTENT_WIDTH,
+			world.addObject(new Square(1, (float)(Math.random() - .5) * EXTENT_WIDTH, (float)(Math.random() - .5) * EXTENT_WIDTH,
 			                                0, 0,
-			                                (float)(2 * Math.PI * Math.random()), 0, EXTENT_WIDTH * .1f, null);
+			                                (float)(2 * Math.PI * Math.random()), 0, EXTENT_WIDTH * .1f, null));
+		for (int i = 0; i < HEXAGONS; i++)
+			world.addObject(new ConvexPolygon(1, (float)(Math.random() - .5) * EXTENT_WIDTH, (float)(Math.random() - .5) * EXTENT_WIDTH,
+			                                  0, 0,
+			                                  (float)(2 * Math.PI * Math.random()), 0, ConvexPolygon.regularVertices(6, EXTENT_WIDTH * .05f), null));
+		for (int i = 0; i < OCTAGONS; i++)
+			world.addObject(new ConvexPolygon(1, (float)(Math.random() - .5) * EXTENT_WIDTH, (float)(Math.random() - .5) * EXTENT_WIDTH,
+			                                  0, 0,
+			                                  (float)(2 * Math.PI * Math.random()), 0, ConvexPolygon.regularVertices(8, EXTENT_WIDTH * .05f), null));
 	}
 
 	private void createAndShowGUI() {
@@ -75,8 +94,12 @@ public class PhysicsDemo {
 		extentTransform.setCapability(TransformGroup.ALLOW_TRANSFORM_WRITE);
 		extentTransform.addChild(createExtent());
 		scene.addChild(extentTransform);
-		for (PhysicsObject o : objects)
-			scene.addChild(o.BG);
+		final SceneRenderer renderer = new SceneRenderer(scene, true);
+		// The world is stepped on the simulation thread; the scene follows its snapshots.
+		final SimulationThread simulation = new SimulationThread(new FixedStepScheduler(world, 1f / UPDATE_RATE));
+		SnapshotBehavior snapshotBehavior = new SnapshotBehavior(simulation, renderer);
+		snapshotBehavior.setSchedulingBounds(new BoundingSphere(new Point3d(), Double.MAX_VALUE));
+		trueScene.addChild(snapshotBehavior);
 		simpleU.addBranchGraph(trueScene);
 
 		JFrame appFrame = new JFrame("Physics Demo");
@@ -96,23 +119,30 @@ public class PhysicsDemo {
 					Vector2f deltaVector = new Vector2f();
 					deltaVector.scaleAdd(-1, lastMouseVector, currentMouseVector);
 					float rotationAngle = -Math.signum(lastMouseVector.x * deltaVector.y - lastMouseVector.y * deltaVector.x) * lastMouseVector.angle(currentMouseVector);
-					Transform3D rotationTransform = new Transform3D();
+					final Transform3D rotationTransform = new Transform3D();
 					rotationTransform.rotZ(rotationAngle);
 					// Rotate the extent
 					Transform3D extT3D = new Transform3D();
 					extentTransform.getTransform(extT3D);
 					extT3D.mul(rotationTransform, extT3D);
 					extentTransform.setTransform(extT3D);
-					// Rotate each boundary
-					Vector3f tmp = new Vector3f();
-					for (HalfSpace hs : boundaries) {
-						// Only normals are used at the moment, so only rotate normals.
-						tmp.x = hs.normal.x;
-						tmp.y = hs.normal.y;
-						rotationTransform.transform(tmp);
-						hs.normal.x = tmp.x;
-						hs.normal.y = tmp.y;
-					}
+					// Rotate each boundary on the simulation thread
+					simulation.invokeLater(new Runnable() {
+						public void run() {
+							Vector3f tmp = new Vector3f();
+							for (int i = 0; i < world.getBoundaryCount(); i++) {
+								HalfSpace hs = world.getBoundary(i);
+								// Only normals are used at the moment, so only rotate normals.
+								tmp.x = hs.normal.x;
+								tmp.y = hs.normal.y;
+								rotationTransform.transform(tmp);
+								hs.normal.x = tmp.x;
+								hs.normal.y = tmp.y;
+							}
+							// Objects resting against the old boundaries have to fall again.
+							world.boundariesChanged();
+						}
+					});
 				}
 				lastDragEvent = e;
 			}
@@ -120,37 +150,11 @@ public class PhysicsDemo {
 			public void mouseMoved(MouseEvent e) {
 				lastDragEvent = null;
 			}});
-		new Timer(1000 / UPDATE_RATE, new ActionListener() {
-			public void actionPerformed(ActionEvent e) {
-				canvas3D.stopRenderer();
-				tick();
-				canvas3D.startRenderer();
-			}
-		}).start();
+		simulation.start();
 		
 		appFrame.setVisible(true);
 	}
 	
-	private void tick() {
-		for (PhysicsObject o : objects) {
-			// Hard-coded gravity
-			o.forceAccumulator.y = -10 * o.mass;
-			o.updateState(1f / UPDATE_RATE);
-		}
-		for (int i = 0; i < COLLISION_ITERATIONS; i++)
-			for (PhysicsObject o : objects) {
-				for (HalfSpace hs : boundaries)
-					CollisionHandler.checkAndResolveCollision(hs, o);
-				for (PhysicsObject o2 : objects)
-					CollisionHandler.checkAndResolveCollision(o2, o);
-			}
-		for (PhysicsObject o : objects) {
-			o.updateTransformGroup();
-			// Clear the object's force accumulator.
-			o.forceAccumulator.x = o.forceAccumulator.y = 0;
-		}
-	}
-
 	private static Node createExtent() {
 		float[] coordinates = {-EXTENT_WIDTH/2, -EXTENT_WIDTH/2, 0,
 		                       EXTENT_WIDTH/2, -EXTENT_WIDTH/2, 0,
@@ -1,84 +1,295 @@
 import javax.media.j3d.*;
 import javax.vecmath.*;
 
+// Handle on the state of one body in a BodyStore. An object starts out in a store of its
+// own and moves into the store of the world it is added to.
 public class PhysicsObject {
-	public float mass;
-	public float momentOfInertia;
-	// Position of the object's local coordinate system origin (usually geometric center) in world coordinates.
-	public Vector2f position;
-	public Vector2f velocity;
-	public Vector2f forceAccumulator;
-	public float orientation;
-	public float angularVelocity;
-	// Center of mass relative the the geometric center at zero orientation in local coordinates.
-	public Vector2f centerOfMass;
-	public BranchGroup BG;
-	protected TransformGroup TG;
-	protected Transform3D T3D;
-	
+	// Shape type ids, used by CollisionHandler to pick the narrow phase routine.
+	public static final int HALF_SPACE = 0;
+	public static final int CIRCLE = 1;
+	public static final int POLYGON = 2;
+	private static int shapeTypeCount = 3;
+
+	private BodyStore store;
+	// Index of the object in its store.
+	private int id;
+	private int shapeType = -1;
+	// World-space bounding box, refreshed by updateBounds().
+	public final AABB bounds = new AABB();
+	// Scene graph nodes, built on the first call to getBranchGroup().
+	private BranchGroup BG;
+	private TransformGroup TG;
+	private Transform3D T3D;
+
 	public PhysicsObject(float mass, float positionX, float positionY, float velocityX, float velocityY, float orientation, float angularVelocity) {
 		if (mass <= 0)
 			throw new IllegalArgumentException();
-		
-		this.mass = mass;
-		position = new Vector2f(positionX, positionY);
-		velocity = new Vector2f(velocityX, velocityY);
-		forceAccumulator = new Vector2f();
-		this.orientation = orientation;
-		this.angularVelocity = angularVelocity;
-		centerOfMass = new Vector2f();
-		BG = new BranchGroup();
-		BG.setCapability(BranchGroup.ALLOW_DETACH);
-		TG = new TransformGroup();
-		TG.setCapability(TransformGroup.ALLOW_TRANSFORM_WRITE);
-		BG.addChild(TG);
-		T3D = new Transform3D();
-		updateTransformGroup();
-
-		// momentOfInertia and centerOfMass must be set in subclasses.
-		// Visible components must be added to TG in subclasses.
-	}
-	
+
+		store = new BodyStore(1);
+		id = store.add();
+		store.setMass(id, mass);
+		store.positionX[id] = positionX;
+		store.positionY[id] = positionY;
+		store.velocityX[id] = velocityX;
+		store.velocityY[id] = velocityY;
+		store.orientation[id] = orientation;
+		store.angularVelocity[id] = angularVelocity;
+
+		// The shape type, moment of inertia and center of mass must be set in subclasses.
+		// Visible components must be returned by createShape() in subclasses.
+	}
+
 	public PhysicsObject(float mass, Tuple2f position, Tuple2f velocity, float orientation, float angularVelocity) {
 		this(mass, position.x, position.y, velocity.x, velocity.y, orientation, angularVelocity);
 	}
-	
-	public void updateState(float duration) {
-		Vector2f globalCenterOfMass = getGlobalCenterOfMass();
-		// The force accumulator vector (net force) now becomes
-		// the acceleration vector.
-		forceAccumulator.scale(1 / mass);
-		globalCenterOfMass.scaleAdd(duration, velocity, globalCenterOfMass);
-		globalCenterOfMass.scaleAdd(duration * duration / 2, forceAccumulator, globalCenterOfMass);
-		velocity.scaleAdd(duration, forceAccumulator, velocity);
-		orientation += angularVelocity * duration;
-		updatePositionFromGlobalCenterOfMass(globalCenterOfMass);
+
+	// Reserves the id of a new shape type.
+	public static synchronized int newShapeType() {
+		return shapeTypeCount++;
+	}
+
+	public int getShapeType() {
+		return shapeType;
+	}
+
+	protected void setShapeType(int shapeType) {
+		this.shapeType = shapeType;
+	}
+
+	// Moves the object's state into a new entry of the given store.
+	public void attach(BodyStore newStore) {
+		int newId = newStore.add();
+		newStore.copy(store, id, newId);
+		store = newStore;
+		id = newId;
+		// Fill the rotation cache now so that later reads from several threads do not write it.
+		newStore.updateRotation(newId);
+	}
+
+	public BodyStore getStore() {
+		return store;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public float getMass() {
+		return store.mass[id];
+	}
+
+	// Zero for objects that cannot be moved.
+	public float getInverseMass() {
+		return store.inverseMass[id];
+	}
+
+	public float getMomentOfInertia() {
+		return store.momentOfInertia[id];
+	}
+
+	public float getInverseMomentOfInertia() {
+		return store.inverseMomentOfInertia[id];
+	}
+
+	protected void setMomentOfInertia(float momentOfInertia) {
+		store.setMomentOfInertia(id, momentOfInertia);
+	}
+
+	// Position of the object's local coordinate system origin (usually geometric center) in world coordinates.
+	public float getPositionX() {
+		return store.positionX[id];
+	}
+
+	public float getPositionY() {
+		return store.positionY[id];
+	}
+
+	public void setPosition(float x, float y) {
+		store.positionX[id] = x;
+		store.positionY[id] = y;
+		store.wake(id);
+		store.moved();
 		clearCaches();
 	}
-	
+
+	public float getVelocityX() {
+		return store.velocityX[id];
+	}
+
+	public float getVelocityY() {
+		return store.velocityY[id];
+	}
+
+	public void setVelocity(float x, float y) {
+		store.velocityX[id] = x;
+		store.velocityY[id] = y;
+		store.wake(id);
+	}
+
+	public float getOrientation() {
+		return store.orientation[id];
+	}
+
+	public void setOrientation(float orientation) {
+		store.orientation[id] = orientation;
+		store.wake(id);
+		store.moved();
+		clearCaches();
+	}
+
+	public float getAngularVelocity() {
+		return store.angularVelocity[id];
+	}
+
+	public void setAngularVelocity(float angularVelocity) {
+		store.angularVelocity[id] = angularVelocity;
+		store.wake(id);
+	}
+
+	// Adds to the net force acting on the center of mass until the end of the next step.
+	public void applyForce(float x, float y) {
+		store.forceX[id] += x;
+		store.forceY[id] += y;
+		store.wake(id);
+	}
+
+	// Whether the object is resting and skipped by World.step(). Changing its state wakes it.
+	public boolean isAsleep() {
+		return store.asleep[id];
+	}
+
+	// Wakes the object. Sleeping objects it touches are woken by the next step.
+	public void wake() {
+		store.wake(id);
+	}
+
+	// Center of mass relative the the geometric center at zero orientation in local coordinates.
+	public float getCenterOfMassX() {
+		return store.centerOfMassX[id];
+	}
+
+	public float getCenterOfMassY() {
+		return store.centerOfMassY[id];
+	}
+
+	protected void setCenterOfMass(float x, float y) {
+		store.setCenterOfMass(id, x, y);
+	}
+
+	// Cosine of the orientation, cached until the orientation changes.
+	public float getOrientationCos() {
+		store.updateRotation(id);
+		return store.cos[id];
+	}
+
+	// Sine of the orientation, cached until the orientation changes.
+	public float getOrientationSin() {
+		store.updateRotation(id);
+		return store.sin[id];
+	}
+
+	// Applies the net force to the velocity. The contact solver calls this and
+	// integratePosition() separately, changing the velocities in between.
+	public void integrateVelocity(float duration) {
+		store.velocityX[id] += duration * store.getAccelerationX(id);
+		store.velocityY[id] += duration * store.getAccelerationY(id);
+	}
+
+	// Moves the center of mass with the current velocity and turns the object about it.
+	public void integratePosition(float duration) {
+		final BodyStore s = store;
+		final int i = id;
+		s.updateRotation(i);
+		final float globalCenterOfMassX = s.positionX[i] + s.rotatedCenterOfMassX[i] + duration * s.velocityX[i];
+		final float globalCenterOfMassY = s.positionY[i] + s.rotatedCenterOfMassY[i] + duration * s.velocityY[i];
+		s.orientation[i] += s.angularVelocity[i] * duration;
+		s.updateRotation(i);
+		s.positionX[i] = globalCenterOfMassX - s.rotatedCenterOfMassX[i];
+		s.positionY[i] = globalCenterOfMassY - s.rotatedCenterOfMassY[i];
+		clearCaches();
+	}
+
 	public Vector2f getGlobalCenterOfMass() {
-		Transform3D t3D = new Transform3D();
-		t3D.rotZ(orientation);
-		Vector3f v3f = new Vector3f(centerOfMass.x, centerOfMass.y, 0);
-		t3D.transform(v3f);
-		return new Vector2f(v3f.x + position.x, v3f.y + position.y);
-	}
-	
-	private void updatePositionFromGlobalCenterOfMass(Tuple2f GCoM) {
-		Transform3D t3D = new Transform3D();
-		t3D.rotZ(orientation);
-		Vector3f v3f = new Vector3f(-centerOfMass.x, -centerOfMass.y, 0);
-		t3D.transform(v3f);
-		position.x = v3f.x + GCoM.x;
-		position.y = v3f.y + GCoM.y;
+		Vector2f result = new Vector2f();
+		getGlobalCenterOfMass(result);
+		return result;
+	}
+
+	// Stores the center of mass in world coordinates in result without allocating.
+	public void getGlobalCenterOfMass(Tuple2f result) {
+		store.updateRotation(id);
+		result.x = store.positionX[id] + store.rotatedCenterOfMassX[id];
+		result.y = store.positionY[id] + store.rotatedCenterOfMassY[id];
+	}
+
+	public BranchGroup getBranchGroup() {
+		if (BG == null) {
+			BG = new BranchGroup();
+			BG.setCapability(BranchGroup.ALLOW_DETACH);
+			TG = new TransformGroup();
+			TG.setCapability(TransformGroup.ALLOW_TRANSFORM_WRITE);
+			BG.addChild(TG);
+			T3D = new Transform3D();
+			Node shape = createShape();
+			if (shape != null)
+				TG.addChild(shape);
+			updateTransformGroup();
+		}
+		return BG;
+	}
+
+	// Builds the visible components in local coordinates, or returns null if there are none.
+	protected Node createShape() {
+		return null;
 	}
 
 	public void updateTransformGroup() {
+		updateTransformGroup(getPositionX(), getPositionY(), getOrientation());
+	}
+
+	// Draws the object at the given state instead of its own, such as one interpolated between steps.
+	public void updateTransformGroup(float positionX, float positionY, float orientation) {
+		// Nothing to update if the object was never attached to a scene.
+		if (TG == null)
+			return;
 		T3D.rotZ(orientation);
-		T3D.setTranslation(new Vector3f(position.x, position.y, 0));
+		T3D.setTranslation(new Vector3f(positionX, positionY, 0));
 		TG.setTransform(T3D);
 	}
-	
+
+	// Number of triangles drawn for the object by a batched SceneRenderer; 0 if it is not drawn.
+	public int getTriangleCount() {
+		return 0;
+	}
+
+	// Writes the vertices of the triangles in local coordinates as x, y pairs, and an r, g, b color
+	// per vertex, starting at the given vertex.
+	public void getTriangles(float[] vertices, float[] colors, int offset) {
+	}
+
 	public void clearCaches() {
 	}
+
+	// Radius of the largest circle around the center of mass that fits inside the object.
+	// An object moving further than this in one step can pass through others.
+	public float getInnerRadius() {
+		return Float.POSITIVE_INFINITY;
+	}
+
+	// Whether the point is inside the object. Objects without a known shape contain nothing.
+	public boolean containsPoint(float x, float y) {
+		return false;
+	}
+
+	// Tests the ray origin + t * direction for 0 <= t < hit.fraction. If the ray enters the
+	// object there, stores the object, t and the normal at that point in hit and returns true.
+	// Rays starting inside the object do not hit it.
+	public boolean raycast(float originX, float originY, float directionX, float directionY, RaycastHit hit) {
+		return false;
+	}
+
+	public void updateBounds() {
+		// Unbounded unless a subclass knows its extent.
+		bounds.set(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+	}
 }
@@ -0,0 +1,48 @@
+/**
+ * Pulls bodies towards a fixed point with an acceleration of strength / distance^2, or
+ * pushes them away for a negative strength. The softening length keeps the acceleration
+ * finite near the point.
+ */
+public class PointAttractor extends ForceField
+{
+  private final float x;
+  private final float y;
+  private final float strength;
+  private final float softening;
+
+  public PointAttractor(final float x, final float y, final float strength,
+                        final float softening)
+  {
+    if (softening < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.x = x;
+    this.y = y;
+    this.strength = strength;
+    this.softening = softening;
+  }
+
+  public void applyForces(final BodyStore store)
+  {
+    final float softening2 = softening * softening;
+    for (int i = 0; i < store.size(); i++)
+    {
+      if (!isAffected(store, i))
+      {
+        continue;
+      }
+      final float dx = x - store.positionX[i] - store.rotatedCenterOfMassX[i];
+      final float dy = y - store.positionY[i] - store.rotatedCenterOfMassY[i];
+      final float distance2 = dx * dx + dy * dy + softening2;
+      if (distance2 == 0)
+      {
+        continue;
+      }
+      final float inverse = 1 / (float) Math.sqrt(distance2);
+      final float scale = strength * store.mass[i] * inverse * inverse * inverse;
+      store.forceX[i] += scale * dx;
+      store.forceY[i] += scale * dy;
+    }
+  }
+}
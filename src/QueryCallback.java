@@ -0,0 +1,11 @@
+/**
+ * Receives the bodies found by a query of {@link World} or a
+ * {@link BoundingVolumeHierarchy}. The callback may query the world or the tree again, but
+ * must not add objects to the world, step it or build the tree while the query runs.
+ * Objects it moves are found at their new positions once the outermost query has ended.
+ */
+public interface QueryCallback
+{
+  // Returns false to end the query.
+  boolean found(PhysicsObject object);
+}
@@ -0,0 +1,33 @@
+/**
+ * Nearest hit of a ray, filled in by the raycasts of {@link World},
+ * {@link BoundingVolumeHierarchy} and {@link PhysicsObject}. The ray is
+ * origin + fraction * direction; a hit only counts if its fraction is below the one held,
+ * so one hit can collect the nearest of several raycasts and is reused between them.
+ */
+public class RaycastHit
+{
+  // Hit object, or null if the ray hit nothing.
+  public PhysicsObject object;
+  public float fraction;
+  // Unit normal of the surface that was hit, pointing out of the object.
+  public float normalX;
+  public float normalY;
+
+  // Clears the hit for a ray that may hit anything up to the given fraction.
+  public void reset(final float maxFraction)
+  {
+    object = null;
+    fraction = maxFraction;
+    normalX = 0;
+    normalY = 0;
+  }
+
+  public void set(final PhysicsObject object, final float fraction, final float normalX,
+                  final float normalY)
+  {
+    this.object = object;
+    this.fraction = fraction;
+    this.normalX = normalX;
+    this.normalY = normalY;
+  }
+}
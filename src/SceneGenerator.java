@@ -0,0 +1,267 @@
+import java.util.Random;
+
+/**
+ * Builds reproducible scenes: the same settings and seed always give the same objects in
+ * the same order. The bodies are given sizes between the smallest and the largest size, a
+ * mass from their area and the density, and are placed by one of the layouts inside a
+ * box that is wide enough for the bodies to cover the fill fraction of its square.
+ */
+public class SceneGenerator
+{
+  public enum Layout
+  {
+    // Jittered bodies stacked loosely from the floor up, falling into a pile.
+    PILE,
+    // Bodies spread out high above the floor, falling in at a given speed.
+    RAIN,
+    // Bodies in tight rows from the floor up.
+    PACKED_BOX
+  }
+
+  public enum Boundaries
+  {
+    // Floor, ceiling and both walls. The ceiling is at the top of the square of the box, or
+    // above the highest body.
+    BOX,
+    // Floor and both walls.
+    OPEN_BOX,
+    // Floor only.
+    FLOOR
+  }
+
+  private static final int MIN_POLYGON_SIDES = 5;
+  private static final int MAX_POLYGON_SIDES = 8;
+
+  private final long seed;
+  private int circles;
+  private int triangles;
+  private int squares;
+  private int polygons;
+  private float minSize = .5f;
+  private float maxSize = .5f;
+  private float density = 1;
+  private float fillFraction = .3f;
+  private float rainSpeed = 10;
+  private Layout layout = Layout.PILE;
+  private Boundaries boundaries = Boundaries.OPEN_BOX;
+
+  public SceneGenerator(final long seed)
+  {
+    this.seed = seed;
+  }
+
+  /**
+   * Sets the number of bodies of each kind. Polygons are regular with five to eight
+   * sides. The kinds are mixed evenly through the scene.
+   */
+  public void setCounts(final int circles, final int triangles, final int squares,
+                        final int polygons)
+  {
+    if (circles < 0 || triangles < 0 || squares < 0 || polygons < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.circles = circles;
+    this.triangles = triangles;
+    this.squares = squares;
+    this.polygons = polygons;
+  }
+
+  public int getBodyCount()
+  {
+    return circles + triangles + squares + polygons;
+  }
+
+  /**
+   * Sets the range of the sizes, which are drawn uniformly. The size is the diameter of
+   * circles and polygons and the width of triangles and squares.
+   */
+  public void setSizeRange(final float minSize, final float maxSize)
+  {
+    if (minSize <= 0 || maxSize < minSize)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.minSize = minSize;
+    this.maxSize = maxSize;
+  }
+
+  // Mass per unit of area.
+  public void setDensity(final float density)
+  {
+    if (density <= 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.density = density;
+  }
+
+  // Fraction of the square of the box that the bodies would cover.
+  public void setFillFraction(final float fillFraction)
+  {
+    if (fillFraction <= 0 || fillFraction > 1)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.fillFraction = fillFraction;
+  }
+
+  // Speed at which bodies of the rain layout start falling.
+  public void setRainSpeed(final float rainSpeed)
+  {
+    if (rainSpeed < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.rainSpeed = rainSpeed;
+  }
+
+  public void setLayout(final Layout layout)
+  {
+    if (layout == null)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.layout = layout;
+  }
+
+  public void setBoundaries(final Boundaries boundaries)
+  {
+    if (boundaries == null)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.boundaries = boundaries;
+  }
+
+  // Width of the box, centered on the origin with its floor at -width / 2.
+  public float getWidth()
+  {
+    final float meanSize = (minSize + maxSize) / 2;
+    return Math.max((float) Math.sqrt(getBodyCount() * meanSize * meanSize / fillFraction),
+                    2 * maxSize);
+  }
+
+  /**
+   * Creates a world with a spatial hash grid sized for the bodies and fills it. The
+   * contact solver and the other settings of the world are left to the caller.
+   */
+  public World generate()
+  {
+    final World world = new World();
+    world.setBroadPhase(new SpatialHashGrid(2 * maxSize));
+    populate(world);
+    return world;
+  }
+
+  // Adds the boundaries and the bodies to the world.
+  public void populate(final World world)
+  {
+    final Random random = new Random(seed);
+    final float width = getWidth();
+    final float half = width / 2;
+    // Rows of square cells from the floor up, or from the top of the box for rain. Every
+    // body fits into a circle of 0.75 times its size around its center of mass.
+    final float cell = layout == Layout.PACKED_BOX ? 1.05f * maxSize
+        : layout == Layout.PILE ? 2 * maxSize : 3 * maxSize;
+    final float jitter = layout == Layout.PACKED_BOX ? 0 : (cell - 1.5f * maxSize) / 2;
+    final int columns = Math.max((int) (width / cell), 1);
+    final float rowStart = layout == Layout.RAIN ? half : -half;
+    final int count = getBodyCount();
+    final int rows = (count + columns - 1) / columns;
+
+    world.addBoundary(new HalfSpace(0, -half, 0, 1));
+    if (boundaries != Boundaries.FLOOR)
+    {
+      world.addBoundary(new HalfSpace(-half, 0, 1, 0));
+      world.addBoundary(new HalfSpace(half, 0, -1, 0));
+    }
+    if (boundaries == Boundaries.BOX)
+    {
+      world.addBoundary(new HalfSpace(0, Math.max(half, rowStart + rows * cell), 0, -1));
+    }
+
+    // Kind of each body, mixed evenly by taking from each kind in proportion.
+    int circlesLeft = circles;
+    int trianglesLeft = triangles;
+    int squaresLeft = squares;
+    for (int i = 0; i < count; i++)
+    {
+      final int left = count - i;
+      final int pick = random.nextInt(left);
+      final int kind;
+      if (pick < circlesLeft)
+      {
+        kind = 0;
+        circlesLeft--;
+      }
+      else if (pick < circlesLeft + trianglesLeft)
+      {
+        kind = 1;
+        trianglesLeft--;
+      }
+      else if (pick < circlesLeft + trianglesLeft + squaresLeft)
+      {
+        kind = 2;
+        squaresLeft--;
+      }
+      else
+      {
+        kind = 3;
+      }
+
+      final int row = i / columns;
+      final int column = i % columns;
+      final float x = -half + (column + .5f) * (width / columns) +
+          (2 * random.nextFloat() - 1) * jitter;
+      final float y = rowStart + (row + .5f) * cell + (2 * random.nextFloat() - 1) * jitter;
+      final float velocityY = layout == Layout.RAIN ? -rainSpeed : 0;
+      final float size = minSize + (maxSize - minSize) * random.nextFloat();
+      // Packed bodies keep their sides aligned with the rows.
+      final float orientation =
+          layout == Layout.PACKED_BOX ? 0 : (float) (2 * Math.PI * random.nextFloat());
+      world.addObject(createBody(kind, size, x, y, velocityY, orientation, random));
+    }
+  }
+
+  // Creates a body with its center of mass, or its center for circles, at x, y.
+  private PhysicsObject createBody(final int kind, final float size, final float x,
+                                   final float y, final float velocityY,
+                                   final float orientation, final Random random)
+  {
+    // Triangles and squares have their position at a corner.
+    final float cos = (float) Math.cos(orientation);
+    final float sin = (float) Math.sin(orientation);
+    switch (kind)
+    {
+      case 0:
+      {
+        final float radius = size / 2;
+        return new Circle(density * (float) Math.PI * radius * radius, x, y, 0, velocityY, 0,
+                          0, radius, null, null);
+      }
+      case 1:
+      {
+        final float centroid = size / 3;
+        return new Triangle(density * size * size / 2, x - (cos - sin) * centroid,
+                            y - (sin + cos) * centroid, 0, velocityY, orientation, 0, size,
+                            null);
+      }
+      case 2:
+      {
+        final float center = size / 2;
+        return new Square(density * size * size, x - (cos - sin) * center,
+                          y - (sin + cos) * center, 0, velocityY, orientation, 0, size, null);
+      }
+      default:
+      {
+        final int sides =
+            MIN_POLYGON_SIDES + random.nextInt(MAX_POLYGON_SIDES - MIN_POLYGON_SIDES + 1);
+        final float radius = size / 2;
+        final float area = sides * radius * radius * (float) Math.sin(2 * Math.PI / sides) / 2;
+        return new ConvexPolygon(density * area, x, y, 0, velocityY, orientation, 0,
+                                 ConvexPolygon.regularVertices(sides, radius), null);
+      }
+    }
+  }
+}
@@ -0,0 +1,157 @@
+import java.util.Arrays;
+
+import javax.media.j3d.Group;
+
+/**
+ * Mirrors the objects of a {@link World} in a Java3D scene. The scene graph of an object is
+ * only built when it is attached here, so headless worlds never create one.
+ *
+ * A batched renderer instead draws all objects of a shape type as one shape and moves them
+ * in one update of its geometry per frame, so the scene graph does not grow with the
+ * number of objects. Objects without triangles are not drawn in a batched scene.
+ */
+public class SceneRenderer implements StepListener
+{
+  private final Group scene;
+  private final boolean batched;
+  private int attachedCount;
+  // Batch of each shape type, and the batch and slot of each attached object.
+  private ShapeBatch[] batches = new ShapeBatch[0];
+  private ShapeBatch[] objectBatches = new ShapeBatch[0];
+  private int[] objectSlots = new int[0];
+
+  public SceneRenderer(final Group scene)
+  {
+    this(scene, false);
+  }
+
+  public SceneRenderer(final Group scene, final boolean batched)
+  {
+    this.scene = scene;
+    this.batched = batched;
+  }
+
+  public boolean isBatched()
+  {
+    return batched;
+  }
+
+  public void stepped(final World world)
+  {
+    attachNewObjects(world);
+    for (int i = 0; i < world.getObjectCount(); i++)
+    {
+      final PhysicsObject object = world.getObject(i);
+      draw(i, object, object.getPositionX(), object.getPositionY(), object.getOrientation());
+    }
+    updateBatches();
+  }
+
+  /**
+   * Draws the objects of the scheduler's world between their last two states, at the
+   * fraction of a step the scheduler has accumulated. Use this instead of registering the
+   * renderer as a step listener when the world is stepped by a {@link FixedStepScheduler}.
+   */
+  public void render(final FixedStepScheduler scheduler)
+  {
+    final World world = scheduler.getWorld();
+    attachNewObjects(world);
+    for (int i = 0; i < world.getObjectCount(); i++)
+    {
+      final PhysicsObject object = world.getObject(i);
+      draw(i, object, scheduler.getInterpolatedPositionX(object),
+           scheduler.getInterpolatedPositionY(object),
+           scheduler.getInterpolatedOrientation(object));
+    }
+    updateBatches();
+  }
+
+  /**
+   * Draws the objects of a snapshot published by a {@link SimulationThread} at the given
+   * fraction of a step between their previous and current state. Objects added to the
+   * world since the last call are attached to the scene first.
+   */
+  public void render(final TransformSnapshot snapshot, final float alpha)
+  {
+    for (; attachedCount < snapshot.getCount(); attachedCount++)
+    {
+      attach(snapshot.getObject(attachedCount));
+    }
+    for (int i = 0; i < snapshot.getCount(); i++)
+    {
+      draw(i, snapshot.getObject(i), snapshot.getPositionX(i, alpha),
+           snapshot.getPositionY(i, alpha), snapshot.getOrientation(i, alpha));
+    }
+    updateBatches();
+  }
+
+  /**
+   * Adds the objects added to the world since the last call to the scene.
+   */
+  public void attachNewObjects(final World world)
+  {
+    for (; attachedCount < world.getObjectCount(); attachedCount++)
+    {
+      attach(world.getObject(attachedCount));
+    }
+  }
+
+  private void attach(final PhysicsObject object)
+  {
+    if (!batched)
+    {
+      scene.addChild(object.getBranchGroup());
+      return;
+    }
+    if (attachedCount == objectSlots.length)
+    {
+      objectBatches = Arrays.copyOf(objectBatches, Math.max(2 * attachedCount, 16));
+      objectSlots = Arrays.copyOf(objectSlots, objectBatches.length);
+    }
+    if (object.getTriangleCount() == 0)
+    {
+      return;
+    }
+    final int type = object.getShapeType();
+    if (type >= batches.length)
+    {
+      batches = Arrays.copyOf(batches, type + 1);
+    }
+    if (batches[type] == null)
+    {
+      batches[type] = new ShapeBatch();
+      scene.addChild(batches[type].getBranchGroup());
+    }
+    objectBatches[attachedCount] = batches[type];
+    objectSlots[attachedCount] = batches[type].add(object);
+  }
+
+  // Moves the attached object with the given index to a position and orientation.
+  private void draw(final int index, final PhysicsObject object, final float positionX,
+                    final float positionY, final float orientation)
+  {
+    if (batched)
+    {
+      if (objectBatches[index] != null)
+      {
+        objectBatches[index].setTransform(objectSlots[index], positionX, positionY,
+                                          orientation);
+      }
+    }
+    else
+    {
+      object.updateTransformGroup(positionX, positionY, orientation);
+    }
+  }
+
+  private void updateBatches()
+  {
+    for (final ShapeBatch batch : batches)
+    {
+      if (batch != null)
+      {
+        batch.update();
+      }
+    }
+  }
+}
@@ -0,0 +1,37 @@
+/**
+ * Applies the forces to the velocities, then moves the bodies with the new velocities.
+ * Unlike explicit Euler it keeps the energy of oscillating systems bounded, and it needs
+ * only one evaluation of the forces per step.
+ */
+public class SemiImplicitEuler implements Integrator
+{
+  public int getPassCount()
+  {
+    return 1;
+  }
+
+  public void prepare(final BodyStore store)
+  {
+  }
+
+  public void integrate(final int pass, final BodyStore store, final int from, final int to,
+                        final float duration)
+  {
+    for (int i = from; i < to; i++)
+    {
+      if (store.inverseMass[i] == 0 || store.asleep[i])
+      {
+        continue;
+      }
+      store.velocityX[i] += duration * store.getAccelerationX(i);
+      store.velocityY[i] += duration * store.getAccelerationY(i);
+      store.updateRotation(i);
+      final float centerOfMassX =
+          store.positionX[i] + store.rotatedCenterOfMassX[i] + duration * store.velocityX[i];
+      final float centerOfMassY =
+          store.positionY[i] + store.rotatedCenterOfMassY[i] + duration * store.velocityY[i];
+      store.orientation[i] += store.angularVelocity[i] * duration;
+      store.setGlobalCenterOfMass(i, centerOfMassX, centerOfMassY);
+    }
+  }
+}
@@ -0,0 +1,131 @@
+import java.util.Arrays;
+
+import javax.media.j3d.Appearance;
+import javax.media.j3d.BoundingSphere;
+import javax.media.j3d.BranchGroup;
+import javax.media.j3d.Geometry;
+import javax.media.j3d.GeometryArray;
+import javax.media.j3d.GeometryUpdater;
+import javax.media.j3d.PolygonAttributes;
+import javax.media.j3d.Shape3D;
+import javax.media.j3d.TriangleArray;
+import javax.vecmath.Point3d;
+
+/**
+ * Draws the triangles of many objects as one shape. The geometry holds its coordinates and
+ * colors by reference, so moving the objects only rewrites one coordinate array in a
+ * single update, instead of setting a transform group per object.
+ */
+class ShapeBatch implements GeometryUpdater
+{
+  private static final int INITIAL_VERTICES = 3 * 64;
+
+  private final BranchGroup root = new BranchGroup();
+  private final Shape3D shape = new Shape3D();
+  private TriangleArray geometry;
+  // Triangles of each object in local coordinates, as x, y pairs.
+  private float[] template = new float[2 * INITIAL_VERTICES];
+  private float[] coordinates = new float[3 * INITIAL_VERTICES];
+  private float[] colors = new float[3 * INITIAL_VERTICES];
+  // First vertex of each object, followed by the end of the last object.
+  private int[] firstVertex = new int[17];
+  // Position, cosine and sine of the orientation of each object.
+  private float[] transforms = new float[4 * 16];
+  private int count;
+  private int drawnVertices;
+
+  ShapeBatch()
+  {
+    final Appearance appearance = new Appearance();
+    appearance.setPolygonAttributes(
+        new PolygonAttributes(PolygonAttributes.POLYGON_FILL, PolygonAttributes.CULL_NONE, 0));
+    shape.setAppearance(appearance);
+    shape.setCapability(Shape3D.ALLOW_GEOMETRY_WRITE);
+    // The objects move every frame, so the bounds are not worth computing.
+    shape.setBoundsAutoCompute(false);
+    shape.setBounds(new BoundingSphere(new Point3d(), Double.POSITIVE_INFINITY));
+    setGeometry(INITIAL_VERTICES);
+    root.addChild(shape);
+  }
+
+  BranchGroup getBranchGroup()
+  {
+    return root;
+  }
+
+  // Adds the triangles of an object and returns its slot.
+  int add(final PhysicsObject object)
+  {
+    final int start = firstVertex[count];
+    final int end = start + 3 * object.getTriangleCount();
+    if (count + 2 > firstVertex.length)
+    {
+      firstVertex = Arrays.copyOf(firstVertex, 2 * firstVertex.length);
+      transforms = Arrays.copyOf(transforms, 4 * (firstVertex.length - 1));
+    }
+    if (end > template.length / 2)
+    {
+      final int capacity = Math.max(end, template.length);
+      template = Arrays.copyOf(template, 2 * capacity);
+      coordinates = Arrays.copyOf(coordinates, 3 * capacity);
+      colors = Arrays.copyOf(colors, 3 * capacity);
+      setGeometry(capacity);
+    }
+    object.getTriangles(template, colors, start);
+    firstVertex[++count] = end;
+    setTransform(count - 1, object.getPositionX(), object.getPositionY(),
+                 object.getOrientation());
+    return count - 1;
+  }
+
+  void setTransform(final int slot, final float positionX, final float positionY,
+                    final float orientation)
+  {
+    transforms[4 * slot] = positionX;
+    transforms[4 * slot + 1] = positionY;
+    transforms[4 * slot + 2] = (float) Math.cos(orientation);
+    transforms[4 * slot + 3] = (float) Math.sin(orientation);
+  }
+
+  // Moves the triangles of all objects to their last transforms.
+  void update()
+  {
+    geometry.updateData(this);
+    if (drawnVertices != firstVertex[count])
+    {
+      drawnVertices = firstVertex[count];
+      geometry.setValidVertexCount(drawnVertices);
+    }
+  }
+
+  public void updateData(final Geometry geometry)
+  {
+    for (int i = 0; i < count; i++)
+    {
+      final float positionX = transforms[4 * i];
+      final float positionY = transforms[4 * i + 1];
+      final float cos = transforms[4 * i + 2];
+      final float sin = transforms[4 * i + 3];
+      for (int v = firstVertex[i]; v < firstVertex[i + 1]; v++)
+      {
+        final float x = template[2 * v];
+        final float y = template[2 * v + 1];
+        coordinates[3 * v] = cos * x - sin * y + positionX;
+        coordinates[3 * v + 1] = sin * x + cos * y + positionY;
+      }
+    }
+  }
+
+  // Replaces the geometry with one that has room for the given number of vertices.
+  private void setGeometry(final int vertices)
+  {
+    geometry = new TriangleArray(vertices, GeometryArray.COORDINATES | GeometryArray.COLOR_3 |
+        GeometryArray.BY_REFERENCE);
+    geometry.setCapability(GeometryArray.ALLOW_REF_DATA_WRITE);
+    geometry.setCapability(GeometryArray.ALLOW_COUNT_WRITE);
+    geometry.setCoordRefFloat(coordinates);
+    geometry.setColorRefFloat(colors);
+    geometry.setValidVertexCount(drawnVertices);
+    shape.setGeometry(geometry);
+  }
+}
@@ -0,0 +1,122 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Steps a world on a thread of its own with a {@link FixedStepScheduler} and publishes a
+ * {@link TransformSnapshot} after every call to the scheduler. Snapshots go through a
+ * triple buffer: the simulation thread fills one buffer, the last published one waits in
+ * the middle, and the reader holds the third, so neither side ever waits for the other.
+ *
+ * The world must only be touched on the simulation thread once it is started. Other
+ * threads hand changes to it with {@link #invokeLater(Runnable)}.
+ */
+public class SimulationThread
+{
+  // Set in the middle index when it holds a snapshot the reader has not taken yet.
+  private static final int FRESH = 4;
+  private static final int INDEX = 3;
+
+  private final FixedStepScheduler scheduler;
+  private final Queue<Runnable> commands = new ConcurrentLinkedQueue<Runnable>();
+  private final TransformSnapshot[] buffers =
+      {new TransformSnapshot(), new TransformSnapshot(), new TransformSnapshot()};
+  // Buffer being filled, owned by the simulation thread.
+  private int back = 0;
+  // Last published buffer, possibly marked FRESH.
+  private final AtomicInteger middle = new AtomicInteger(1);
+  // Buffer held by the reader.
+  private int front = 2;
+  private final Thread thread;
+  private volatile boolean running;
+
+  public SimulationThread(final FixedStepScheduler scheduler)
+  {
+    if (scheduler == null)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.scheduler = scheduler;
+    // Readers see the initial state until the first step.
+    buffers[front].fill(scheduler, System.nanoTime());
+    thread = new Thread(new Runnable()
+    {
+      public void run()
+      {
+        loop();
+      }
+    }, "Simulation");
+    thread.setDaemon(true);
+  }
+
+  public void start()
+  {
+    running = true;
+    thread.start();
+  }
+
+  // Stops the thread after the current step and waits for it to end.
+  public void shutdown() throws InterruptedException
+  {
+    running = false;
+    LockSupport.unpark(thread);
+    thread.join();
+  }
+
+  /**
+   * Runs the command on the simulation thread before its next step. Commands run in the
+   * order they were given.
+   */
+  public void invokeLater(final Runnable command)
+  {
+    if (command == null)
+    {
+      throw new IllegalArgumentException();
+    }
+    commands.add(command);
+  }
+
+  /**
+   * Returns the most recently published snapshot. The snapshot is not changed until the
+   * next call, which must be made by the same reader thread.
+   */
+  public TransformSnapshot acquireSnapshot()
+  {
+    if ((middle.get() & FRESH) != 0)
+    {
+      front = middle.getAndSet(front) & INDEX;
+    }
+    return buffers[front];
+  }
+
+  private void loop()
+  {
+    final long stepNanos = (long) (scheduler.getTimeStep() * 1e9);
+    long lastTime = System.nanoTime();
+    while (running)
+    {
+      Runnable command;
+      while ((command = commands.poll()) != null)
+      {
+        command.run();
+      }
+      final long time = System.nanoTime();
+      scheduler.advance((time - lastTime) / 1e9);
+      lastTime = time;
+      publish();
+      // Wait until the next step is due.
+      final long remaining = (long) ((1 - scheduler.getAlpha()) * stepNanos);
+      if (remaining > 0)
+      {
+        LockSupport.parkNanos(remaining);
+      }
+    }
+  }
+
+  private void publish()
+  {
+    buffers[back].fill(scheduler, System.nanoTime());
+    back = middle.getAndSet(back | FRESH) & INDEX;
+  }
+}
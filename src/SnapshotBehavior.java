@@ -0,0 +1,37 @@
+import java.util.Enumeration;
+import javax.media.j3d.Behavior;
+import javax.media.j3d.WakeupOnElapsedFrames;
+
+/**
+ * Updates a scene from the latest snapshot of a {@link SimulationThread} once per frame,
+ * on Java3D's behavior thread. The transform changes of one call are shown together in
+ * the next frame, so the renderer never has to be stopped while they are made.
+ */
+public class SnapshotBehavior extends Behavior
+{
+  private final SimulationThread simulation;
+  private final SceneRenderer renderer;
+  private final WakeupOnElapsedFrames everyFrame = new WakeupOnElapsedFrames(0);
+
+  public SnapshotBehavior(final SimulationThread simulation, final SceneRenderer renderer)
+  {
+    if (simulation == null || renderer == null)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.simulation = simulation;
+    this.renderer = renderer;
+  }
+
+  public void initialize()
+  {
+    wakeupOn(everyFrame);
+  }
+
+  public void processStimulus(final Enumeration criteria)
+  {
+    final TransformSnapshot snapshot = simulation.acquireSnapshot();
+    renderer.render(snapshot, snapshot.getAlpha(System.nanoTime()));
+    wakeupOn(everyFrame);
+  }
+}
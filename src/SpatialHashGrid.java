@@ -0,0 +1,195 @@
+import java.util.Arrays;
+
+/**
+ * Broad phase that hashes object bounds into a uniform grid of square cells. Only objects
+ * sharing a cell are tested against each other, so the cost grows with the number of
+ * objects rather than the number of pairs as long as the cell size is comparable to the
+ * object size.
+ */
+public class SpatialHashGrid implements BroadPhase
+{
+  // Objects covering more cells than this are tested against everything instead.
+  private static final int MAX_CELLS_PER_OBJECT = 64;
+
+  private final float cellSize;
+  private final float inverseCellSize;
+
+  // Hash table of cell buckets. A bucket is only valid if its stamp matches the frame.
+  private int[] bucketHead = new int[0];
+  private int[] bucketStamp = new int[0];
+  private int stamp;
+
+  // Bucket entries: object index, cell coordinates and the next entry in the bucket.
+  private int[] entryObject = new int[256];
+  private int[] entryCellX = new int[256];
+  private int[] entryCellY = new int[256];
+  private int[] entryNext = new int[256];
+  private int entryCount;
+
+  // Objects too large (or unbounded) to be put in the grid.
+  private int[] oversized = new int[16];
+  private int oversizedCount;
+
+  public SpatialHashGrid(final float cellSize)
+  {
+    if (cellSize <= 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.cellSize = cellSize;
+    inverseCellSize = 1 / cellSize;
+  }
+
+  public float getCellSize()
+  {
+    return cellSize;
+  }
+
+  public void findPairs(final PhysicsObject[] objects, final int count, final PairList pairs)
+  {
+    pairs.clear();
+    prepare(count);
+
+    for (int i = 0; i < count; i++)
+    {
+      final AABB bounds = objects[i].bounds;
+      final boolean asleep = objects[i].isAsleep();
+      // Test against all oversized objects seen so far.
+      for (int k = 0; k < oversizedCount; k++)
+      {
+        final int j = oversized[k];
+        if (objects[j].bounds.overlaps(bounds) && !(asleep && objects[j].isAsleep()))
+        {
+          pairs.add(j, i);
+        }
+      }
+
+      final int minCellX = cell(bounds.minX);
+      final int minCellY = cell(bounds.minY);
+      final int maxCellX = cell(bounds.maxX);
+      final int maxCellY = cell(bounds.maxY);
+      // Widened before subtracting, since bounds far apart span more cells than an int holds.
+      final long width = (long) maxCellX - minCellX + 1;
+      final long height = (long) maxCellY - minCellY + 1;
+      if (!bounds.isBounded() || width > MAX_CELLS_PER_OBJECT || height > MAX_CELLS_PER_OBJECT ||
+          width * height > MAX_CELLS_PER_OBJECT)
+      {
+        // Test against every object seen so far, including the ones in the grid.
+        for (int j = 0; j < i; j++)
+        {
+          if (!isOversized(j) && objects[j].bounds.overlaps(bounds) &&
+              !(asleep && objects[j].isAsleep()))
+          {
+            pairs.add(j, i);
+          }
+        }
+        addOversized(i);
+        continue;
+      }
+
+      for (int cellX = minCellX; cellX <= maxCellX; cellX++)
+      {
+        for (int cellY = minCellY; cellY <= maxCellY; cellY++)
+        {
+          final int bucket = bucket(cellX, cellY);
+          if (bucketStamp[bucket] != stamp)
+          {
+            bucketStamp[bucket] = stamp;
+            bucketHead[bucket] = -1;
+          }
+          for (int e = bucketHead[bucket]; e >= 0; e = entryNext[e])
+          {
+            if (entryCellX[e] != cellX || entryCellY[e] != cellY)
+            {
+              // Different cell that hashed to the same bucket.
+              continue;
+            }
+            final PhysicsObject otherObject = objects[entryObject[e]];
+            if (asleep && otherObject.isAsleep())
+            {
+              continue;
+            }
+            final AABB other = otherObject.bounds;
+            // Only report the pair in the cell holding the minimum corner of the overlap
+            // so that objects sharing several cells are reported once.
+            if (other.overlaps(bounds) && cell(Math.max(other.minX, bounds.minX)) == cellX &&
+                cell(Math.max(other.minY, bounds.minY)) == cellY)
+            {
+              pairs.add(entryObject[e], i);
+            }
+          }
+          addEntry(bucket, i, cellX, cellY);
+        }
+      }
+    }
+  }
+
+  private void prepare(final int count)
+  {
+    // Keep the load factor of the bucket table below one half.
+    int size = 64;
+    while (size < 2 * count)
+    {
+      size *= 2;
+    }
+    if (bucketHead.length < size)
+    {
+      bucketHead = new int[size];
+      bucketStamp = new int[size];
+      stamp = 0;
+    }
+    stamp++;
+    entryCount = 0;
+    oversizedCount = 0;
+  }
+
+  private int cell(final float coordinate)
+  {
+    return (int) Math.floor(coordinate * inverseCellSize);
+  }
+
+  private int bucket(final int cellX, final int cellY)
+  {
+    final int hash = cellX * 73856093 ^ cellY * 19349663;
+    return (hash ^ hash >>> 16) & bucketHead.length - 1;
+  }
+
+  private void addEntry(final int bucket, final int object, final int cellX, final int cellY)
+  {
+    if (entryCount == entryObject.length)
+    {
+      final int capacity = entryCount * 2;
+      entryObject = Arrays.copyOf(entryObject, capacity);
+      entryCellX = Arrays.copyOf(entryCellX, capacity);
+      entryCellY = Arrays.copyOf(entryCellY, capacity);
+      entryNext = Arrays.copyOf(entryNext, capacity);
+    }
+    entryObject[entryCount] = object;
+    entryCellX[entryCount] = cellX;
+    entryCellY[entryCount] = cellY;
+    entryNext[entryCount] = bucketHead[bucket];
+    bucketHead[bucket] = entryCount;
+    entryCount++;
+  }
+
+  private void addOversized(final int object)
+  {
+    if (oversizedCount == oversized.length)
+    {
+      oversized = Arrays.copyOf(oversized, oversizedCount * 2);
+    }
+    oversized[oversizedCount++] = object;
+  }
+
+  private boolean isOversized(final int object)
+  {
+    for (int k = 0; k < oversizedCount; k++)
+    {
+      if (oversized[k] == object)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * Damped spring between the centers of mass of two objects of the same world. It pulls
+ * them together when longer than its rest length and pushes them apart when shorter,
+ * and the damping resists the relative velocity along the spring. Its ends fall asleep
+ * together, and an end that was woken on its own wakes the other.
+ */
+public class Spring implements ForceGenerator
+{
+  private final PhysicsObject a;
+  private final PhysicsObject b;
+  private final float restLength;
+  private final float stiffness;
+  private final float damping;
+
+  public Spring(final PhysicsObject a, final PhysicsObject b, final float restLength,
+                final float stiffness, final float damping)
+  {
+    if (a == b || restLength < 0 || stiffness < 0 || damping < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.a = a;
+    this.b = b;
+    this.restLength = restLength;
+    this.stiffness = stiffness;
+    this.damping = damping;
+  }
+
+  public PhysicsObject getObjectA()
+  {
+    return a;
+  }
+
+  public PhysicsObject getObjectB()
+  {
+    return b;
+  }
+
+  public void applyForces(final BodyStore store)
+  {
+    final int i = a.getId();
+    final int j = b.getId();
+    if (store.asleep[i] != store.asleep[j])
+    {
+      store.wake(i);
+      store.wake(j);
+    }
+    store.updateRotation(i);
+    store.updateRotation(j);
+    final float dx = store.positionX[j] + store.rotatedCenterOfMassX[j] - store.positionX[i] -
+        store.rotatedCenterOfMassX[i];
+    final float dy = store.positionY[j] + store.rotatedCenterOfMassY[j] - store.positionY[i] -
+        store.rotatedCenterOfMassY[i];
+    final float length = (float) Math.sqrt(dx * dx + dy * dy);
+    if (length == 0)
+    {
+      return;
+    }
+    final float directionX = dx / length;
+    final float directionY = dy / length;
+    final float stretchSpeed = (store.velocityX[j] - store.velocityX[i]) * directionX +
+        (store.velocityY[j] - store.velocityY[i]) * directionY;
+    final float force = stiffness * (length - restLength) + damping * stretchSpeed;
+    store.forceX[i] += force * directionX;
+    store.forceY[i] += force * directionY;
+    store.forceX[j] -= force * directionX;
+    store.forceY[j] -= force * directionY;
+  }
+}
@@ -0,0 +1,7 @@
+/**
+ * Observer notified after every {@link World#step(float)}.
+ */
+public interface StepListener
+{
+  void stepped(World world);
+}
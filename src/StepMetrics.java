@@ -0,0 +1,200 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Measurements of one {@link World#step(float)}, handed to the
+ * {@link StepMetricsListener}s of the world. The world only takes them while a metrics
+ * listener is registered. The instance is reused for every step, so listeners must copy
+ * what they want to keep.
+ *
+ * In the modes without a contact solver, detection and resolution run together for every
+ * pair; their time is reported as narrow phase time and the solver time is zero.
+ */
+public class StepMetrics
+{
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  // Null if the VM cannot count the bytes allocated by a thread.
+  private static final com.sun.management.ThreadMXBean ALLOCATIONS =
+      THREADS instanceof com.sun.management.ThreadMXBean &&
+          ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported()
+          ? (com.sun.management.ThreadMXBean) THREADS : null;
+
+  long frame;
+  long integrationNanos;
+  long broadPhaseNanos;
+  long narrowPhaseNanos;
+  long solverNanos;
+  long listenerNanos;
+  long totalNanos;
+  int pairsTested;
+  int pairsHit;
+  double depthTotal;
+  int depthCount;
+  int bodiesIntegrated;
+  long allocatedBytes;
+
+  private long stepStart;
+  private long lapStart;
+  // Threads whose allocations are counted: the stepping thread followed by the workers of
+  // the parallel stepper, and the bytes each had allocated when the step began.
+  private ParallelStepper workers;
+  private long[] threadIds = new long[1];
+  private long[] startBytes = new long[1];
+  private int startThreadCount;
+
+  /**
+   * Clears the measurements and starts the clocks. The allocations of the worker threads
+   * of {@code workers} are counted as well, unless it is null.
+   */
+  void begin(final long frame, final ParallelStepper workers)
+  {
+    this.frame = frame;
+    integrationNanos = 0;
+    broadPhaseNanos = 0;
+    narrowPhaseNanos = 0;
+    solverNanos = 0;
+    listenerNanos = 0;
+    pairsTested = 0;
+    pairsHit = 0;
+    depthTotal = 0;
+    depthCount = 0;
+    bodiesIntegrated = 0;
+    this.workers = workers;
+    if (ALLOCATIONS != null)
+    {
+      startThreadCount = collectThreads();
+      if (startBytes.length < startThreadCount)
+      {
+        startBytes = new long[threadIds.length];
+      }
+      for (int i = 0; i < startThreadCount; i++)
+      {
+        startBytes[i] = ALLOCATIONS.getThreadAllocatedBytes(threadIds[i]);
+      }
+    }
+    stepStart = System.nanoTime();
+    lapStart = stepStart;
+  }
+
+  // Returns the nanoseconds since the last call, or since begin().
+  long lap()
+  {
+    final long now = System.nanoTime();
+    final long lap = now - lapStart;
+    lapStart = now;
+    return lap;
+  }
+
+  void end()
+  {
+    totalNanos = System.nanoTime() - stepStart;
+    allocatedBytes = ALLOCATIONS == null ? -1 : allocatedSinceBegin();
+    workers = null;
+  }
+
+  private long allocatedSinceBegin()
+  {
+    final int count = collectThreads();
+    long total = 0;
+    for (int i = 0; i < count; i++)
+    {
+      // Threads that ended report -1; workers started during the step began at 0, as did
+      // the ones that had not run yet when it began.
+      final long bytes = ALLOCATIONS.getThreadAllocatedBytes(threadIds[i]);
+      if (bytes >= 0)
+      {
+        total += bytes - (i < startThreadCount ? Math.max(startBytes[i], 0) : 0);
+      }
+    }
+    return total;
+  }
+
+  // Fills threadIds with the counted threads and returns how many there are.
+  private int collectThreads()
+  {
+    final int workerCount = workers == null ? 0 : workers.getWorkerCount();
+    if (threadIds.length < workerCount + 1)
+    {
+      threadIds = Arrays.copyOf(threadIds, 2 * (workerCount + 1));
+    }
+    threadIds[0] = Thread.currentThread().getId();
+    for (int i = 0; i < workerCount; i++)
+    {
+      threadIds[i + 1] = workers.getWorkerId(i);
+    }
+    return workerCount + 1;
+  }
+
+  // Number of the step, counting from 0.
+  public long getFrame()
+  {
+    return frame;
+  }
+
+  // Time spent applying forces and moving bodies.
+  public long getIntegrationNanos()
+  {
+    return integrationNanos;
+  }
+
+  public long getBroadPhaseNanos()
+  {
+    return broadPhaseNanos;
+  }
+
+  public long getNarrowPhaseNanos()
+  {
+    return narrowPhaseNanos;
+  }
+
+  // Time spent in the velocity iterations of the contact solver.
+  public long getSolverNanos()
+  {
+    return solverNanos;
+  }
+
+  // Time spent in the step listeners, such as updating the transform groups of a scene.
+  public long getListenerNanos()
+  {
+    return listenerNanos;
+  }
+
+  public long getTotalNanos()
+  {
+    return totalNanos;
+  }
+
+  // Pairs that reached the narrow phase, including object/boundary pairs.
+  public int getPairsTested()
+  {
+    return pairsTested;
+  }
+
+  // Tested pairs that were touching.
+  public int getPairsHit()
+  {
+    return pairsHit;
+  }
+
+  // Mean penetration depth of the contacts found, or 0 if there were none.
+  public float getAveragePenetrationDepth()
+  {
+    return depthCount == 0 ? 0 : (float) (depthTotal / depthCount);
+  }
+
+  public int getBodiesIntegrated()
+  {
+    return bodiesIntegrated;
+  }
+
+  /**
+   * Bytes allocated during the step by the stepping thread and the worker threads of the
+   * parallel stepper, or -1 if the VM cannot tell. The bytes of a worker that ends during
+   * the step are lost.
+   */
+  public long getAllocatedBytes()
+  {
+    return allocatedBytes;
+  }
+}
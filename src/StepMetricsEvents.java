@@ -0,0 +1,166 @@
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the {@link StepMetrics} of every step as a "PhysicsDemo.Step" event in Java
+ * Flight Recorder, in the "Physics" category. The engine targets Java 7, which has no
+ * jdk.jfr, so the event type is defined at run time through jdk.jfr.EventFactory, found
+ * by reflection; {@link #register(World)} returns null on VMs without it. An event is only
+ * built while a recording has the type enabled, so an idle listener costs one check per
+ * step on top of taking the metrics.
+ */
+public class StepMetricsEvents implements StepMetricsListener
+{
+  private static final String NAME = "PhysicsDemo.Step";
+
+  // Kept so that the event type stays registered.
+  private final Object factory;
+  private final Object eventType;
+  private final Method isEnabled;
+  private final Method newEvent;
+  private final Method set;
+  private final Method commit;
+
+  /**
+   * Creates the listener and adds it to the world, or returns null if the VM has no
+   * Flight Recorder.
+   */
+  public static StepMetricsEvents register(final World world)
+  {
+    final StepMetricsEvents events;
+    try
+    {
+      events = new StepMetricsEvents();
+    }
+    catch (final ReflectiveOperationException e)
+    {
+      return null;
+    }
+    world.addMetricsListener(events);
+    return events;
+  }
+
+  private StepMetricsEvents() throws ReflectiveOperationException
+  {
+    final Constructor<?> annotation = Class.forName("jdk.jfr.AnnotationElement")
+        .getConstructor(Class.class, Object.class);
+    final Constructor<?> field = Class.forName("jdk.jfr.ValueDescriptor")
+        .getConstructor(Class.class, String.class, List.class);
+    final List<Object> typeAnnotations = Arrays.asList(
+        annotation("Name", NAME, annotation), annotation("Label", "Physics Step", annotation),
+        annotation("Category", new String[] {"Physics"}, annotation),
+        annotation("Description", "Measurements of one step of a world", annotation),
+        annotation("StackTrace", false, annotation));
+    // In the order of the values set in measured().
+    final List<Object> fields = new ArrayList<Object>();
+    fields.add(field(field, long.class, "frame", "Frame", null, annotation));
+    fields.add(field(field, long.class, "totalNanos", "Total", "Timespan", annotation));
+    fields.add(field(field, long.class, "integrationNanos", "Integration", "Timespan",
+                     annotation));
+    fields.add(field(field, long.class, "broadPhaseNanos", "Broad Phase", "Timespan",
+                     annotation));
+    fields.add(field(field, long.class, "narrowPhaseNanos", "Narrow Phase", "Timespan",
+                     annotation));
+    fields.add(field(field, long.class, "solverNanos", "Solver", "Timespan", annotation));
+    fields.add(field(field, long.class, "listenerNanos", "Listeners", "Timespan",
+                     annotation));
+    fields.add(field(field, int.class, "pairsTested", "Pairs Tested", null, annotation));
+    fields.add(field(field, int.class, "pairsHit", "Pairs Hit", null, annotation));
+    fields.add(field(field, float.class, "averagePenetrationDepth",
+                     "Average Penetration Depth", null, annotation));
+    fields.add(field(field, int.class, "bodiesIntegrated", "Bodies Integrated", null,
+                     annotation));
+    fields.add(field(field, long.class, "allocatedBytes", "Allocated", "DataAmount",
+                     annotation));
+
+    final Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+    factory = invoke(factoryClass.getMethod("create", List.class, List.class), null,
+                     typeAnnotations, fields);
+    eventType = invoke(factoryClass.getMethod("getEventType"), factory);
+    isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+    newEvent = factoryClass.getMethod("newEvent");
+    final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+    set = eventClass.getMethod("set", int.class, Object.class);
+    commit = eventClass.getMethod("commit");
+  }
+
+  public void measured(final StepMetrics metrics)
+  {
+    try
+    {
+      if (!(Boolean) invoke(isEnabled, eventType))
+      {
+        return;
+      }
+      final Object event = invoke(newEvent, factory);
+      invoke(set, event, 0, metrics.getFrame());
+      invoke(set, event, 1, metrics.getTotalNanos());
+      invoke(set, event, 2, metrics.getIntegrationNanos());
+      invoke(set, event, 3, metrics.getBroadPhaseNanos());
+      invoke(set, event, 4, metrics.getNarrowPhaseNanos());
+      invoke(set, event, 5, metrics.getSolverNanos());
+      invoke(set, event, 6, metrics.getListenerNanos());
+      invoke(set, event, 7, metrics.getPairsTested());
+      invoke(set, event, 8, metrics.getPairsHit());
+      invoke(set, event, 9, metrics.getAveragePenetrationDepth());
+      invoke(set, event, 10, metrics.getBodiesIntegrated());
+      invoke(set, event, 11, metrics.getAllocatedBytes());
+      invoke(commit, event);
+    }
+    catch (final ReflectiveOperationException e)
+    {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // An annotation of type jdk.jfr.<name> with the given value.
+  private static Object annotation(final String name, final Object value,
+                                   final Constructor<?> annotation)
+      throws ReflectiveOperationException
+  {
+    return annotation.newInstance(Class.forName("jdk.jfr." + name), value);
+  }
+
+  /**
+   * A field with a label and, unless {@code unit} is null, the unit annotation of that
+   * name: nanoseconds for Timespan, bytes for DataAmount.
+   */
+  private static Object field(final Constructor<?> field, final Class<?> type,
+                              final String name, final String label, final String unit,
+                              final Constructor<?> annotation)
+      throws ReflectiveOperationException
+  {
+    final List<Object> annotations = new ArrayList<Object>();
+    annotations.add(annotation("Label", label, annotation));
+    if (unit != null)
+    {
+      annotations.add(
+          annotation(unit, unit.equals("Timespan") ? "NANOSECONDS" : "BYTES", annotation));
+    }
+    return field.newInstance(type, name, Collections.unmodifiableList(annotations));
+  }
+
+  // Invokes the method, rethrowing what it throws.
+  private static Object invoke(final Method method, final Object target,
+                               final Object... arguments)
+      throws ReflectiveOperationException
+  {
+    try
+    {
+      return method.invoke(target, arguments);
+    }
+    catch (final InvocationTargetException e)
+    {
+      if (e.getCause() instanceof RuntimeException)
+      {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,7 @@
+/**
+ * Observer notified with the {@link StepMetrics} of every {@link World#step(float)}.
+ */
+public interface StepMetricsListener
+{
+  void measured(StepMetrics metrics);
+}
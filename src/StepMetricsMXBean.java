@@ -0,0 +1,53 @@
+/**
+ * Management interface of a {@link StepMetricsMonitor}. The "Last" attributes describe the
+ * most recent step; the totals sum all steps since the monitor was created or reset, so
+ * that monitoring tools can derive rates and averages from them.
+ */
+public interface StepMetricsMXBean
+{
+  long getFrame();
+
+  long getLastTotalNanos();
+
+  long getLastIntegrationNanos();
+
+  long getLastBroadPhaseNanos();
+
+  long getLastNarrowPhaseNanos();
+
+  long getLastSolverNanos();
+
+  long getLastListenerNanos();
+
+  int getLastPairsTested();
+
+  int getLastPairsHit();
+
+  float getLastAveragePenetrationDepth();
+
+  int getLastBodiesIntegrated();
+
+  long getLastAllocatedBytes();
+
+  long getStepCount();
+
+  long getTotalNanos();
+
+  long getTotalIntegrationNanos();
+
+  long getTotalBroadPhaseNanos();
+
+  long getTotalNarrowPhaseNanos();
+
+  long getTotalSolverNanos();
+
+  long getTotalListenerNanos();
+
+  long getTotalPairsTested();
+
+  long getTotalPairsHit();
+
+  long getTotalAllocatedBytes();
+
+  void reset();
+}
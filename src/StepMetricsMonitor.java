@@ -0,0 +1,206 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Keeps the metrics of the last step and running totals, and publishes them over JMX
+ * when registered with {@link #register(World, String)}. Steps are written by the
+ * stepping thread and read by the JMX threads, so every access is synchronized.
+ */
+public class StepMetricsMonitor implements StepMetricsListener, StepMetricsMXBean
+{
+  private long frame;
+  private long lastTotalNanos;
+  private long lastIntegrationNanos;
+  private long lastBroadPhaseNanos;
+  private long lastNarrowPhaseNanos;
+  private long lastSolverNanos;
+  private long lastListenerNanos;
+  private int lastPairsTested;
+  private int lastPairsHit;
+  private float lastAveragePenetrationDepth;
+  private int lastBodiesIntegrated;
+  private long lastAllocatedBytes;
+
+  private long stepCount;
+  private long totalNanos;
+  private long totalIntegrationNanos;
+  private long totalBroadPhaseNanos;
+  private long totalNarrowPhaseNanos;
+  private long totalSolverNanos;
+  private long totalListenerNanos;
+  private long totalPairsTested;
+  private long totalPairsHit;
+  private long totalAllocatedBytes;
+
+  /**
+   * Creates a monitor that listens to the world and registers it with the platform MBean
+   * server as "PhysicsDemo:type=StepMetrics,name=" followed by the given name.
+   */
+  public static StepMetricsMonitor register(final World world, final String name)
+  {
+    final StepMetricsMonitor monitor = new StepMetricsMonitor();
+    try
+    {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(
+          monitor, new ObjectName("PhysicsDemo:type=StepMetrics,name=" + ObjectName.quote(name)));
+    }
+    catch (final JMException e)
+    {
+      throw new IllegalArgumentException(e);
+    }
+    world.addMetricsListener(monitor);
+    return monitor;
+  }
+
+  public synchronized void measured(final StepMetrics metrics)
+  {
+    frame = metrics.getFrame();
+    lastTotalNanos = metrics.getTotalNanos();
+    lastIntegrationNanos = metrics.getIntegrationNanos();
+    lastBroadPhaseNanos = metrics.getBroadPhaseNanos();
+    lastNarrowPhaseNanos = metrics.getNarrowPhaseNanos();
+    lastSolverNanos = metrics.getSolverNanos();
+    lastListenerNanos = metrics.getListenerNanos();
+    lastPairsTested = metrics.getPairsTested();
+    lastPairsHit = metrics.getPairsHit();
+    lastAveragePenetrationDepth = metrics.getAveragePenetrationDepth();
+    lastBodiesIntegrated = metrics.getBodiesIntegrated();
+    lastAllocatedBytes = metrics.getAllocatedBytes();
+
+    stepCount++;
+    totalNanos += lastTotalNanos;
+    totalIntegrationNanos += lastIntegrationNanos;
+    totalBroadPhaseNanos += lastBroadPhaseNanos;
+    totalNarrowPhaseNanos += lastNarrowPhaseNanos;
+    totalSolverNanos += lastSolverNanos;
+    totalListenerNanos += lastListenerNanos;
+    totalPairsTested += lastPairsTested;
+    totalPairsHit += lastPairsHit;
+    totalAllocatedBytes += Math.max(lastAllocatedBytes, 0);
+  }
+
+  public synchronized long getFrame()
+  {
+    return frame;
+  }
+
+  public synchronized long getLastTotalNanos()
+  {
+    return lastTotalNanos;
+  }
+
+  public synchronized long getLastIntegrationNanos()
+  {
+    return lastIntegrationNanos;
+  }
+
+  public synchronized long getLastBroadPhaseNanos()
+  {
+    return lastBroadPhaseNanos;
+  }
+
+  public synchronized long getLastNarrowPhaseNanos()
+  {
+    return lastNarrowPhaseNanos;
+  }
+
+  public synchronized long getLastSolverNanos()
+  {
+    return lastSolverNanos;
+  }
+
+  public synchronized long getLastListenerNanos()
+  {
+    return lastListenerNanos;
+  }
+
+  public synchronized int getLastPairsTested()
+  {
+    return lastPairsTested;
+  }
+
+  public synchronized int getLastPairsHit()
+  {
+    return lastPairsHit;
+  }
+
+  public synchronized float getLastAveragePenetrationDepth()
+  {
+    return lastAveragePenetrationDepth;
+  }
+
+  public synchronized int getLastBodiesIntegrated()
+  {
+    return lastBodiesIntegrated;
+  }
+
+  public synchronized long getLastAllocatedBytes()
+  {
+    return lastAllocatedBytes;
+  }
+
+  public synchronized long getStepCount()
+  {
+    return stepCount;
+  }
+
+  public synchronized long getTotalNanos()
+  {
+    return totalNanos;
+  }
+
+  public synchronized long getTotalIntegrationNanos()
+  {
+    return totalIntegrationNanos;
+  }
+
+  public synchronized long getTotalBroadPhaseNanos()
+  {
+    return totalBroadPhaseNanos;
+  }
+
+  public synchronized long getTotalNarrowPhaseNanos()
+  {
+    return totalNarrowPhaseNanos;
+  }
+
+  public synchronized long getTotalSolverNanos()
+  {
+    return totalSolverNanos;
+  }
+
+  public synchronized long getTotalListenerNanos()
+  {
+    return totalListenerNanos;
+  }
+
+  public synchronized long getTotalPairsTested()
+  {
+    return totalPairsTested;
+  }
+
+  public synchronized long getTotalPairsHit()
+  {
+    return totalPairsHit;
+  }
+
+  public synchronized long getTotalAllocatedBytes()
+  {
+    return totalAllocatedBytes;
+  }
+
+  public synchronized void reset()
+  {
+    stepCount = 0;
+    totalNanos = 0;
+    totalIntegrationNanos = 0;
+    totalBroadPhaseNanos = 0;
+    totalNarrowPhaseNanos = 0;
+    totalSolverNanos = 0;
+    totalListenerNanos = 0;
+    totalPairsTested = 0;
+    totalPairsHit = 0;
+    totalAllocatedBytes = 0;
+  }
+}
@@ -0,0 +1,73 @@
+import java.util.Arrays;
+
+/**
+ * Broad phase that sorts objects along the x axis and only tests objects whose x
+ * intervals overlap. The sort order is kept between frames, so insertion sort runs in
+ * close to linear time while objects move coherently.
+ */
+public class SweepAndPrune implements BroadPhase
+{
+  // Object indices sorted by the minimum x coordinate of their bounds. The order is part of
+  // the state of a world, as it decides the order of the pairs.
+  int[] order = new int[0];
+  int orderCount;
+
+  public void findPairs(final PhysicsObject[] objects, final int count, final PairList pairs)
+  {
+    pairs.clear();
+    if (orderCount != count)
+    {
+      if (order.length < count)
+      {
+        order = Arrays.copyOf(order, count);
+      }
+      for (int i = 0; i < count; i++)
+      {
+        order[i] = i;
+      }
+      orderCount = count;
+    }
+
+    // Insertion sort by the minimum x coordinate.
+    for (int i = 1; i < count; i++)
+    {
+      final int object = order[i];
+      final float minX = objects[object].bounds.minX;
+      int j = i - 1;
+      while (j >= 0 && objects[order[j]].bounds.minX > minX)
+      {
+        order[j + 1] = order[j];
+        j--;
+      }
+      order[j + 1] = object;
+    }
+
+    for (int i = 0; i < count; i++)
+    {
+      final int a = order[i];
+      final AABB boundsA = objects[a].bounds;
+      final boolean asleepA = objects[a].isAsleep();
+      for (int j = i + 1; j < count; j++)
+      {
+        final int b = order[j];
+        final AABB boundsB = objects[b].bounds;
+        if (boundsB.minX > boundsA.maxX)
+        {
+          break;
+        }
+        if (boundsA.minY <= boundsB.maxY && boundsB.minY <= boundsA.maxY &&
+            !(asleepA && objects[b].isAsleep()))
+        {
+          if (a < b)
+          {
+            pairs.add(a, b);
+          }
+          else
+          {
+            pairs.add(b, a);
+          }
+        }
+      }
+    }
+  }
+}
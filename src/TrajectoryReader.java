@@ -0,0 +1,244 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file written by {@link TrajectoryRecorder}. The file is mapped into memory, and
+ * {@link #seek(long)} only computes where a frame starts, so frames can be visited in any
+ * order at the same cost. The getters read the frame last sought.
+ */
+public class TrajectoryReader
+{
+  private final RandomAccessFile file;
+  private final MappedByteBuffer[] segments;
+  private final int bodyCount;
+  private final int maxContacts;
+  private final int frameSize;
+  private final int framesPerSegment;
+  private final long frameCount;
+  // Frame last sought, and where it starts in its segment.
+  private MappedByteBuffer segment;
+  private int start;
+  private long index = -1;
+
+  // Maps the frames recorded when the file is opened.
+  public TrajectoryReader(final File path) throws IOException
+  {
+    file = new RandomAccessFile(path, "r");
+    try
+    {
+      final FileChannel channel = file.getChannel();
+      final MappedByteBuffer header =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, TrajectoryRecorder.HEADER_SIZE);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt(0) != TrajectoryRecorder.MAGIC)
+      {
+        throw new IllegalArgumentException();
+      }
+      bodyCount = header.getInt(4);
+      maxContacts = header.getInt(8);
+      frameSize = header.getInt(12);
+      frameCount = header.getLong(TrajectoryRecorder.FRAME_COUNT);
+      framesPerSegment = TrajectoryRecorder.getFramesPerSegment(frameSize);
+      segments = new MappedByteBuffer[(int) ((frameCount + framesPerSegment - 1) /
+                                             framesPerSegment)];
+      for (int i = 0; i < segments.length; i++)
+      {
+        final long first = (long) i * framesPerSegment;
+        final long frames = Math.min(framesPerSegment, frameCount - first);
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                  TrajectoryRecorder.HEADER_SIZE + first * frameSize,
+                                  frames * frameSize);
+        segments[i].order(ByteOrder.LITTLE_ENDIAN);
+      }
+      if (frameCount > 0)
+      {
+        seek(0);
+      }
+    }
+    catch (final IOException e)
+    {
+      file.close();
+      throw e;
+    }
+    catch (final RuntimeException e)
+    {
+      file.close();
+      throw e;
+    }
+  }
+
+  public void close() throws IOException
+  {
+    file.close();
+  }
+
+  public long getFrameCount()
+  {
+    return frameCount;
+  }
+
+  // Number of objects in every frame.
+  public int getBodyCount()
+  {
+    return bodyCount;
+  }
+
+  // Largest number of contacts per frame.
+  public int getMaxContacts()
+  {
+    return maxContacts;
+  }
+
+  // Makes the getters read the frame with the given index in the file, counting from 0.
+  public void seek(final long frame)
+  {
+    if (frame < 0 || frame >= frameCount)
+    {
+      throw new IllegalArgumentException();
+    }
+    segment = segments[(int) (frame / framesPerSegment)];
+    start = (int) (frame % framesPerSegment) * frameSize;
+    index = frame;
+  }
+
+  // Index in the file of the frame last sought.
+  public long getIndex()
+  {
+    return index;
+  }
+
+  // Number of steps the world had taken when the frame was recorded.
+  public long getFrame()
+  {
+    return segment.getLong(start);
+  }
+
+  public double getTime()
+  {
+    return segment.getDouble(start + 8);
+  }
+
+  public float getPositionX(final int body)
+  {
+    return segment.getFloat(bodyOffset(body));
+  }
+
+  public float getPositionY(final int body)
+  {
+    return segment.getFloat(bodyOffset(body) + 4);
+  }
+
+  public float getOrientation(final int body)
+  {
+    return segment.getFloat(bodyOffset(body) + 8);
+  }
+
+  public float getVelocityX(final int body)
+  {
+    return segment.getFloat(bodyOffset(body) + 12);
+  }
+
+  public float getVelocityY(final int body)
+  {
+    return segment.getFloat(bodyOffset(body) + 16);
+  }
+
+  public float getAngularVelocity(final int body)
+  {
+    return segment.getFloat(bodyOffset(body) + 20);
+  }
+
+  public int getContactCount()
+  {
+    return segment.getInt(start + 16);
+  }
+
+  // Index of the first object of a contact, or -1 - the index of a boundary.
+  public int getContactA(final int contact)
+  {
+    return segment.getInt(contactOffset(contact));
+  }
+
+  public int getContactB(final int contact)
+  {
+    return segment.getInt(contactOffset(contact) + 4);
+  }
+
+  public float getContactX(final int contact)
+  {
+    return segment.getFloat(contactOffset(contact) + 8);
+  }
+
+  public float getContactY(final int contact)
+  {
+    return segment.getFloat(contactOffset(contact) + 12);
+  }
+
+  // Unit normal pointing out of the first object, towards the second.
+  public float getContactNormalX(final int contact)
+  {
+    return segment.getFloat(contactOffset(contact) + 16);
+  }
+
+  public float getContactNormalY(final int contact)
+  {
+    return segment.getFloat(contactOffset(contact) + 20);
+  }
+
+  public float getContactDepth(final int contact)
+  {
+    return segment.getFloat(contactOffset(contact) + 24);
+  }
+
+  /**
+   * Returns the index of the last frame recorded at or before the given simulated time,
+   * or 0 if there is none.
+   */
+  public long findFrame(final double time)
+  {
+    long low = 0;
+    long high = frameCount - 1;
+    while (low < high)
+    {
+      final long middle = (low + high + 1) >>> 1;
+      if (getTime(middle) <= time)
+      {
+        low = middle;
+      }
+      else
+      {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  private double getTime(final long frame)
+  {
+    return segments[(int) (frame / framesPerSegment)]
+        .getDouble((int) (frame % framesPerSegment) * frameSize + 8);
+  }
+
+  private int bodyOffset(final int body)
+  {
+    if (body < 0 || body >= bodyCount)
+    {
+      throw new IllegalArgumentException();
+    }
+    return start + TrajectoryRecorder.FRAME_HEADER_SIZE + body * TrajectoryRecorder.BODY_SIZE;
+  }
+
+  private int contactOffset(final int contact)
+  {
+    if (contact < 0 || contact >= getContactCount())
+    {
+      throw new IllegalArgumentException();
+    }
+    return start + TrajectoryRecorder.FRAME_HEADER_SIZE +
+        bodyCount * TrajectoryRecorder.BODY_SIZE + contact * TrajectoryRecorder.CONTACT_SIZE;
+  }
+}
@@ -0,0 +1,239 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Records the position, orientation and velocity of every object of a world after each
+ * step into a memory-mapped file, optionally together with the contact points of the
+ * solver. Every frame takes a record of the same size, so {@link TrajectoryReader} can
+ * seek to any frame directly.
+ *
+ * The file is mapped for the largest number of frames up front, so recording a step only
+ * copies the state into memory and never waits for the disk. Once that number of frames
+ * is recorded, further steps are not recorded.
+ *
+ * The file starts with a header, followed by the frames. Each frame holds the frame
+ * number, the simulated time and the number of contacts, then six floats per object
+ * (position, orientation, velocity and angular velocity) and room for the largest number
+ * of contacts. A contact is the two objects, its point, its normal and its depth; objects
+ * are given by their index in the world and boundaries by -1 - their index, with the
+ * static objects numbered on after the boundaries. All values are little-endian.
+ */
+public class TrajectoryRecorder implements StepListener
+{
+  static final int MAGIC = 0x5452414a;
+  static final int HEADER_SIZE = 32;
+  // Offset of the number of recorded frames in the header.
+  static final int FRAME_COUNT = 16;
+  static final int FRAME_HEADER_SIZE = 24;
+  static final int BODY_SIZE = 24;
+  static final int CONTACT_SIZE = 28;
+  // Largest size of one mapping of the file.
+  static final long SEGMENT_SIZE = 1 << 28;
+
+  private final RandomAccessFile file;
+  private final MappedByteBuffer header;
+  private final MappedByteBuffer[] segments;
+  private final int bodyCount;
+  private final int boundaryCount;
+  private final int maxContacts;
+  private final int frameSize;
+  private final int framesPerSegment;
+  private final long maxFrames;
+  private long frameCount;
+  private int droppedContacts;
+  // Object index of each store id, or -1 - the boundary index for boundaries, followed by
+  // the static objects.
+  private final int[] reference;
+
+  /**
+   * Creates the file and maps it for {@code maxFrames} frames of the objects the world
+   * has now. {@code maxContacts} contact points are recorded per frame; pass 0 to only
+   * record the objects. The recorder must be added to the world as a step listener, and
+   * no objects or boundaries may be added to the world while it records.
+   */
+  public TrajectoryRecorder(final File path, final World world, final long maxFrames,
+                            final int maxContacts) throws IOException
+  {
+    if (maxFrames < 1 || maxContacts < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    bodyCount = world.getObjectCount();
+    boundaryCount = world.getBoundaryCount();
+    reference = new int[world.getStore().size()];
+    for (int i = 0; i < bodyCount; i++)
+    {
+      reference[world.getObject(i).getId()] = i;
+    }
+    for (int j = 0; j < boundaryCount; j++)
+    {
+      reference[world.getBoundary(j).getId()] = -1 - j;
+    }
+    for (int k = 0; k < world.getStaticObjectCount(); k++)
+    {
+      reference[world.getStaticObject(k).getId()] = -1 - boundaryCount - k;
+    }
+    this.maxContacts = maxContacts;
+    this.maxFrames = maxFrames;
+    frameSize = getFrameSize(bodyCount, maxContacts);
+    framesPerSegment = getFramesPerSegment(frameSize);
+    file = new RandomAccessFile(path, "rw");
+    try
+    {
+      file.setLength(0);
+      final FileChannel channel = file.getChannel();
+      header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC);
+      header.putInt(bodyCount);
+      header.putInt(maxContacts);
+      header.putInt(frameSize);
+      segments = new MappedByteBuffer[(int) ((maxFrames + framesPerSegment - 1) /
+                                             framesPerSegment)];
+      for (int i = 0; i < segments.length; i++)
+      {
+        final long first = (long) i * framesPerSegment;
+        final long frames = Math.min(framesPerSegment, maxFrames - first);
+        segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                  HEADER_SIZE + first * frameSize, frames * frameSize);
+        segments[i].order(ByteOrder.LITTLE_ENDIAN);
+      }
+    }
+    catch (final IOException e)
+    {
+      file.close();
+      throw e;
+    }
+    catch (final RuntimeException e)
+    {
+      file.close();
+      throw e;
+    }
+  }
+
+  static int getFrameSize(final int bodyCount, final int maxContacts)
+  {
+    final long size =
+        FRAME_HEADER_SIZE + (long) bodyCount * BODY_SIZE + (long) maxContacts * CONTACT_SIZE;
+    if (size > SEGMENT_SIZE)
+    {
+      throw new IllegalArgumentException();
+    }
+    return (int) size;
+  }
+
+  static int getFramesPerSegment(final int frameSize)
+  {
+    return (int) (SEGMENT_SIZE / frameSize);
+  }
+
+  public long getFrameCount()
+  {
+    return frameCount;
+  }
+
+  // Whether the largest number of frames has been recorded.
+  public boolean isFull()
+  {
+    return frameCount == maxFrames;
+  }
+
+  // Contact points left out because a frame had more than the largest number.
+  public int getDroppedContacts()
+  {
+    return droppedContacts;
+  }
+
+  public void stepped(final World world)
+  {
+    if (frameCount == maxFrames)
+    {
+      return;
+    }
+    if (world.getObjectCount() != bodyCount || world.getBoundaryCount() != boundaryCount)
+    {
+      throw new IllegalArgumentException();
+    }
+    final MappedByteBuffer segment = segments[(int) (frameCount / framesPerSegment)];
+    final int start = (int) (frameCount % framesPerSegment) * frameSize;
+    segment.putLong(start, world.getFrame());
+    segment.putDouble(start + 8, world.getTime());
+    final BodyStore store = world.getStore();
+    int position = start + FRAME_HEADER_SIZE;
+    for (int i = 0; i < bodyCount; i++)
+    {
+      final int id = world.getObject(i).getId();
+      segment.putFloat(position, store.positionX[id]);
+      segment.putFloat(position + 4, store.positionY[id]);
+      segment.putFloat(position + 8, store.orientation[id]);
+      segment.putFloat(position + 12, store.velocityX[id]);
+      segment.putFloat(position + 16, store.velocityY[id]);
+      segment.putFloat(position + 20, store.angularVelocity[id]);
+      position += BODY_SIZE;
+    }
+    segment.putInt(start + 16, maxContacts > 0 ? writeContacts(world, segment, position) : 0);
+    frameCount++;
+    // Readers of the file see the frame once it is counted.
+    header.putLong(FRAME_COUNT, frameCount);
+  }
+
+  /**
+   * Flushes the file, cuts it to the recorded frames and closes it. The frames stay mapped
+   * until the mappings are collected, but past the new end of the file, so the recorder
+   * must not record again: remove it from the world's step listeners first.
+   */
+  public void close() throws IOException
+  {
+    try
+    {
+      for (int i = 0; i < segments.length; i++)
+      {
+        segments[i].force();
+      }
+      header.force();
+      file.setLength(HEADER_SIZE + frameCount * frameSize);
+    }
+    finally
+    {
+      file.close();
+    }
+  }
+
+  // Writes the points of the solver's manifolds and returns how many were written.
+  private int writeContacts(final World world, final MappedByteBuffer segment,
+                            int position)
+  {
+    final ContactSolver solver = world.getContactSolver();
+    if (solver == null)
+    {
+      return 0;
+    }
+    int count = 0;
+    for (int m = 0; m < solver.getManifoldCount(); m++)
+    {
+      final ContactManifold manifold = solver.getManifold(m);
+      for (int k = 0; k < manifold.getPointCount(); k++)
+      {
+        if (count == maxContacts)
+        {
+          droppedContacts++;
+          continue;
+        }
+        segment.putInt(position, reference[manifold.getObjectA().getId()]);
+        segment.putInt(position + 4, reference[manifold.getObjectB().getId()]);
+        segment.putFloat(position + 8, manifold.getPointX(k));
+        segment.putFloat(position + 12, manifold.getPointY(k));
+        segment.putFloat(position + 16, manifold.getNormalX());
+        segment.putFloat(position + 20, manifold.getNormalY());
+        segment.putFloat(position + 24, manifold.getDepth(k));
+        position += CONTACT_SIZE;
+        count++;
+      }
+    }
+    return count;
+  }
+}
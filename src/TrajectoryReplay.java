@@ -0,0 +1,80 @@
+import java.util.Enumeration;
+import javax.media.j3d.Behavior;
+import javax.media.j3d.WakeupOnElapsedFrames;
+
+/**
+ * Plays a recorded trajectory back in a scene, once per frame on Java3D's behavior thread.
+ * The objects must be those of a world built the same way as the recorded one; they are
+ * only drawn at the recorded state, not simulated. Playback follows the wall clock from
+ * the first recorded frame and holds the last one.
+ */
+public class TrajectoryReplay extends Behavior
+{
+  private final TrajectoryReader reader;
+  private final World world;
+  private final WakeupOnElapsedFrames everyFrame = new WakeupOnElapsedFrames(0);
+  private float speed = 1;
+  // Wall clock time at which the first frame was shown, and its simulated time.
+  private long startNanos;
+  private double startTime;
+  private long shown = -1;
+
+  public TrajectoryReplay(final TrajectoryReader reader, final World world)
+  {
+    if (reader == null || world == null || reader.getBodyCount() != world.getObjectCount() ||
+        reader.getFrameCount() == 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.reader = reader;
+    this.world = world;
+  }
+
+  // Simulated seconds played per second of wall clock time.
+  public void setSpeed(final float speed)
+  {
+    if (speed <= 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.speed = speed;
+  }
+
+  public float getSpeed()
+  {
+    return speed;
+  }
+
+  /**
+   * Draws every object at its state in the frame with the given index in the file.
+   */
+  public void show(final long frame)
+  {
+    reader.seek(frame);
+    shown = frame;
+    for (int i = 0; i < reader.getBodyCount(); i++)
+    {
+      world.getObject(i).updateTransformGroup(reader.getPositionX(i), reader.getPositionY(i),
+                                              reader.getOrientation(i));
+    }
+  }
+
+  public void initialize()
+  {
+    startNanos = System.nanoTime();
+    show(0);
+    startTime = reader.getTime();
+    wakeupOn(everyFrame);
+  }
+
+  public void processStimulus(final Enumeration criteria)
+  {
+    final long frame =
+        reader.findFrame(startTime + (System.nanoTime() - startNanos) / 1e9 * speed);
+    if (frame != shown)
+    {
+      show(frame);
+    }
+    wakeupOn(everyFrame);
+  }
+}
@@ -0,0 +1,99 @@
+import java.util.Arrays;
+
+/**
+ * Positions and orientations of the objects of a world after one call to
+ * {@link FixedStepScheduler#advance(double)}, together with their state before the last
+ * step, published by a {@link SimulationThread}. A snapshot is not changed while a reader
+ * holds it.
+ */
+public class TransformSnapshot
+{
+  private PhysicsObject[] objects = new PhysicsObject[0];
+  private float[] previousPositionX = new float[0];
+  private float[] previousPositionY = new float[0];
+  private float[] previousOrientation = new float[0];
+  private float[] positionX = new float[0];
+  private float[] positionY = new float[0];
+  private float[] orientation = new float[0];
+  private int count;
+  private long frame;
+  // Accumulated fraction of a step when the snapshot was published, and when that was.
+  private float alpha;
+  private long publishedNanos;
+  private long timeStepNanos;
+
+  // Copies the state of the scheduler's world. Called on the simulation thread.
+  void fill(final FixedStepScheduler scheduler, final long now)
+  {
+    final World world = scheduler.getWorld();
+    count = world.getObjectCount();
+    if (objects.length < count)
+    {
+      final int capacity = Math.max(count, objects.length * 2);
+      objects = Arrays.copyOf(objects, capacity);
+      previousPositionX = Arrays.copyOf(previousPositionX, capacity);
+      previousPositionY = Arrays.copyOf(previousPositionY, capacity);
+      previousOrientation = Arrays.copyOf(previousOrientation, capacity);
+      positionX = Arrays.copyOf(positionX, capacity);
+      positionY = Arrays.copyOf(positionY, capacity);
+      orientation = Arrays.copyOf(orientation, capacity);
+    }
+    for (int i = 0; i < count; i++)
+    {
+      final PhysicsObject object = world.getObject(i);
+      objects[i] = object;
+      previousPositionX[i] = scheduler.getPreviousPositionX(object);
+      previousPositionY[i] = scheduler.getPreviousPositionY(object);
+      previousOrientation[i] = scheduler.getPreviousOrientation(object);
+      positionX[i] = object.getPositionX();
+      positionY[i] = object.getPositionY();
+      orientation[i] = object.getOrientation();
+    }
+    frame = world.getFrame();
+    alpha = scheduler.getAlpha();
+    publishedNanos = now;
+    timeStepNanos = (long) (scheduler.getTimeStep() * 1e9);
+  }
+
+  // Number of objects, in the order they were added to the world.
+  public int getCount()
+  {
+    return count;
+  }
+
+  public PhysicsObject getObject(final int index)
+  {
+    return objects[index];
+  }
+
+  public long getFrame()
+  {
+    return frame;
+  }
+
+  /**
+   * Returns the fraction of a step between the previous and the current state at which
+   * the objects should be drawn at the given System.nanoTime(). The fraction grows with
+   * the time since the snapshot was published, up to the current state.
+   */
+  public float getAlpha(final long now)
+  {
+    return Math.min(alpha + (float) (now - publishedNanos) / timeStepNanos, 1);
+  }
+
+  public float getPositionX(final int index, final float alpha)
+  {
+    return previousPositionX[index] + (positionX[index] - previousPositionX[index]) * alpha;
+  }
+
+  public float getPositionY(final int index, final float alpha)
+  {
+    return previousPositionY[index] + (positionY[index] - previousPositionY[index]) * alpha;
+  }
+
+  public float getOrientation(final int index, final float alpha)
+  {
+    return previousOrientation[index] +
+        (orientation[index] - previousOrientation[index]) * alpha;
+  }
+}
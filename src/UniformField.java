@@ -0,0 +1,38 @@
+/**
+ * The same acceleration for every body, such as gravity or wind that ignores shape. A
+ * world applies fields without a region as one acceleration of the whole store, without
+ * touching the force of each body.
+ */
+public class UniformField extends ForceField
+{
+  private final float accelerationX;
+  private final float accelerationY;
+
+  public UniformField(final float accelerationX, final float accelerationY)
+  {
+    this.accelerationX = accelerationX;
+    this.accelerationY = accelerationY;
+  }
+
+  public float getAccelerationX()
+  {
+    return accelerationX;
+  }
+
+  public float getAccelerationY()
+  {
+    return accelerationY;
+  }
+
+  public void applyForces(final BodyStore store)
+  {
+    for (int i = 0; i < store.size(); i++)
+    {
+      if (isAffected(store, i))
+      {
+        store.forceX[i] += accelerationX * store.mass[i];
+        store.forceY[i] += accelerationY * store.mass[i];
+      }
+    }
+  }
+}
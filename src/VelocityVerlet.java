@@ -0,0 +1,80 @@
+import java.util.Arrays;
+
+/**
+ * Moves the bodies with their velocity and acceleration at the start of the step, then
+ * applies the mean of the accelerations at the start and at the end of the step to the
+ * velocities. It is second order and symplectic at the cost of one more evaluation of the
+ * forces per step. Under forces that do not depend on the state, such as gravity, it
+ * follows the exact trajectory.
+ */
+public class VelocityVerlet implements Integrator
+{
+  // Acceleration of each body at the start of the step.
+  private float[] accelerationX = new float[0];
+  private float[] accelerationY = new float[0];
+
+  public int getPassCount()
+  {
+    return 2;
+  }
+
+  public void prepare(final BodyStore store)
+  {
+    if (accelerationX.length < store.size())
+    {
+      accelerationX = Arrays.copyOf(accelerationX, store.size());
+      accelerationY = Arrays.copyOf(accelerationY, store.size());
+    }
+  }
+
+  public void integrate(final int pass, final BodyStore store, final int from, final int to,
+                        final float duration)
+  {
+    if (pass == 0)
+    {
+      move(store, from, to, duration);
+    }
+    else
+    {
+      accelerate(store, from, to, duration);
+    }
+  }
+
+  private void move(final BodyStore store, final int from, final int to, final float duration)
+  {
+    for (int i = from; i < to; i++)
+    {
+      if (store.inverseMass[i] == 0 || store.asleep[i])
+      {
+        continue;
+      }
+      final float ax = store.getAccelerationX(i);
+      final float ay = store.getAccelerationY(i);
+      accelerationX[i] = ax;
+      accelerationY[i] = ay;
+      store.updateRotation(i);
+      float centerOfMassX = store.positionX[i] + store.rotatedCenterOfMassX[i];
+      float centerOfMassY = store.positionY[i] + store.rotatedCenterOfMassY[i];
+      centerOfMassX += duration * store.velocityX[i] + duration * duration / 2 * ax;
+      centerOfMassY += duration * store.velocityY[i] + duration * duration / 2 * ay;
+      store.orientation[i] += store.angularVelocity[i] * duration;
+      store.setGlobalCenterOfMass(i, centerOfMassX, centerOfMassY);
+    }
+  }
+
+  private void accelerate(final BodyStore store, final int from, final int to,
+                          final float duration)
+  {
+    for (int i = from; i < to; i++)
+    {
+      if (store.inverseMass[i] == 0 || store.asleep[i])
+      {
+        continue;
+      }
+      final float ax = store.getAccelerationX(i);
+      final float ay = store.getAccelerationY(i);
+      store.velocityX[i] += duration * ((accelerationX[i] + ax) / 2);
+      store.velocityY[i] += duration * ((accelerationY[i] + ay) / 2);
+    }
+  }
+}
@@ -0,0 +1,824 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Headless simulation of a set of physics objects inside fixed boundaries. Stepping the
+ * world never touches Java3D; rendering is done by a {@link StepListener} such as
+ * {@link SceneRenderer} if one is registered.
+ */
+public class World
+{
+  private static final int DEFAULT_COLLISION_ITERATIONS = 4;
+
+  private final BodyStore store = new BodyStore();
+  private PhysicsObject[] objects = new PhysicsObject[16];
+  private int objectCount;
+  private HalfSpace[] boundaries = new HalfSpace[4];
+  private int boundaryCount;
+  private PhysicsObject[] staticObjects = new PhysicsObject[16];
+  private int staticObjectCount;
+  // Tree of the static objects, built again after one is added.
+  private final BoundingVolumeHierarchy staticTree = new BoundingVolumeHierarchy();
+  private boolean staticTreeValid = true;
+  // Tree of the objects for queries, built on the first query after a step, an added
+  // object or a move of the store.
+  private final BoundingVolumeHierarchy objectTree = new BoundingVolumeHierarchy();
+  private boolean objectTreeValid;
+  // BodyStore.getMoves() when the tree was built.
+  private int objectTreeMoves;
+  // Object the collisions with the static objects are resolved for, and whether it had
+  // any.
+  private PhysicsObject staticQueryObject;
+  private boolean staticCollision;
+  private final QueryCallback staticCollisions = new QueryCallback()
+  {
+    public boolean found(final PhysicsObject body)
+    {
+      staticCollision |= collisionHandler.checkAndResolveCollision(body, staticQueryObject);
+      return true;
+    }
+  };
+  private final List<StepListener> listeners = new ArrayList<StepListener>();
+  private final List<StepMetricsListener> metricsListeners =
+      new ArrayList<StepMetricsListener>();
+  private final StepMetrics metrics = new StepMetrics();
+  // Whether the current step is being measured.
+  private boolean measuring;
+
+  private BroadPhase broadPhase = new SweepAndPrune();
+  private final PairList pairs = new PairList();
+  private final CollisionHandler collisionHandler = new CollisionHandler();
+  // Runs the step on several threads, or null to step on the calling thread.
+  private ParallelStepper parallelStepper;
+  // Number of full iterations of the collision detection and resolution system.
+  private int collisionIterations = DEFAULT_COLLISION_ITERATIONS;
+  // Resolves contacts with one detection pass per step, or null to use the iterations.
+  private ContactSolver contactSolver;
+  private final Islands islands = new Islands();
+  private boolean sleepingEnabled;
+  // Sweeps fast objects, or null to move every object by the whole step.
+  private ContinuousCollision continuousCollision;
+  private Integrator integrator = new VelocityVerlet();
+  private final List<ForceGenerator> forceGenerators = new ArrayList<ForceGenerator>();
+  // Whether a generator adds forces body by body, and the forces applied to the objects
+  // before the step, from which those are evaluated again.
+  private boolean bodyForces;
+  private float[] appliedForceX = new float[0];
+  private float[] appliedForceY = new float[0];
+  private float gravityX;
+  private float gravityY = -10;
+
+  private long frame;
+  private double time;
+
+  public void addObject(final PhysicsObject object)
+  {
+    if (objectCount == objects.length)
+    {
+      objects = Arrays.copyOf(objects, objectCount * 2);
+    }
+    object.attach(store);
+    objects[objectCount++] = object;
+    objectTreeValid = false;
+  }
+
+  public void addBoundary(final HalfSpace boundary)
+  {
+    if (boundaryCount == boundaries.length)
+    {
+      boundaries = Arrays.copyOf(boundaries, boundaryCount * 2);
+    }
+    boundary.attach(store);
+    boundaries[boundaryCount++] = boundary;
+  }
+
+  /**
+   * Adds an object that never moves, such as a piece of a level. It is made immovable and
+   * kept in a bounding volume hierarchy instead of the broad phase, so that the objects
+   * are only tested against the static objects near them. Static objects are not stepped
+   * and are not tested against each other or the boundaries. Continuous collision does
+   * not stop objects at them.
+   */
+  public void addStaticObject(final PhysicsObject object)
+  {
+    object.updateBounds();
+    if (!object.bounds.isBounded())
+    {
+      throw new IllegalArgumentException();
+    }
+    if (staticObjectCount == staticObjects.length)
+    {
+      staticObjects = Arrays.copyOf(staticObjects, staticObjectCount * 2);
+    }
+    object.attach(store);
+    final int id = object.getId();
+    store.setMass(id, Float.POSITIVE_INFINITY);
+    store.setMomentOfInertia(id, Float.POSITIVE_INFINITY);
+    store.velocityX[id] = 0;
+    store.velocityY[id] = 0;
+    store.angularVelocity[id] = 0;
+    staticObjects[staticObjectCount++] = object;
+    staticTreeValid = false;
+  }
+
+  public PhysicsObject getStaticObject(final int index)
+  {
+    return staticObjects[index];
+  }
+
+  public int getStaticObjectCount()
+  {
+    return staticObjectCount;
+  }
+
+  // State of all objects and boundaries, in the order they were added.
+  public BodyStore getStore()
+  {
+    return store;
+  }
+
+  public PhysicsObject getObject(final int index)
+  {
+    return objects[index];
+  }
+
+  public int getObjectCount()
+  {
+    return objectCount;
+  }
+
+  public HalfSpace getBoundary(final int index)
+  {
+    return boundaries[index];
+  }
+
+  public int getBoundaryCount()
+  {
+    return boundaryCount;
+  }
+
+  /**
+   * Reports every static object and object whose bounds overlap the box, until the
+   * callback returns false. Returns false if the callback ended the query. Boundaries are
+   * unbounded and are only found by point queries and raycasts.
+   */
+  public boolean queryAABB(final AABB box, final QueryCallback callback)
+  {
+    return getStaticTree().query(box, callback) && getObjectTree().query(box, callback);
+  }
+
+  /**
+   * Reports every static object, object and boundary that contains the point, until the
+   * callback returns false. Returns false if the callback ended the query.
+   */
+  public boolean queryPoint(final float x, final float y, final QueryCallback callback)
+  {
+    if (!getStaticTree().queryPoint(x, y, callback) ||
+        !getObjectTree().queryPoint(x, y, callback))
+    {
+      return false;
+    }
+    for (int j = 0; j < boundaryCount; j++)
+    {
+      if (boundaries[j].containsPoint(x, y) && !callback.found(boundaries[j]))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Finds the first static object, object or boundary on the segment from x1, y1 to x2, y2
+   * and stores it in hit, with the fraction of the segment up to it. Returns whether the
+   * segment hit anything.
+   */
+  public boolean raycast(final float x1, final float y1, final float x2, final float y2,
+                         final RaycastHit hit)
+  {
+    final float directionX = x2 - x1;
+    final float directionY = y2 - y1;
+    hit.reset(1);
+    getStaticTree().raycast(x1, y1, directionX, directionY, hit);
+    getObjectTree().raycast(x1, y1, directionX, directionY, hit);
+    for (int j = 0; j < boundaryCount; j++)
+    {
+      boundaries[j].raycast(x1, y1, directionX, directionY, hit);
+    }
+    return hit.object != null;
+  }
+
+  private BoundingVolumeHierarchy getStaticTree()
+  {
+    if (!staticTreeValid)
+    {
+      staticTree.build(staticObjects, staticObjectCount);
+      staticTreeValid = true;
+    }
+    return staticTree;
+  }
+
+  private BoundingVolumeHierarchy getObjectTree()
+  {
+    // A query that the running one made from its callback uses the tree as it is.
+    if ((!objectTreeValid || objectTreeMoves != store.getMoves()) && !objectTree.isQuerying())
+    {
+      for (int i = 0; i < objectCount; i++)
+      {
+        objects[i].updateBounds();
+      }
+      objectTree.build(objects, objectCount);
+      objectTreeValid = true;
+      objectTreeMoves = store.getMoves();
+    }
+    return objectTree;
+  }
+
+  public void addStepListener(final StepListener listener)
+  {
+    listeners.add(listener);
+  }
+
+  public void removeStepListener(final StepListener listener)
+  {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Registers a listener for the measurements of every step. Steps are only measured
+   * while at least one metrics listener is registered.
+   */
+  public void addMetricsListener(final StepMetricsListener listener)
+  {
+    metricsListeners.add(listener);
+  }
+
+  public void removeMetricsListener(final StepMetricsListener listener)
+  {
+    metricsListeners.remove(listener);
+  }
+
+  public void setBroadPhase(final BroadPhase broadPhase)
+  {
+    if (broadPhase == null)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.broadPhase = broadPhase;
+  }
+
+  public BroadPhase getBroadPhase()
+  {
+    return broadPhase;
+  }
+
+  /**
+   * Sets the number of threads used to step the world. With more than one thread,
+   * integration and collision detection run in parallel and pairs are resolved in batches
+   * that share no object. The results do not depend on the number of threads, but differ
+   * from single-threaded stepping because pairs are resolved in a different order.
+   */
+  public void setParallelism(final int threads)
+  {
+    if (threads < 1)
+    {
+      throw new IllegalArgumentException();
+    }
+    if (parallelStepper != null)
+    {
+      parallelStepper.shutdown();
+      parallelStepper = null;
+    }
+    if (threads > 1)
+    {
+      parallelStepper = new ParallelStepper(threads);
+    }
+  }
+
+  public int getParallelism()
+  {
+    return parallelStepper == null ? 1 : parallelStepper.getParallelism();
+  }
+
+  public void setCollisionIterations(final int collisionIterations)
+  {
+    if (collisionIterations < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.collisionIterations = collisionIterations;
+  }
+
+  public int getCollisionIterations()
+  {
+    return collisionIterations;
+  }
+
+  /**
+   * Sets the integrator that moves the objects before the collision iterations. With a
+   * contact solver the velocities are always integrated before the contacts are solved
+   * and the positions after, which is semi-implicit Euler, so the integrator is not used.
+   */
+  public void setIntegrator(final Integrator integrator)
+  {
+    if (integrator == null)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.integrator = integrator;
+  }
+
+  public Integrator getIntegrator()
+  {
+    return integrator;
+  }
+
+  /**
+   * Sets the solver used to resolve contacts. With a solver, contacts are detected once
+   * per step and the collision iterations are not used. The solver runs on the calling
+   * thread; with parallelism, only the integration is spread over the threads. Pass null
+   * to resolve collisions in repeated detection passes again.
+   */
+  public void setContactSolver(final ContactSolver contactSolver)
+  {
+    this.contactSolver = contactSolver;
+  }
+
+  public ContactSolver getContactSolver()
+  {
+    return contactSolver;
+  }
+
+  /**
+   * Lets islands of resting objects fall asleep. Sleeping objects are not integrated,
+   * tested against each other or solved until an awake object touches their island, their
+   * state is changed, the gravity changes or {@link #boundariesChanged()} is called. Only
+   * used with a contact solver.
+   */
+  public void setSleepingEnabled(final boolean sleepingEnabled)
+  {
+    this.sleepingEnabled = sleepingEnabled;
+    if (!sleepingEnabled)
+    {
+      islands.wakeAll(objects, objectCount);
+    }
+  }
+
+  public boolean isSleepingEnabled()
+  {
+    return sleepingEnabled;
+  }
+
+  /**
+   * Stops objects that move further than their inner radius in one step at their first
+   * impact with a boundary or circle, instead of letting them pass through. Only used with
+   * a contact solver.
+   */
+  public void setContinuousCollisionEnabled(final boolean enabled)
+  {
+    continuousCollision = enabled ? new ContinuousCollision() : null;
+  }
+
+  public boolean isContinuousCollisionEnabled()
+  {
+    return continuousCollision != null;
+  }
+
+  // Thresholds for putting islands to sleep.
+  public Islands getIslands()
+  {
+    return islands;
+  }
+
+  // Wakes every object. Call after moving or turning a boundary.
+  public void boundariesChanged()
+  {
+    islands.wakeAll(objects, objectCount);
+  }
+
+  public void setGravity(final float gravityX, final float gravityY)
+  {
+    this.gravityX = gravityX;
+    this.gravityY = gravityY;
+    islands.wakeAll(objects, objectCount);
+  }
+
+  /**
+   * Adds a generator of forces that act on the objects in every step, on top of the
+   * gravity. Uniform fields without a region are added to the gravity instead of to the
+   * force of every object.
+   */
+  public void addForceGenerator(final ForceGenerator generator)
+  {
+    if (generator == null)
+    {
+      throw new IllegalArgumentException();
+    }
+    forceGenerators.add(generator);
+    islands.wakeAll(objects, objectCount);
+  }
+
+  public void removeForceGenerator(final ForceGenerator generator)
+  {
+    if (forceGenerators.remove(generator))
+    {
+      islands.wakeAll(objects, objectCount);
+    }
+  }
+
+  public int getForceGeneratorCount()
+  {
+    return forceGenerators.size();
+  }
+
+  public ForceGenerator getForceGenerator(final int index)
+  {
+    return forceGenerators.get(index);
+  }
+
+  public float getGravityX()
+  {
+    return gravityX;
+  }
+
+  public float getGravityY()
+  {
+    return gravityY;
+  }
+
+  // Number of steps taken so far.
+  public long getFrame()
+  {
+    return frame;
+  }
+
+  // Simulated time in seconds.
+  public double getTime()
+  {
+    return time;
+  }
+
+  // Sets the clock and the gravity from a snapshot, without waking any object.
+  void restore(final long frame, final double time, final float gravityX,
+               final float gravityY)
+  {
+    this.frame = frame;
+    this.time = time;
+    this.gravityX = gravityX;
+    this.gravityY = gravityY;
+  }
+
+  /**
+   * Advances the simulation by {@code duration} seconds and notifies the step listeners.
+   */
+  public void step(final float duration)
+  {
+    measuring = !metricsListeners.isEmpty();
+    if (measuring)
+    {
+      metrics.begin(frame, parallelStepper);
+      collisionHandler.resetCounters();
+      if (parallelStepper != null)
+      {
+        parallelStepper.resetCounters();
+      }
+    }
+    beginForces();
+    if (contactSolver != null)
+    {
+      stepSolver(duration);
+    }
+    else if (parallelStepper != null)
+    {
+      stepParallel(duration);
+    }
+    else
+    {
+      stepSerial(duration);
+    }
+    store.clearForces();
+    frame++;
+    time += duration;
+    objectTreeValid = false;
+
+    if (measuring)
+    {
+      metrics.lap();
+    }
+    for (int i = 0; i < listeners.size(); i++)
+    {
+      listeners.get(i).stepped(this);
+    }
+    if (measuring)
+    {
+      metrics.listenerNanos = metrics.lap();
+      metrics.end();
+      for (int i = 0; i < metricsListeners.size(); i++)
+      {
+        metricsListeners.get(i).measured(metrics);
+      }
+    }
+  }
+
+  private void stepSerial(final float duration)
+  {
+    integrate(duration);
+    if (measuring)
+    {
+      metrics.integrationNanos += metrics.lap();
+      metrics.bodiesIntegrated = objectCount;
+    }
+    for (int iteration = 0; iteration < collisionIterations; iteration++)
+    {
+      for (int i = 0; i < objectCount; i++)
+      {
+        final PhysicsObject o = objects[i];
+        for (int j = 0; j < boundaryCount; j++)
+        {
+          collisionHandler.checkAndResolveCollision(boundaries[j], o);
+        }
+        o.updateBounds();
+      }
+      resolveStaticCollisions();
+      if (measuring)
+      {
+        metrics.narrowPhaseNanos += metrics.lap();
+      }
+      // Only pairs with overlapping bounds reach the narrow phase.
+      broadPhase.findPairs(objects, objectCount, pairs);
+      if (measuring)
+      {
+        metrics.broadPhaseNanos += metrics.lap();
+      }
+      for (int p = 0; p < pairs.size; p++)
+      {
+        collisionHandler.checkAndResolveCollision(objects[pairs.first[p]],
+                                                  objects[pairs.second[p]]);
+      }
+      if (measuring)
+      {
+        metrics.narrowPhaseNanos += metrics.lap();
+        metrics.pairsTested += objectCount * boundaryCount + pairs.size;
+      }
+    }
+    if (measuring)
+    {
+      metrics.pairsHit = collisionHandler.getCollisionCount();
+      metrics.depthTotal = collisionHandler.getDepthTotal();
+      metrics.depthCount = metrics.pairsHit;
+    }
+  }
+
+  private void stepParallel(final float duration)
+  {
+    integrate(duration);
+    if (measuring)
+    {
+      metrics.integrationNanos += metrics.lap();
+      metrics.bodiesIntegrated = objectCount;
+    }
+    for (int iteration = 0; iteration < collisionIterations; iteration++)
+    {
+      parallelStepper.resolveBoundaries(objects, objectCount, boundaries, boundaryCount);
+      resolveStaticCollisions();
+      if (measuring)
+      {
+        metrics.narrowPhaseNanos += metrics.lap();
+      }
+      broadPhase.findPairs(objects, objectCount, pairs);
+      if (measuring)
+      {
+        metrics.broadPhaseNanos += metrics.lap();
+      }
+      parallelStepper.resolvePairs(objects, objectCount, pairs);
+      if (measuring)
+      {
+        metrics.narrowPhaseNanos += metrics.lap();
+        metrics.pairsTested += objectCount * boundaryCount + pairs.size;
+      }
+    }
+    if (measuring)
+    {
+      metrics.pairsHit = parallelStepper.getCollisionCount();
+      metrics.depthTotal = parallelStepper.getDepthTotal();
+      metrics.depthCount = metrics.pairsHit;
+    }
+  }
+
+  // Resolves the collisions of every object with the static objects near it.
+  private void resolveStaticCollisions()
+  {
+    if (staticObjectCount == 0)
+    {
+      return;
+    }
+    final BoundingVolumeHierarchy tree = getStaticTree();
+    for (int i = 0; i < objectCount; i++)
+    {
+      staticQueryObject = objects[i];
+      staticCollision = false;
+      tree.query(objects[i].bounds, staticCollisions);
+      if (staticCollision)
+      {
+        objects[i].updateBounds();
+      }
+    }
+    staticQueryObject = null;
+  }
+
+  // Runs the passes of the integrator over the whole store, on the threads if there are any.
+  private void integrate(final float duration)
+  {
+    integrator.prepare(store);
+    for (int pass = 0; pass < integrator.getPassCount(); pass++)
+    {
+      if (pass > 0)
+      {
+        evaluateForces();
+      }
+      if (parallelStepper != null)
+      {
+        parallelStepper.integrate(integrator, pass, store, duration);
+      }
+      else
+      {
+        integrator.integrate(pass, store, 0, store.size(), duration);
+      }
+    }
+  }
+
+  /**
+   * Sets the uniform acceleration of the store to the gravity and the uniform fields, and
+   * adds the forces of the other generators to the forces applied to the objects.
+   */
+  private void beginForces()
+  {
+    float accelerationX = gravityX;
+    float accelerationY = gravityY;
+    bodyForces = false;
+    for (int i = 0; i < forceGenerators.size(); i++)
+    {
+      final ForceGenerator generator = forceGenerators.get(i);
+      if (isBulk(generator))
+      {
+        accelerationX += ((UniformField) generator).getAccelerationX();
+        accelerationY += ((UniformField) generator).getAccelerationY();
+      }
+      else
+      {
+        bodyForces = true;
+      }
+    }
+    store.accelerationX = accelerationX;
+    store.accelerationY = accelerationY;
+    if (bodyForces)
+    {
+      final int size = store.size();
+      if (appliedForceX.length < size)
+      {
+        appliedForceX = new float[store.forceX.length];
+        appliedForceY = new float[store.forceY.length];
+      }
+      System.arraycopy(store.forceX, 0, appliedForceX, 0, size);
+      System.arraycopy(store.forceY, 0, appliedForceY, 0, size);
+      applyForceGenerators();
+    }
+  }
+
+  /**
+   * Sets the forces of the store for its current state. Only the generators that act
+   * body by body can depend on the state; the applied forces and the uniform acceleration
+   * of the start of the step still hold.
+   */
+  private void evaluateForces()
+  {
+    if (bodyForces)
+    {
+      System.arraycopy(appliedForceX, 0, store.forceX, 0, store.size());
+      System.arraycopy(appliedForceY, 0, store.forceY, 0, store.size());
+      applyForceGenerators();
+    }
+  }
+
+  private void applyForceGenerators()
+  {
+    for (int i = 0; i < forceGenerators.size(); i++)
+    {
+      final ForceGenerator generator = forceGenerators.get(i);
+      if (!isBulk(generator))
+      {
+        generator.applyForces(store);
+      }
+    }
+  }
+
+  // Whether a generator is applied as part of the uniform acceleration of the store.
+  private static boolean isBulk(final ForceGenerator generator)
+  {
+    return generator instanceof UniformField && ((UniformField) generator).getRegion() == null;
+  }
+
+  /**
+   * Detects contacts at the current positions, solves for velocities that resolve them
+   * and then moves the objects.
+   */
+  private void stepSolver(final float duration)
+  {
+    if (parallelStepper != null)
+    {
+      parallelStepper.integrateVelocities(objects, objectCount, duration);
+    }
+    else
+    {
+      for (int i = 0; i < objectCount; i++)
+      {
+        if (!objects[i].isAsleep())
+        {
+          objects[i].integrateVelocity(duration);
+          objects[i].updateBounds();
+        }
+      }
+    }
+    if (measuring)
+    {
+      metrics.integrationNanos += metrics.lap();
+      for (int i = 0; i < objectCount; i++)
+      {
+        if (!objects[i].isAsleep())
+        {
+          metrics.bodiesIntegrated++;
+        }
+      }
+    }
+    if (continuousCollision != null)
+    {
+      continuousCollision.expandBounds(objects, objectCount, duration);
+    }
+    broadPhase.findPairs(objects, objectCount, pairs);
+    if (sleepingEnabled && islands.wakeTouched(objects, objectCount, pairs, store))
+    {
+      // Pairs within the woken islands were left out.
+      broadPhase.findPairs(objects, objectCount, pairs);
+    }
+    if (measuring)
+    {
+      metrics.broadPhaseNanos += metrics.lap();
+    }
+    contactSolver.detect(objects, objectCount, boundaries, boundaryCount,
+                         staticObjectCount == 0 ? null : getStaticTree(), pairs);
+    if (measuring)
+    {
+      metrics.narrowPhaseNanos += metrics.lap();
+    }
+    contactSolver.solve(duration);
+    if (continuousCollision != null)
+    {
+      continuousCollision.findImpacts(objects, objectCount, boundaries, boundaryCount, pairs,
+                                      duration);
+    }
+    if (measuring)
+    {
+      metrics.solverNanos += metrics.lap();
+    }
+    if (parallelStepper != null)
+    {
+      parallelStepper.integratePositions(objects, objectCount, duration, continuousCollision);
+    }
+    else
+    {
+      for (int i = 0; i < objectCount; i++)
+      {
+        if (!objects[i].isAsleep())
+        {
+          objects[i].integratePosition(continuousCollision == null ? duration
+              : duration * continuousCollision.getFraction(i));
+        }
+      }
+    }
+    if (sleepingEnabled)
+    {
+      islands.update(objects, objectCount, contactSolver, forceGenerators, store);
+    }
+    if (measuring)
+    {
+      metrics.integrationNanos += metrics.lap();
+      measureContacts();
+    }
+  }
+
+  private void measureContacts()
+  {
+    metrics.pairsTested = contactSolver.getPairsTested();
+    metrics.pairsHit = contactSolver.getManifoldCount();
+    for (int m = 0; m < metrics.pairsHit; m++)
+    {
+      final ContactManifold manifold = contactSolver.getManifold(m);
+      for (int k = 0; k < manifold.getPointCount(); k++)
+      {
+        metrics.depthTotal += manifold.getDepth(k);
+        metrics.depthCount++;
+      }
+    }
+  }
+}
@@ -0,0 +1,430 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Binary snapshot of the complete state of a world: its clock and gravity, the state and
+ * shape parameters of every object and boundary, the order kept by a sweep and prune broad
+ * phase and the contact manifolds of the solver with the impulses used for warm starting.
+ * Restoring a snapshot into the world it was taken from, or into one built the same way,
+ * and stepping on reproduces the original run exactly.
+ *
+ * Settings such as the solver parameters, the broad phase in use or whether sleeping is
+ * enabled are not part of a snapshot. Neither are the vertices of polygons, which never
+ * change; only the shape type of every object is checked on restore. Static objects
+ * never move and have no records; the world must have the same ones.
+ *
+ * Every object and boundary takes a record of the same size, so a delta snapshot only
+ * holds the header, the records that changed since the previous snapshot and the
+ * manifolds. Records of sleeping objects do not change. All values are written in the
+ * byte order of the buffer.
+ */
+public class WorldSnapshot
+{
+  private static final int MAGIC = 0x57534e50;
+  private static final int DELTA_MAGIC = 0x57534e44;
+  // Magic, frame, time, gravity, object and boundary count, solver frame and flags.
+  private static final int HEADER_SIZE = 48;
+  private static final int OBJECT_COUNT = 28;
+  private static final int BOUNDARY_COUNT = 32;
+  // State, shape type and parameters of one body, and its broad phase order entry.
+  private static final int RECORD_SIZE = 76;
+  private static final int SHAPE_TYPE = 56;
+  // Objects, normal and point count, then position, depth, feature and impulses per point.
+  private static final int MANIFOLD_SIZE = 20 + 24 * ContactManifold.MAX_POINTS;
+  // Set in the header when the records hold the order of a sweep and prune broad phase.
+  private static final int HAS_ORDER = 1;
+
+  // Object index of each store id, or -1 - the boundary index for boundaries, followed by
+  // the static objects.
+  private int[] reference = new int[0];
+
+  // Size of a full snapshot of the world as it is now.
+  public static int getSize(final World world)
+  {
+    final ContactSolver solver = world.getContactSolver();
+    return HEADER_SIZE + (world.getObjectCount() + world.getBoundaryCount()) * RECORD_SIZE +
+        4 + (solver == null ? 0 : solver.getManifoldCount()) * MANIFOLD_SIZE;
+  }
+
+  // Largest size of a delta between two full snapshots of the world as it is now.
+  public static int getMaxDeltaSize(final World world)
+  {
+    return getSize(world) + 4 + (world.getObjectCount() + world.getBoundaryCount()) * 4;
+  }
+
+  /**
+   * Writes a full snapshot of the world at the position of the buffer and advances the
+   * position past it. Call between steps.
+   */
+  public void write(final World world, final ByteBuffer buffer)
+  {
+    final int objectCount = world.getObjectCount();
+    final int boundaryCount = world.getBoundaryCount();
+    final ContactSolver solver = world.getContactSolver();
+    final SweepAndPrune sweepAndPrune = world.getBroadPhase() instanceof SweepAndPrune
+        ? (SweepAndPrune) world.getBroadPhase() : null;
+    final boolean hasOrder = sweepAndPrune != null && sweepAndPrune.orderCount == objectCount;
+    buffer.putInt(MAGIC);
+    buffer.putLong(world.getFrame());
+    buffer.putDouble(world.getTime());
+    buffer.putFloat(world.getGravityX());
+    buffer.putFloat(world.getGravityY());
+    buffer.putInt(objectCount);
+    buffer.putInt(boundaryCount);
+    buffer.putLong(solver == null ? 0 : solver.getFrame());
+    buffer.putInt(hasOrder ? HAS_ORDER : 0);
+
+    final BodyStore store = world.getStore();
+    for (int i = 0; i < objectCount; i++)
+    {
+      writeRecord(store, world.getObject(i), hasOrder ? sweepAndPrune.order[i] : -1, buffer);
+    }
+    for (int j = 0; j < boundaryCount; j++)
+    {
+      writeRecord(store, world.getBoundary(j), -1, buffer);
+    }
+
+    if (solver == null)
+    {
+      buffer.putInt(0);
+      return;
+    }
+    if (reference.length < store.size())
+    {
+      reference = new int[Math.max(store.size(), reference.length * 2)];
+    }
+    for (int i = 0; i < objectCount; i++)
+    {
+      reference[world.getObject(i).getId()] = i;
+    }
+    for (int j = 0; j < boundaryCount; j++)
+    {
+      reference[world.getBoundary(j).getId()] = -1 - j;
+    }
+    for (int k = 0; k < world.getStaticObjectCount(); k++)
+    {
+      reference[world.getStaticObject(k).getId()] = -1 - boundaryCount - k;
+    }
+    buffer.putInt(solver.getManifoldCount());
+    for (int m = 0; m < solver.getManifoldCount(); m++)
+    {
+      final ContactManifold manifold = solver.getManifold(m);
+      buffer.putInt(reference[manifold.a.getId()]);
+      buffer.putInt(reference[manifold.b.getId()]);
+      buffer.putFloat(manifold.normalX);
+      buffer.putFloat(manifold.normalY);
+      buffer.putInt(manifold.pointCount);
+      for (int k = 0; k < ContactManifold.MAX_POINTS; k++)
+      {
+        buffer.putFloat(manifold.pointX[k]);
+        buffer.putFloat(manifold.pointY[k]);
+        buffer.putFloat(manifold.depth[k]);
+        buffer.putInt(manifold.feature[k]);
+        buffer.putFloat(manifold.normalImpulse[k]);
+        buffer.putFloat(manifold.tangentImpulse[k]);
+      }
+    }
+  }
+
+  /**
+   * Restores the world from the full snapshot at the position of the buffer and advances
+   * the position past it. The world must have the same objects and boundaries, with the
+   * same shape types and in the same order, as the one the snapshot was taken from.
+   * Call between steps.
+   */
+  public void read(final World world, final ByteBuffer buffer)
+  {
+    final int start = buffer.position();
+    final int objectCount = world.getObjectCount();
+    final int boundaryCount = world.getBoundaryCount();
+    if (buffer.getInt(start) != MAGIC || buffer.getInt(start + OBJECT_COUNT) != objectCount ||
+        buffer.getInt(start + BOUNDARY_COUNT) != boundaryCount)
+    {
+      throw new IllegalArgumentException();
+    }
+    // Check everything before changing the world.
+    for (int i = 0; i < objectCount + boundaryCount; i++)
+    {
+      final PhysicsObject o =
+          i < objectCount ? world.getObject(i) : world.getBoundary(i - objectCount);
+      if (buffer.getInt(start + HEADER_SIZE + i * RECORD_SIZE + SHAPE_TYPE) >> 1 !=
+          o.getShapeType())
+      {
+        throw new IllegalArgumentException();
+      }
+    }
+    final ContactSolver solver = world.getContactSolver();
+    if (solver == null &&
+        buffer.getInt(start + HEADER_SIZE + (objectCount + boundaryCount) * RECORD_SIZE) > 0)
+    {
+      throw new IllegalArgumentException();
+    }
+
+    buffer.getInt();
+    final long frame = buffer.getLong();
+    final double time = buffer.getDouble();
+    final float gravityX = buffer.getFloat();
+    final float gravityY = buffer.getFloat();
+    buffer.getInt();
+    buffer.getInt();
+    final long solverFrame = buffer.getLong();
+    final boolean hasOrder = (buffer.getInt() & HAS_ORDER) != 0;
+    world.restore(frame, time, gravityX, gravityY);
+
+    final BodyStore store = world.getStore();
+    final SweepAndPrune sweepAndPrune = world.getBroadPhase() instanceof SweepAndPrune
+        ? (SweepAndPrune) world.getBroadPhase() : null;
+    if (sweepAndPrune != null && sweepAndPrune.order.length < objectCount)
+    {
+      sweepAndPrune.order = new int[objectCount];
+    }
+    for (int i = 0; i < objectCount; i++)
+    {
+      final int order = readRecord(store, world.getObject(i), buffer);
+      if (sweepAndPrune != null)
+      {
+        sweepAndPrune.order[i] = order;
+      }
+    }
+    if (sweepAndPrune != null)
+    {
+      // Without a stored order, the broad phase sorts from scratch.
+      sweepAndPrune.orderCount = hasOrder ? objectCount : -1;
+    }
+    for (int j = 0; j < boundaryCount; j++)
+    {
+      readRecord(store, world.getBoundary(j), buffer);
+    }
+    store.moved();
+
+    final int manifoldCount = buffer.getInt();
+    if (solver == null)
+    {
+      return;
+    }
+    solver.restore(solverFrame);
+    for (int m = 0; m < manifoldCount; m++)
+    {
+      final PhysicsObject a = get(world, buffer.getInt());
+      final PhysicsObject b = get(world, buffer.getInt());
+      final ContactManifold manifold = solver.restoreManifold(a, b);
+      manifold.normalX = buffer.getFloat();
+      manifold.normalY = buffer.getFloat();
+      manifold.pointCount = buffer.getInt();
+      for (int k = 0; k < ContactManifold.MAX_POINTS; k++)
+      {
+        manifold.pointX[k] = buffer.getFloat();
+        manifold.pointY[k] = buffer.getFloat();
+        manifold.depth[k] = buffer.getFloat();
+        manifold.feature[k] = buffer.getInt();
+        manifold.normalImpulse[k] = buffer.getFloat();
+        manifold.tangentImpulse[k] = buffer.getFloat();
+      }
+    }
+  }
+
+  /**
+   * Writes the difference between two full snapshots of the same world to {@code delta}
+   * and advances its position past it. The full snapshots are read at their positions,
+   * which are left unchanged, so that {@code current} can be the previous snapshot of the
+   * next delta.
+   */
+  public static void writeDelta(final ByteBuffer previous, final ByteBuffer current,
+                                final ByteBuffer delta)
+  {
+    final int base = previous.position();
+    final int start = current.position();
+    checkCounts(previous, base, MAGIC, current, start, MAGIC);
+    final int recordCount = getRecordCount(current, start);
+    int position = delta.position();
+    delta.putInt(position, DELTA_MAGIC);
+    copy(current, start + 4, delta, position + 4, HEADER_SIZE - 4);
+    final int countPosition = position + HEADER_SIZE;
+    position = countPosition + 4;
+    int changed = 0;
+    for (int i = 0; i < recordCount; i++)
+    {
+      final int record = start + HEADER_SIZE + i * RECORD_SIZE;
+      if (!equal(previous, base + HEADER_SIZE + i * RECORD_SIZE, current, record))
+      {
+        delta.putInt(position, i);
+        copy(current, record, delta, position + 4, RECORD_SIZE);
+        position += 4 + RECORD_SIZE;
+        changed++;
+      }
+    }
+    delta.putInt(countPosition, changed);
+    final int manifolds = start + HEADER_SIZE + recordCount * RECORD_SIZE;
+    final int manifoldSize = 4 + current.getInt(manifolds) * MANIFOLD_SIZE;
+    copy(current, manifolds, delta, position, manifoldSize);
+    delta.position(position + manifoldSize);
+  }
+
+  /**
+   * Writes the full snapshot that results from applying the delta at the position of
+   * {@code delta} to the full snapshot {@code previous} it was taken against. The
+   * positions of the delta and the result are advanced; the position of {@code previous}
+   * is left unchanged.
+   */
+  public static void applyDelta(final ByteBuffer previous, final ByteBuffer delta,
+                                final ByteBuffer result)
+  {
+    final int base = previous.position();
+    int position = delta.position();
+    checkCounts(previous, base, MAGIC, delta, position, DELTA_MAGIC);
+    final int recordCount = getRecordCount(previous, base);
+    final int start = result.position();
+    result.putInt(start, MAGIC);
+    copy(delta, position + 4, result, start + 4, HEADER_SIZE - 4);
+    copy(previous, base + HEADER_SIZE, result, start + HEADER_SIZE, recordCount * RECORD_SIZE);
+    final int changed = delta.getInt(position + HEADER_SIZE);
+    position += HEADER_SIZE + 4;
+    for (int k = 0; k < changed; k++)
+    {
+      final int index = delta.getInt(position);
+      if (index < 0 || index >= recordCount)
+      {
+        throw new IllegalArgumentException();
+      }
+      copy(delta, position + 4, result, start + HEADER_SIZE + index * RECORD_SIZE,
+           RECORD_SIZE);
+      position += 4 + RECORD_SIZE;
+    }
+    final int manifoldSize = 4 + delta.getInt(position) * MANIFOLD_SIZE;
+    final int manifolds = start + HEADER_SIZE + recordCount * RECORD_SIZE;
+    copy(delta, position, result, manifolds, manifoldSize);
+    delta.position(position + manifoldSize);
+    result.position(manifolds + manifoldSize);
+  }
+
+  private static void writeRecord(final BodyStore store, final PhysicsObject o,
+                                  final int order, final ByteBuffer buffer)
+  {
+    final int id = o.getId();
+    buffer.putFloat(store.positionX[id]);
+    buffer.putFloat(store.positionY[id]);
+    buffer.putFloat(store.velocityX[id]);
+    buffer.putFloat(store.velocityY[id]);
+    buffer.putFloat(store.orientation[id]);
+    buffer.putFloat(store.angularVelocity[id]);
+    buffer.putFloat(store.forceX[id]);
+    buffer.putFloat(store.forceY[id]);
+    buffer.putFloat(store.mass[id]);
+    buffer.putFloat(store.momentOfInertia[id]);
+    buffer.putFloat(store.centerOfMassX[id]);
+    buffer.putFloat(store.centerOfMassY[id]);
+    buffer.putInt(store.restingFrames[id]);
+    buffer.putInt(store.island[id]);
+    buffer.putInt(o.getShapeType() << 1 | (store.asleep[id] ? 1 : 0));
+    if (o.getShapeType() == PhysicsObject.CIRCLE)
+    {
+      buffer.putFloat(((Circle) o).radius);
+      buffer.putFloat(0);
+      buffer.putFloat(0);
+    }
+    else if (o.getShapeType() == PhysicsObject.HALF_SPACE)
+    {
+      final HalfSpace boundary = (HalfSpace) o;
+      buffer.putFloat(boundary.normal.x);
+      buffer.putFloat(boundary.normal.y);
+      buffer.putFloat(boundary.intercept);
+    }
+    else
+    {
+      buffer.putFloat(0);
+      buffer.putFloat(0);
+      buffer.putFloat(0);
+    }
+    buffer.putInt(order);
+  }
+
+  // Restores the object from its record and returns its broad phase order entry.
+  private static int readRecord(final BodyStore store, final PhysicsObject o,
+                                final ByteBuffer buffer)
+  {
+    final int id = o.getId();
+    store.positionX[id] = buffer.getFloat();
+    store.positionY[id] = buffer.getFloat();
+    store.velocityX[id] = buffer.getFloat();
+    store.velocityY[id] = buffer.getFloat();
+    store.orientation[id] = buffer.getFloat();
+    store.angularVelocity[id] = buffer.getFloat();
+    store.forceX[id] = buffer.getFloat();
+    store.forceY[id] = buffer.getFloat();
+    store.setMass(id, buffer.getFloat());
+    store.setMomentOfInertia(id, buffer.getFloat());
+    final float centerOfMassX = buffer.getFloat();
+    final float centerOfMassY = buffer.getFloat();
+    store.setCenterOfMass(id, centerOfMassX, centerOfMassY);
+    store.restingFrames[id] = buffer.getInt();
+    store.island[id] = buffer.getInt();
+    store.asleep[id] = (buffer.getInt() & 1) != 0;
+    final float parameter0 = buffer.getFloat();
+    final float parameter1 = buffer.getFloat();
+    final float parameter2 = buffer.getFloat();
+    if (o.getShapeType() == PhysicsObject.CIRCLE)
+    {
+      ((Circle) o).radius = parameter0;
+    }
+    else if (o.getShapeType() == PhysicsObject.HALF_SPACE)
+    {
+      final HalfSpace boundary = (HalfSpace) o;
+      boundary.normal.set(parameter0, parameter1);
+      boundary.intercept = parameter2;
+    }
+    o.clearCaches();
+    store.updateRotation(id);
+    // Sleeping objects keep the bounds of the step they fell asleep in.
+    o.updateBounds();
+    return buffer.getInt();
+  }
+
+  private static PhysicsObject get(final World world, final int reference)
+  {
+    if (reference >= 0)
+    {
+      return world.getObject(reference);
+    }
+    final int index = -1 - reference;
+    return index < world.getBoundaryCount() ? world.getBoundary(index)
+        : world.getStaticObject(index - world.getBoundaryCount());
+  }
+
+  private static void checkCounts(final ByteBuffer a, final int startA, final int magicA,
+                                  final ByteBuffer b, final int startB, final int magicB)
+  {
+    if (a.getInt(startA) != magicA || b.getInt(startB) != magicB ||
+        a.getInt(startA + OBJECT_COUNT) != b.getInt(startB + OBJECT_COUNT) ||
+        a.getInt(startA + BOUNDARY_COUNT) != b.getInt(startB + BOUNDARY_COUNT))
+    {
+      throw new IllegalArgumentException();
+    }
+  }
+
+  private static int getRecordCount(final ByteBuffer buffer, final int start)
+  {
+    return buffer.getInt(start + OBJECT_COUNT) + buffer.getInt(start + BOUNDARY_COUNT);
+  }
+
+  private static boolean equal(final ByteBuffer a, final int startA, final ByteBuffer b,
+                               final int startB)
+  {
+    for (int offset = 0; offset < RECORD_SIZE; offset += 4)
+    {
+      if (a.getInt(startA + offset) != b.getInt(startB + offset))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Copies a whole number of ints between absolute positions.
+  private static void copy(final ByteBuffer source, final int from, final ByteBuffer target,
+                           final int to, final int length)
+  {
+    for (int offset = 0; offset < length; offset += 4)
+    {
+      target.putInt(to + offset, source.getInt(from + offset));
+    }
+  }
+}